@@ -2,9 +2,17 @@ package gitlet;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 
 /** Blob class for Gitlet, the tiny stupid version-control system.
+ *  A blob is stored with Codec as the raw bytes of the file. Blobs made
+ *  from a file are streamed into the object store and never load the
+ *  file into memory; the content is only read back on demand. It stays
+ *  Serializable only so that `gitlet migrate` can read blobs written by
+ *  older versions, which kept the content as a String.
  *  @author Kevin Li
  */
 public class Blob implements Serializable {
@@ -13,12 +21,31 @@ public class Blob implements Serializable {
      * @param f file
      * */
     public Blob(File f) {
-        _content = Utils.readContentsAsString(f);
         _fname = f.getName();
-        _blobHash = generateHash();
-        writeBlob();
+        _blobHash = ObjectStore.local().writeFile("blobs", KIND, f);
     }
 
+    /** Constructor for a blob read back from the object store.
+     * @param hash the hash it is stored under
+     * @param contents raw bytes */
+    private Blob(String hash, byte[] contents) {
+        _blobHash = hash;
+        _contents = contents;
+    }
+
+    /** Decode a blob written by encode().
+     * @param hash the hash it is stored under
+     * @param framed framed bytes
+     * @return the blob */
+    static Blob decode(String hash, byte[] framed) {
+        return new Blob(hash, Codec.unframe(KIND, framed));
+    }
+
+    /** Encode this blob in the gitlet object format.
+     * @return framed bytes */
+    byte[] encode() {
+        return Codec.frame(KIND, getContents());
+    }
 
     /** Getter function for _fname.
      * @return filename*/
@@ -26,10 +53,21 @@ public class Blob implements Serializable {
         return _fname;
     }
 
-    /** Getter function for _content.
+    /** Getter function for _contents, decoded as text.
      * @return content*/
     public String getContent() {
-        return _content;
+        return new String(getContents(), StandardCharsets.UTF_8);
+    }
+
+    /** Getter function for the raw _contents, read from the object
+     *  store on first use. Prefer ObjectStore.copyTo() for big blobs.
+     * @return content bytes*/
+    public byte[] getContents() {
+        if (_contents == null) {
+            _contents = Codec.unframe(KIND,
+                    ObjectStore.local().read("blobs", _blobHash));
+        }
+        return _contents;
     }
 
     /** Getter function for _content.
@@ -38,35 +76,33 @@ public class Blob implements Serializable {
         return _blobHash;
     }
 
-    /** Generate the hash of this blob upon creation.
-     *  Never use this other than in the constructor.
-     *  @return generated hash*/
-    private String generateHash() {
-        return Utils.sha1(Utils.serialize(this), "blob");
-    }
-
-    /** Write the blob into the disk. If any file has the
-     * exact same hash (should also have the exact same object),
-     * it would be overwritten. */
-    private void writeBlob() {
-        try {
-            File blobItem = Utils.join(blobPath, getHash());
-            blobItem.createNewFile();
-            Utils.writeObject(blobItem, this);
-        } catch (IOException e) {
-            System.out.println("IOException in writeBlob()");
-        }
+    /** Read a blob serialized by an older version of gitlet.
+     * @param in the stream
+     * @throws IOException on bad input
+     * @throws ClassNotFoundException on bad input */
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        _blobHash = (String) fields.get("_blobHash", null);
+        _fname = (String) fields.get("_fname", null);
+        String content = (String) fields.get("_content", "");
+        _contents = content.getBytes(StandardCharsets.UTF_8);
     }
 
+    /** Object kind in the Codec header. */
+    static final String KIND = "blob";
+    /** Version of this class in blobs written before Codec. */
+    private static final long serialVersionUID = 6054541038576326762L;
+    /** Fields of blobs written before Codec. */
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("_blobHash", String.class),
+        new ObjectStreamField("_content", String.class),
+        new ObjectStreamField("_fname", String.class)
+    };
     /** Instance variable blobhash. */
     private String _blobHash;
-    /** Instance variable content. */
-    private String _content;
+    /** Instance variable content, null until needed. */
+    private byte[] _contents;
     /** Instance variable filename. */
     private String _fname;
-    /** File separator. */
-    private static final String SLASH = File.separator;
-    /** Instance variable blobpath. */
-    private static File blobPath = new File("." + SLASH
-            + ".gitlet" + SLASH + "objects" + SLASH + "blobs");
 }
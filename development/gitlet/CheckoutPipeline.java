@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** CheckoutPipeline class for Gitlet, the tiny stupid version-control
+ *  system. Writes the blobs of a checkout to the working directory in
+ *  two stages. The calling thread is the reader: it reads and inflates
+ *  each blob, loose or packed, and hands the bytes to a pool of writer
+ *  threads (-Dgitlet.threads of them) that write the files. The bytes
+ *  handed over but not yet written are bounded by -Dgitlet.checkoutBytes
+ *  (DEFAULT_BYTES by default): the reader blocks until writers catch up.
+ *  Loose blobs too big to sit in memory are streamed by a writer instead.
+ *  The first failure stops the reader, and finish() waits for the
+ *  writers and reports it. Checkouts of fewer than ParallelScan's
+ *  MIN_PARALLEL files are written on the calling thread.
+ *  @author Kevin Li
+ */
+class CheckoutPipeline {
+
+    /** A pipeline writing about COUNT blobs of STORE.
+     *  @param store object store holding the blobs
+     *  @param count number of files that will be written */
+    CheckoutPipeline(ObjectStore store, int count) {
+        _store = store;
+        long limit = Long.getLong("gitlet.checkoutBytes", DEFAULT_BYTES);
+        _budget = (int) Math.max(ObjectStore.CHUNK,
+                Math.min(limit, Integer.MAX_VALUE));
+        _inFlight = new Semaphore(_budget);
+        if (count >= ParallelScan.MIN_PARALLEL
+                && ParallelScan.parallelism() > 1) {
+            _writers = Executors.newFixedThreadPool(
+                    ParallelScan.parallelism(), r -> {
+                        Thread t = new Thread(r, "gitlet-checkout");
+                        t.setDaemon(true);
+                        return t;
+                    });
+        }
+    }
+
+    /** Write blob HASH to the working file FNAME, now or later. Does
+     *  nothing once a write has failed.
+     *  @param fname working file
+     *  @param hash blob hash */
+    void write(String fname, String hash) {
+        if (_failure.get() != null) {
+            return;
+        }
+        File dest = RepoRoot.file(fname);
+        _written.add(fname);
+        try {
+            if (_store.looseFile("blobs", hash).length() > STREAM_SIZE) {
+                submit(ObjectStore.CHUNK,
+                        () -> _store.copyTo("blobs", hash, dest));
+                return;
+            }
+            byte[] framed = _store.read("blobs", hash);
+            if (framed == null) {
+                throw new GitletException("Object " + hash + " not found.");
+            }
+            byte[] body = Codec.unframe(Blob.KIND, framed);
+            submit(body.length, () -> writeBytes(dest, body));
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /** Wait for every write and report the first failure.
+     *  @return the files written, in the order given */
+    List<String> finish() {
+        if (_writers != null) {
+            _writers.shutdown();
+            try {
+                _writers.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(new GitletException("Checkout interrupted."));
+            }
+        }
+        RuntimeException failure = _failure.get();
+        if (failure instanceof GitletException) {
+            throw failure;
+        } else if (failure != null) {
+            throw new GitletException("Checkout failed: "
+                    + failure.getMessage());
+        }
+        return _written;
+    }
+
+    /** Run WRITE once BYTES of the in-flight budget are free.
+     *  @param bytes size of what WRITE holds in memory
+     *  @param write the write */
+    private void submit(long bytes, Runnable write) {
+        if (_writers == null) {
+            run(write);
+            return;
+        }
+        int permits = (int) Math.min(bytes, _budget);
+        _inFlight.acquireUninterruptibly(permits);
+        _writers.execute(() -> {
+            try {
+                if (_failure.get() == null) {
+                    run(write);
+                }
+            } finally {
+                _inFlight.release(permits);
+            }
+        });
+    }
+
+    /** Run WRITE, remembering its failure if it is the first.
+     *  @param write the write */
+    private void run(Runnable write) {
+        try {
+            write.run();
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /** Remember E unless a failure was already seen.
+     *  @param e the failure */
+    private void fail(RuntimeException e) {
+        _failure.compareAndSet(null, e);
+    }
+
+    /** Overwrite DEST with BODY.
+     *  @param dest working file
+     *  @param body its new contents */
+    private static void writeBytes(File dest, byte[] body) {
+        try (FileOutputStream out = new FileOutputStream(dest)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Default bound on bytes read but not yet written. */
+    static final long DEFAULT_BYTES = 64L << 20;
+    /** Compressed size above which a loose blob is streamed. */
+    private static final long STREAM_SIZE = 4L << 20;
+
+    /** Where the blobs come from. */
+    private ObjectStore _store;
+    /** Writer threads, or null to write on the calling thread. */
+    private ExecutorService _writers;
+    /** Bytes the writers may hold at once. */
+    private int _budget;
+    /** Free part of the budget. */
+    private Semaphore _inFlight;
+    /** First failure, if any. */
+    private AtomicReference<RuntimeException> _failure
+            = new AtomicReference<>();
+    /** Files handed to the pipeline. */
+    private List<String> _written = new ArrayList<>();
+}
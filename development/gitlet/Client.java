@@ -0,0 +1,31 @@
+package gitlet;
+
+/** Client class for Gitlet, the tiny stupid version-control system.
+ *  A drop-in replacement for Main: java gitlet.Client ARGS sends ARGS to
+ *  the daemon of the repo in CWD, if one is running, and otherwise runs
+ *  the command in this process. Either way the output and exit code are
+ *  the same. It falls back only when it cannot connect: a request that
+ *  was sent may have run, so losing the daemon after that is an error,
+ *  never a second run.
+ *  @author Kevin Li
+ */
+public class Client {
+
+    /** Usage: java gitlet.Client ARGS, where ARGS contains
+     *  <COMMAND> <OPERAND> ....
+     *  @param args arguments */
+    public static void main(String... args) {
+        int code = Daemon.NO_DAEMON;
+        boolean local = args.length > 0 && args[0].equals("daemon");
+        if (!local && Daemon.socket().exists()) {
+            code = Daemon.request(args, System.out, System.err);
+        }
+        if (code == Daemon.NO_DAEMON) {
+            code = Main.run(args);
+        }
+        System.out.flush();
+        if (code != 0) {
+            System.exit(code);
+        }
+    }
+}
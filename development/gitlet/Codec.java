@@ -0,0 +1,157 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** Codec class for Gitlet, the tiny stupid version-control system.
+ *  Everything gitlet persists (blobs, commits, the stage, remotes) is
+ *  written in one format: a header line "[kind] [length]" followed by
+ *  the raw body, the whole thing deflated. Repositories using this
+ *  format record FORMAT_VERSION in .gitlet/version.
+ *  @author Kevin Li
+ */
+class Codec {
+
+    /** Not meant to be instantiated. */
+    private Codec() { }
+
+    /** Prefix BODY with its header line.
+     *  @param kind object kind, e.g. "blob"
+     *  @param body raw bytes
+     *  @return framed object */
+    static byte[] frame(String kind, byte[] body) {
+        byte[] header = (kind + " " + body.length + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[header.length + body.length];
+        System.arraycopy(header, 0, result, 0, header.length);
+        System.arraycopy(body, 0, result, header.length, body.length);
+        return result;
+    }
+
+    /** Strip and verify the header line of a framed object.
+     *  @param kind expected kind
+     *  @param framed framed object
+     *  @return raw body */
+    static byte[] unframe(String kind, byte[] framed) {
+        int nl = headerEnd(framed);
+        String[] header = new String(framed, 0, nl, StandardCharsets.UTF_8)
+                .split(" ");
+        if (header.length != 2 || !header[0].equals(kind)
+                || Long.parseLong(header[1]) != framed.length - nl - 1) {
+            throw new GitletException("Corrupt object: expected " + kind + ".");
+        }
+        byte[] result = new byte[framed.length - nl - 1];
+        System.arraycopy(framed, nl + 1, result, 0, result.length);
+        return result;
+    }
+
+    /** Write a framed object, deflated, to FILE.
+     *  @param file destination
+     *  @param framed framed object */
+    static void writeFile(File file, byte[] framed) {
+        Utils.writeContents(file, deflate(framed));
+    }
+
+    /** Read a framed object written by writeFile().
+     *  @param file source
+     *  @return framed object */
+    static byte[] readFile(File file) {
+        return inflate(Utils.readContents(file));
+    }
+
+    /** Check whether FILE holds a Java-serialized object from before
+     *  this format existed.
+     *  @param file a file
+     *  @return true if legacy */
+    static boolean isLegacy(File file) {
+        try (FileInputStream in = new FileInputStream(file)) {
+            return in.read() == 0xac && in.read() == 0xed;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Deflate DATA.
+     *  @param data raw bytes
+     *  @return deflated bytes */
+    static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[BUFFER];
+        while (!deflater.finished()) {
+            out.write(buf, 0, deflater.deflate(buf));
+        }
+        deflater.end();
+        return out.toByteArray();
+    }
+
+    /** Inflate ZIPPED, whose inflated size is unknown.
+     *  @param zipped deflated bytes
+     *  @return inflated bytes */
+    static byte[] inflate(byte[] zipped) {
+        try (InflaterInputStream in = new InflaterInputStream(
+                new ByteArrayInputStream(zipped))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new GitletException("Corrupt object: " + e.getMessage());
+        }
+    }
+
+    /** Inflate ZIPPED, whose inflated size is LEN. Input that runs out,
+     *  or ends, before LEN bytes is corrupt.
+     *  @param zipped deflated bytes
+     *  @param len inflated length
+     *  @return inflated bytes */
+    static byte[] inflate(byte[] zipped, int len) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(zipped);
+            byte[] result = new byte[len];
+            int n = 0;
+            while (n < len) {
+                int got = inflater.inflate(result, n, len - n);
+                if (got == 0 && (inflater.finished()
+                        || inflater.needsInput()
+                        || inflater.needsDictionary())) {
+                    throw new GitletException("Corrupt object: "
+                            + "truncated data.");
+                }
+                n += got;
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new GitletException("Corrupt object: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /** Position of the newline ending the header of FRAMED.
+     *  @param framed framed object
+     *  @return index of the newline */
+    private static int headerEnd(byte[] framed) {
+        for (int i = 0; i < framed.length && i < MAX_HEADER; i++) {
+            if (framed[i] == '\n') {
+                return i;
+            }
+        }
+        throw new GitletException("Corrupt object: no header.");
+    }
+
+    /** Version recorded in .gitlet/version by this format. */
+    static final String FORMAT_VERSION = "4";
+    /** Longest header line accepted. */
+    private static final int MAX_HEADER = 32;
+    /** Deflate buffer size. */
+    private static final int BUFFER = 8192;
+}
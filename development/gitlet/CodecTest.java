@@ -0,0 +1,88 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Codec for Gitlet, the tiny stupid version-control system.
+ *  @author Kevin Li
+ */
+public class CodecTest {
+
+    /** Random bytes.
+     *  @param size how many
+     *  @param seed random seed
+     *  @return the bytes */
+    private static byte[] random(int size, long seed) {
+        byte[] result = new byte[size];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    @Test
+    public void frameRoundTrip() {
+        byte[] body = "a body\nwith two lines\n".getBytes(
+                StandardCharsets.UTF_8);
+        byte[] framed = Codec.frame(Blob.KIND, body);
+        assertTrue(new String(framed, StandardCharsets.UTF_8)
+                .startsWith(Blob.KIND + " " + body.length + "\n"));
+        assertArrayEquals(body, Codec.unframe(Blob.KIND, framed));
+        assertArrayEquals(new byte[0], Codec.unframe(Commit.KIND,
+                Codec.frame(Commit.KIND, new byte[0])));
+    }
+
+    @Test(expected = GitletException.class)
+    public void unframeChecksKind() {
+        Codec.unframe(Commit.KIND, Codec.frame(Blob.KIND, new byte[3]));
+    }
+
+    @Test(expected = GitletException.class)
+    public void unframeChecksLength() {
+        byte[] framed = Codec.frame(Blob.KIND, new byte[10]);
+        Codec.unframe(Blob.KIND, Arrays.copyOf(framed, framed.length - 1));
+    }
+
+    @Test
+    public void deflateRoundTrip() {
+        for (byte[] data : new byte[][] {new byte[0], random(1, 1),
+                 random(100000, 2), new byte[100000]}) {
+            byte[] zipped = Codec.deflate(data);
+            assertArrayEquals(data, Codec.inflate(zipped));
+            assertArrayEquals(data, Codec.inflate(zipped, data.length));
+        }
+        assertTrue(Codec.deflate(new byte[100000]).length < 1000);
+    }
+
+    @Test(expected = GitletException.class)
+    public void truncatedDataIsCorrupt() {
+        byte[] data = random(10000, 3);
+        byte[] zipped = Codec.deflate(data);
+        Codec.inflate(Arrays.copyOf(zipped, zipped.length / 2),
+                data.length);
+    }
+
+    @Test(expected = GitletException.class)
+    public void shortDataIsCorrupt() {
+        byte[] data = random(100, 4);
+        Codec.inflate(Codec.deflate(data), data.length + 1);
+    }
+
+    @Test
+    public void fileRoundTrip() throws IOException {
+        File file = File.createTempFile("codec", null);
+        try {
+            byte[] framed = Codec.frame(Blob.KIND, random(5000, 5));
+            Codec.writeFile(file, framed);
+            assertFalse(Codec.isLegacy(file));
+            assertArrayEquals(framed, Codec.readFile(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+}
@@ -1,11 +1,21 @@
 package gitlet;
 
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /** Commit class for Gitlet, the tiny stupid version-control system.
+ *  A commit is stored with Codec as a few header lines ("parent",
+ *  "merge", "time" and "tree [hash]" naming its root Tree), an empty
+ *  line, and the message. Commits written before trees existed list one
+ *  "blob [hash] [name]" line per tracked file instead; both are read.
+ *  It stays Serializable only so that `gitlet migrate` can read commits
+ *  written by older versions.
  *  @author Kevin Li
  */
 public class Commit implements Serializable {
@@ -14,63 +24,186 @@ public class Commit implements Serializable {
      * @param parent parent hash
      * @param merge merge parent hash
      * @param date current date
-     * @param parentBMap parent blobMap
+     * @param tree hash of the root tree
      * @param msg commit message
      * */
     public Commit(String parent, String merge, Date date,
-                  HashMap<String, String> parentBMap, String msg) {
+                  String tree, String msg) {
         this._parent = parent;
         this._mergeParent = merge;
         this._timestamp = (date == null)
                 ? new Date(System.currentTimeMillis()) : date;
         this._message = msg;
-        this._blobsMap = parentBMap;
-        this._uid
-                = Utils.sha1(Utils.serialize(this), "commit");
+        this._tree = tree;
     }
     /** Factory of initial commit.
      * @return the initial commit*/
     public static Commit initialCommit() {
         return new Commit(null, null,
-                new Date(0), new HashMap<>(),
+                new Date(0), Tree.fromMap(new HashMap<>()),
                 "initial commit");
     }
 
+    /** Encode this commit in the gitlet object format.
+     *  @return framed bytes */
+    byte[] encode() {
+        StringBuilder body = new StringBuilder();
+        if (_parent != null) {
+            body.append("parent ").append(_parent).append("\n");
+        }
+        if (_mergeParent != null) {
+            body.append("merge ").append(_mergeParent).append("\n");
+        }
+        body.append("time ").append(_timestamp.getTime()).append("\n");
+        if (_tree != null) {
+            body.append("tree ").append(_tree).append("\n");
+        } else {
+            for (String fname : new TreeMap<>(_blobsMap).keySet()) {
+                body.append("blob ").append(_blobsMap.get(fname))
+                        .append(" ").append(fname).append("\n");
+            }
+        }
+        body.append("\n").append(_message);
+        return Codec.frame(KIND,
+                body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Decode a commit written by encode().
+     *  @param uid the hash the commit is stored under
+     *  @param framed framed bytes
+     *  @return the commit */
+    static Commit decode(String uid, byte[] framed) {
+        String body = new String(Codec.unframe(KIND, framed),
+                StandardCharsets.UTF_8);
+        String parent = null, merge = null, tree = null;
+        Date time = null;
+        HashMap<String, String> blobs = null;
+        int pos = 0;
+        while (true) {
+            int nl = body.indexOf('\n', pos);
+            if (nl < 0) {
+                throw new GitletException("Corrupt commit " + uid + ".");
+            }
+            String line = body.substring(pos, nl);
+            pos = nl + 1;
+            if (line.isEmpty()) {
+                break;
+            } else if (line.startsWith("parent ")) {
+                parent = line.substring(7);
+            } else if (line.startsWith("merge ")) {
+                merge = line.substring(6);
+            } else if (line.startsWith("time ")) {
+                time = new Date(Long.parseLong(line.substring(5)));
+            } else if (line.startsWith("tree ")) {
+                tree = line.substring(5);
+            } else if (line.startsWith("blob ")) {
+                if (blobs == null) {
+                    blobs = new HashMap<>();
+                }
+                int split = 5 + Utils.UID_LENGTH;
+                blobs.put(line.substring(split + 1),
+                        line.substring(5, split));
+            }
+        }
+        Commit result = new Commit(parent, merge, time, tree,
+                body.substring(pos));
+        if (tree == null) {
+            result._blobsMap = (blobs == null) ? new HashMap<>() : blobs;
+        }
+        result._uid = uid;
+        return result;
+    }
+
     /** Helper function to get formatted time based on local time zone.
      * @return formatTime. */
     String formatTime() {
-        String pattern = "E MMM d HH:mm:ss yyyy Z";
-        SimpleDateFormat formatter = new SimpleDateFormat(pattern);
-        return formatter.format(_timestamp);
+        return TIME_FORMAT.format(_timestamp.toInstant());
     }
 
-    /** A Method to add or remove staged files to blobsMap.
+    /** A Method to add or remove staged files to the tree. Only the
+     * trees along the staged paths are rewritten.
      * @param stage satge
      * */
     void processStage(Stage stage) {
         HashMap<String, String> addition = stage.getStage("add");
         HashMap<String, String> removal = stage.getStage("remove");
-        _blobsMap.putAll(addition);
-        for (String s : removal.keySet()) {
-            _blobsMap.remove(s);
-        }
+        _tree = Tree.apply(treeHash(), addition, removal.keySet());
+        _blobsMap = null;
+        _uid = null;
         stage.reset();
     }
 
-    /** Getter method for _blobsMap.
+    /** Getter method for _blobsMap, flattened from the tree on first
+     *  use. Callers must not modify it. The shared cache is charged for
+     *  the map, at the size of the blob lines a commit without a tree
+     *  would have.
      * @return hashmap is this*/
     HashMap<String, String> blobsMap() {
+        if (_blobsMap == null) {
+            _blobsMap = new HashMap<>();
+            Tree.flatten(_tree, "", _blobsMap);
+            if (_uid != null) {
+                long bytes = 0;
+                for (String fname : _blobsMap.keySet()) {
+                    bytes += BLOB_LINE + fname.length();
+                }
+                ObjectCache.shared().grow("commits", _uid, this, bytes);
+            }
+        }
         return _blobsMap;
     }
+
+    /** Look up a single tracked file without flattening the tree.
+     * @param fname file path
+     * @return blob hash, or null if FNAME is not tracked */
+    String blobHash(String fname) {
+        if (_tree == null || _blobsMap != null) {
+            return blobsMap().get(fname);
+        }
+        return Tree.lookup(_tree, fname);
+    }
+
+    /** Check whether this commit points at a tree.
+     * @return false for commits written before trees existed */
+    boolean hasTree() {
+        return _tree != null;
+    }
+
+    /** Getter method for _tree. A commit written before trees existed
+     *  gets its trees built, and written, on first use.
+     * @return hash of the root tree */
+    String treeHash() {
+        if (_tree == null) {
+            if (_builtTree == null) {
+                _builtTree = Tree.fromMap(_blobsMap);
+            }
+            return _builtTree;
+        }
+        return _tree;
+    }
+
+    /** Replace the blob hashes found in IDS by their new value, keeping
+     *  the uid of this commit. Only meant for `gitlet migrate`.
+     *  @param ids map from old to new blob hash */
+    void remapBlobs(Map<String, String> ids) {
+        for (Map.Entry<String, String> e : _blobsMap.entrySet()) {
+            e.setValue(ids.getOrDefault(e.getValue(), e.getValue()));
+        }
+    }
+
     /** Getter method for a new timestamp.
      * @return the timestamp */
     public Date getTimestamp() {
         return _timestamp;
     }
 
-    /** Getter method for _uid.
+    /** Getter method for _uid. The uid of a new commit is the hash of
+     *  its encoding, computed on first use.
      * @return getter result*/
     String getHash() {
+        if (_uid == null) {
+            _uid = Utils.sha1(encode());
+        }
         return _uid;
     }
     /** Getter method for _parent.
@@ -92,9 +225,21 @@ public class Commit implements Serializable {
      * @param m is param*/
     void setMergeParent(String m) {
         _mergeParent = m;
+        _uid = null;
     }
 
 
+    /** Object kind in the Codec header. */
+    static final String KIND = "commit";
+    /** Format of log dates, shared since it is immutable. */
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter
+            .ofPattern("E MMM d HH:mm:ss yyyy Z")
+            .withZone(ZoneId.systemDefault());
+    /** Version of this class in commits written before Codec. */
+    private static final long serialVersionUID = 7862827192222869931L;
+    /** Bytes of a "blob HASH NAME" line besides the name. */
+    private static final int BLOB_LINE = "blob  \n".length()
+            + Utils.UID_LENGTH;
     /** UID, but only ever access it with getter. */
     private String _uid;
     /** Parent Commit. */
@@ -105,6 +250,12 @@ public class Commit implements Serializable {
     private String _message;
     /** A string for timestamp. */
     private Date _timestamp;
-    /** BlobsMap maps the filename(key) to the hash-id (value). */
+    /** Hash of the root tree, null in commits written before trees. */
+    private String _tree;
+    /** Trees built for a commit written before trees, kept apart from
+     *  _tree so that its encoding, and thus its uid, does not change. */
+    private transient String _builtTree;
+    /** BlobsMap maps the filename(key) to the hash-id (value). Kept as is
+     *  in commits written before trees, flattened lazily otherwise. */
     private HashMap<String, String> _blobsMap;
 }
@@ -0,0 +1,492 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/** CommitGraph class for Gitlet, the tiny stupid version-control system.
+ *  The commit graph is .gitlet/commit-graph: a header followed by one
+ *  fixed-width record per commit, (hash, parent index, merge parent
+ *  index, generation, timestamp). Records only ever point at earlier
+ *  records, so the file is append-only: a commit or a fetch appends the
+ *  new commits, and any commit missing from the table (say, in a repo
+ *  older than the table) is read once and appended on first lookup.
+ *  Ancestry questions are answered on the table without decoding a
+ *  single commit object. The generation of a commit is one more than
+ *  the largest generation of its parents, so a walk looking for an
+ *  ancestor of generation g never needs to go below g. Records are
+ *  found by hash through an open-addressing table built on load.
+ *  Appends hold an exclusive lock on the file and first check that it
+ *  is still as long as when it was read: if another process appended
+ *  meanwhile, the record numbers computed here would be wrong, so the
+ *  table is read again and the append redone.
+ *  @author Kevin Li
+ */
+class CommitGraph {
+
+    /** Load the commit graph stored in FILE.
+     *  @param file the commit-graph file, which may not exist */
+    CommitGraph(File file) {
+        _file = file;
+        load();
+    }
+
+    /** Getter for the commit graph of the repo at RepoRoot. It is loaded
+     *  again if another process has appended to the file since.
+     *  @return the local commit graph */
+    static CommitGraph local() {
+        return RepoRoot.local(CommitGraph.class,
+                dir -> new CommitGraph(Utils.join(dir, "commit-graph")),
+                g -> g._file.length() == g._length);
+    }
+
+    /** Record a commit that was just written, and any of its ancestors
+     *  the table is missing.
+     *  @param commit the commit */
+    void add(Commit commit) {
+        while (indexOf(commit.getHash()) < 0) {
+            int parent = find(commit.getParent());
+            int merge = find(commit.getMergeParent());
+            ByteArrayOutputStream pending = new ByteArrayOutputStream();
+            append(commit.getHash(), parent, merge,
+                    commit.getTimestamp().getTime(), pending);
+            if (flush(pending)) {
+                return;
+            }
+            load();
+        }
+    }
+
+    /** Record the commit HASH, read from the object store, and any of
+     *  its ancestors the table is missing.
+     *  @param hash full hash */
+    void add(String hash) {
+        find(hash);
+    }
+
+    /** Find the record of a commit, appending it if the table does not
+     *  have it yet.
+     *  @param hash full commit hash, or null
+     *  @return record number, or -1 if there is no such commit */
+    int find(String hash) {
+        if (hash == null) {
+            return -1;
+        }
+        int pos = indexOf(hash);
+        return (pos >= 0) ? pos : addMissing(hash);
+    }
+
+    /** Check whether ANCESTOR is DESCENDANT or one of its ancestors.
+     *  Commits whose generation is at most that of ANCESTOR are never
+     *  walked past.
+     *  @param ancestor full hash
+     *  @param descendant full hash
+     *  @return true if ANCESTOR is reachable from DESCENDANT */
+    boolean isAncestor(String ancestor, String descendant) {
+        int target = find(ancestor);
+        int start = find(descendant);
+        if (target < 0 || start < 0) {
+            return false;
+        }
+        int floor = _generations[target];
+        BitSet seen = new BitSet(_size);
+        int[] stack = new int[2 * _size + 1];
+        int top = 0;
+        stack[top++] = start;
+        while (top > 0) {
+            int i = stack[--top];
+            if (i == target) {
+                return true;
+            } else if (seen.get(i) || _generations[i] <= floor) {
+                continue;
+            }
+            seen.set(i);
+            if (_parents[i] >= 0) {
+                stack[top++] = _parents[i];
+            }
+            if (_merges[i] >= 0) {
+                stack[top++] = _merges[i];
+            }
+        }
+        return false;
+    }
+
+    /** Collect HASH and all of its ancestors.
+     *  @param hash full hash
+     *  @return set of full hashes, empty if there is no such commit */
+    Set<String> ancestors(String hash) {
+        BitSet reach = reach(find(hash));
+        Set<String> result = new HashSet<>();
+        for (int i = reach.nextSetBit(0); i >= 0; i = reach.nextSetBit(i + 1)) {
+            result.add(hashAt(i));
+        }
+        return result;
+    }
+
+    /** Find the merge base of CURR and OTHER: the first ancestor of OTHER
+     *  met by a breadth-first walk from CURR that visits parents before
+     *  merge parents.
+     *  @param curr full hash of the current head
+     *  @param other full hash of the other head
+     *  @return full hash, or null if they share no history */
+    String mergeBase(String curr, String other) {
+        int start = find(curr);
+        BitSet theirs = reach(find(other));
+        if (start < 0) {
+            return null;
+        }
+        BitSet seen = new BitSet(_size);
+        int[] queue = new int[2 * _size + 1];
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        while (head < tail) {
+            int i = queue[head++];
+            if (theirs.get(i)) {
+                return hashAt(i);
+            } else if (seen.get(i)) {
+                continue;
+            }
+            seen.set(i);
+            if (_parents[i] >= 0) {
+                queue[tail++] = _parents[i];
+            }
+            if (_merges[i] >= 0) {
+                queue[tail++] = _merges[i];
+            }
+        }
+        return null;
+    }
+
+    /** Getter for the generation of a commit.
+     *  @param hash full hash
+     *  @return generation, or 0 if there is no such commit */
+    int generation(String hash) {
+        int pos = find(hash);
+        return (pos < 0) ? 0 : _generations[pos];
+    }
+
+    /** Getter for the timestamp of a commit.
+     *  @param hash full hash
+     *  @return milliseconds since the epoch, or 0 if there is no such
+     *          commit */
+    long time(String hash) {
+        int pos = find(hash);
+        return (pos < 0) ? 0 : _times[pos];
+    }
+
+    /** Mark the record START and every record reachable from it.
+     *  @param start record number, or -1
+     *  @return set of record numbers */
+    private BitSet reach(int start) {
+        BitSet result = new BitSet(_size);
+        if (start < 0) {
+            return result;
+        }
+        int[] stack = new int[2 * _size + 1];
+        int top = 0;
+        stack[top++] = start;
+        while (top > 0) {
+            int i = stack[--top];
+            if (result.get(i)) {
+                continue;
+            }
+            result.set(i);
+            if (_parents[i] >= 0) {
+                stack[top++] = _parents[i];
+            }
+            if (_merges[i] >= 0) {
+                stack[top++] = _merges[i];
+            }
+        }
+        return result;
+    }
+
+    /** Append HASH and whichever of its ancestors are missing, parents
+     *  first, reading each commit object once.
+     *  @param hash full hash
+     *  @return record number of HASH, or -1 if there is no such commit */
+    private int addMissing(String hash) {
+        ObjectStore store = ObjectStore.local();
+        HashMap<String, Commit> decoded = new HashMap<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        ByteArrayOutputStream pending = new ByteArrayOutputStream();
+        stack.push(hash);
+        while (!stack.isEmpty()) {
+            String uid = stack.peek();
+            if (indexOf(uid) >= 0) {
+                stack.pop();
+                continue;
+            }
+            Commit c = decoded.get(uid);
+            if (c == null) {
+                byte[] framed = store.read("commits", uid);
+                if (framed == null) {
+                    if (flush(pending)) {
+                        return -1;
+                    }
+                    load();
+                    return addMissing(hash);
+                }
+                c = Commit.decode(uid, framed);
+                decoded.put(uid, c);
+            }
+            boolean ready = true;
+            for (String p : new String[] {c.getParent(), c.getMergeParent()}) {
+                if (p != null && indexOf(p) < 0) {
+                    stack.push(p);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                stack.pop();
+                append(uid, indexOf(c.getParent()),
+                        indexOf(c.getMergeParent()),
+                        c.getTimestamp().getTime(), pending);
+                decoded.remove(uid);
+            }
+        }
+        if (!flush(pending)) {
+            load();
+            return addMissing(hash);
+        }
+        return indexOf(hash);
+    }
+
+    /** Record number of a hash already in the table.
+     *  @param hash full hash, or null
+     *  @return record number, or -1 */
+    private int indexOf(String hash) {
+        if (hash == null || hash.length() != Utils.UID_LENGTH) {
+            return -1;
+        }
+        byte[] key = Pack.toBytes(hash);
+        int mask = _slots.length - 1;
+        for (int slot = slotOf(key, 0) & mask;; slot = (slot + 1) & mask) {
+            int i = _slots[slot] - 1;
+            if (i < 0) {
+                return -1;
+            }
+            int from = i * Pack.HASH_BYTES;
+            if (Arrays.equals(_hashes, from, from + Pack.HASH_BYTES,
+                    key, 0, Pack.HASH_BYTES)) {
+                return i;
+            }
+        }
+    }
+
+    /** Enter record I in the hash table, which must have room.
+     *  @param i record number */
+    private void index(int i) {
+        int mask = _slots.length - 1;
+        int slot = slotOf(_hashes, i * Pack.HASH_BYTES) & mask;
+        while (_slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        _slots[slot] = i + 1;
+    }
+
+    /** Home slot of the hash at FROM in HASHES, before masking: its
+     *  first four bytes, which SHA-1 spreads well enough.
+     *  @param hashes binary hashes
+     *  @param from offset of the hash
+     *  @return unmasked slot */
+    private static int slotOf(byte[] hashes, int from) {
+        return ((hashes[from] & 0xff) << 24) | ((hashes[from + 1] & 0xff) << 16)
+                | ((hashes[from + 2] & 0xff) << 8) | (hashes[from + 3] & 0xff);
+    }
+
+    /** Hex hash of record I.
+     *  @param i record number
+     *  @return full hash */
+    private String hashAt(int i) {
+        char[] result = new char[Utils.UID_LENGTH];
+        for (int k = 0; k < Pack.HASH_BYTES; k++) {
+            byte b = _hashes[i * Pack.HASH_BYTES + k];
+            result[2 * k] = HEX[(b >> 4) & 0xf];
+            result[2 * k + 1] = HEX[b & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** Add a record in memory and encode it into PENDING.
+     *  @param hash full hash
+     *  @param parent record number of the parent, or -1
+     *  @param merge record number of the merge parent, or -1
+     *  @param time timestamp in milliseconds
+     *  @param pending bytes still to be appended to the file */
+    private void append(String hash, int parent, int merge, long time,
+                        ByteArrayOutputStream pending) {
+        int generation = 1 + Math.max(
+                (parent < 0) ? 0 : _generations[parent],
+                (merge < 0) ? 0 : _generations[merge]);
+        put(Pack.toBytes(hash), parent, merge, generation, time);
+        DataOutputStream out = new DataOutputStream(pending);
+        try {
+            out.write(Pack.toBytes(hash));
+            out.writeInt(parent);
+            out.writeInt(merge);
+            out.writeInt(generation);
+            out.writeLong(time);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Add a record in memory.
+     *  @param hash binary hash
+     *  @param parent record number of the parent, or -1
+     *  @param merge record number of the merge parent, or -1
+     *  @param generation generation number
+     *  @param time timestamp in milliseconds */
+    private void put(byte[] hash, int parent, int merge,
+                     int generation, long time) {
+        if (_size == _parents.length) {
+            int cap = 2 * _size;
+            _hashes = Arrays.copyOf(_hashes, cap * Pack.HASH_BYTES);
+            _parents = Arrays.copyOf(_parents, cap);
+            _merges = Arrays.copyOf(_merges, cap);
+            _generations = Arrays.copyOf(_generations, cap);
+            _times = Arrays.copyOf(_times, cap);
+        }
+        System.arraycopy(hash, 0, _hashes, _size * Pack.HASH_BYTES,
+                Pack.HASH_BYTES);
+        _parents[_size] = parent;
+        _merges[_size] = merge;
+        _generations[_size] = generation;
+        _times[_size] = time;
+        _size++;
+        if (2 * _size > _slots.length) {
+            _slots = new int[2 * _slots.length];
+            for (int i = 0; i < _size; i++) {
+                index(i);
+            }
+        } else {
+            index(_size - 1);
+        }
+    }
+
+    /** Append PENDING records to the file under an exclusive lock,
+     *  writing the header first if the file is new, and cutting off what
+     *  load() found damaged at its end. Nothing is written if the file is
+     *  no longer as long as when it was read.
+     *  @param pending encoded records
+     *  @return false if another process changed the file, in which case
+     *          the table must be loaded again */
+    private boolean flush(ByteArrayOutputStream pending) {
+        if (pending.size() == 0 || !_file.getParentFile().isDirectory()) {
+            return true;
+        }
+        try (FileChannel ch = FileChannel.open(_file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ch.lock();
+            if (ch.size() != _length) {
+                return false;
+            }
+            ch.truncate(_valid);
+            ch.position(_valid);
+            if (_valid == 0) {
+                ch.write(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC)
+                        .putInt(VERSION).flip());
+            }
+            ch.write(ByteBuffer.wrap(pending.toByteArray()));
+            _length = ch.size();
+            _valid = _length;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        pending.reset();
+        return true;
+    }
+
+    /** Read the whole table, under a shared lock so that no append is
+     *  half done. A file that is damaged, say by a write cut short, keeps
+     *  only its whole records, or none if its header is bad; the next
+     *  append cuts off the rest, and the missing commits are read again
+     *  as needed. */
+    private void load() {
+        _size = 0;
+        _length = 0;
+        _valid = 0;
+        _hashes = new byte[INITIAL * Pack.HASH_BYTES];
+        _parents = new int[INITIAL];
+        _merges = new int[INITIAL];
+        _generations = new int[INITIAL];
+        _times = new long[INITIAL];
+        _slots = new int[2 * INITIAL];
+        ByteBuffer buf;
+        try (FileChannel ch = FileChannel.open(_file.toPath(),
+                StandardOpenOption.READ)) {
+            ch.lock(0, Long.MAX_VALUE, true);
+            buf = ByteBuffer.allocate((int) ch.size());
+            while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                continue;
+            }
+            buf.flip();
+        } catch (NoSuchFileException e) {
+            return;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _length = buf.limit();
+        if (_length < HEADER_BYTES || buf.getInt() != MAGIC
+                || buf.getInt() != VERSION) {
+            return;
+        }
+        int records = (buf.limit() - HEADER_BYTES) / RECORD_BYTES;
+        _valid = HEADER_BYTES + (long) records * RECORD_BYTES;
+        byte[] hash = new byte[Pack.HASH_BYTES];
+        for (int i = 0; i < records; i++) {
+            buf.get(hash);
+            put(hash, buf.getInt(), buf.getInt(), buf.getInt(),
+                    buf.getLong());
+        }
+    }
+
+    /** Magic number of the file ("GGRF"). */
+    private static final int MAGIC = 0x47475246;
+    /** Format version of the file. */
+    private static final int VERSION = 1;
+    /** Bytes of the header: magic and version. */
+    private static final int HEADER_BYTES = 8;
+    /** Bytes of a record: hash, parent, merge, generation, time. */
+    private static final int RECORD_BYTES = Pack.HASH_BYTES + 3 * 4 + 8;
+    /** Initial capacity of the in-memory table. */
+    private static final int INITIAL = 64;
+    /** Hex digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** The commit-graph file. */
+    private File _file;
+    /** Length of the file as last read or written. */
+    private long _length;
+    /** Length of the undamaged start of the file: its header and whole
+     *  records, or 0 if the header is bad. */
+    private long _valid;
+    /** Number of records. */
+    private int _size;
+    /** Open-addressing table of record number + 1 by hash, 0 for an
+     *  empty slot; at most half full. */
+    private int[] _slots;
+    /** Binary hash of each record, back to back. */
+    private byte[] _hashes;
+    /** Record number of the parent of each record, or -1. */
+    private int[] _parents;
+    /** Record number of the merge parent of each record, or -1. */
+    private int[] _merges;
+    /** Generation of each record. */
+    private int[] _generations;
+    /** Timestamp of each record, in milliseconds. */
+    private long[] _times;
+}
@@ -0,0 +1,358 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/** CommitIndex class for Gitlet, the tiny stupid version-control system.
+ *  Resolves abbreviated commit ids. The index is two files:
+ *    commit-ids       the ids of all commits, sorted, behind a fan-out
+ *                     table on the first byte, like a pack idx.
+ *    commit-ids.tail  ids added since, unsorted, at most MAX_TAIL.
+ *  A prefix is looked up with two binary searches in one fan-out bucket
+ *  of the mapped sorted file plus a scan of the short tail, so the cost
+ *  does not grow with the number of commits. New commits are appended
+ *  to the tail, which is merged into the sorted file once it is full.
+ *  A repo without the index gets it built from its commits on first use.
+ *  @author Kevin Li
+ */
+class CommitIndex {
+
+    /** The commit index of the repo whose .gitlet directory is GITLETDIR.
+     *  @param gitletDir a .gitlet directory */
+    CommitIndex(File gitletDir) {
+        _gitletDir = gitletDir;
+        _sortedFile = Utils.join(gitletDir, "commit-ids");
+        _tailFile = Utils.join(gitletDir, "commit-ids.tail");
+    }
+
+    /** Getter for the commit index of the repo at RepoRoot. It is loaded
+     *  again if another process changed the files since.
+     *  @return the local commit index */
+    static CommitIndex local() {
+        return RepoRoot.local(CommitIndex.class, CommitIndex::new,
+                CommitIndex::fresh);
+    }
+
+    /** Find the one commit whose id starts with PREFIX.
+     *  @param prefix abbreviated or full commit id
+     *  @return full commit id */
+    String resolve(String prefix) {
+        List<String> found = matches(prefix, 2);
+        if (found.isEmpty()) {
+            throw new GitletException("No commit with that id exists.");
+        } else if (found.size() > 1) {
+            throw new GitletException("Commit id " + prefix
+                    + " is ambiguous.");
+        }
+        return found.get(0);
+    }
+
+    /** Check whether the commit UID is indexed.
+     *  @param uid full commit id
+     *  @return true if present */
+    boolean contains(String uid) {
+        return uid.length() == Utils.UID_LENGTH && !matches(uid, 1).isEmpty();
+    }
+
+    /** Index the commit UID, unless it already is.
+     *  @param uid full commit id */
+    void add(String uid) {
+        if (contains(uid)) {
+            return;
+        }
+        tail().add(uid);
+        try (FileOutputStream out = new FileOutputStream(_tailFile, true)) {
+            out.write(Pack.toBytes(uid));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        if (_tail.size() > MAX_TAIL) {
+            merge();
+        }
+        _tailLength = _tailFile.length();
+    }
+
+    /** Drop the commits UIDS, which gc deleted, folding in the tail.
+     *  @param uids full commit ids */
+    void remove(Set<String> uids) {
+        TreeSet<String> kept = new TreeSet<>(tail());
+        ByteBuffer sorted = sorted();
+        int count = sorted.getInt(COUNT_POS);
+        for (int i = 0; i < count; i++) {
+            kept.add(hashAt(sorted, i));
+        }
+        kept.removeAll(uids);
+        write(new ArrayList<>(kept));
+    }
+
+    /** Check that the files have not changed since they were loaded.
+     *  @return false if another process wrote them */
+    private boolean fresh() {
+        return _sorted == null
+                || (_sortedFile.lastModified() == _sortedTime
+                && _tailFile.length() == _tailLength);
+    }
+
+    /** Collect up to LIMIT distinct commit ids starting with PREFIX.
+     *  @param prefix hex prefix
+     *  @param limit most ids wanted
+     *  @return matching ids, sorted */
+    List<String> matches(String prefix, int limit) {
+        TreeSet<String> result = new TreeSet<>();
+        if (!isHexPrefix(prefix)) {
+            return new ArrayList<>(result);
+        }
+        ByteBuffer sorted = sorted();
+        byte[] lo = Pack.toBytes(pad(prefix, '0'));
+        byte[] hi = Pack.toBytes(pad(prefix, 'f'));
+        int count = sorted.getInt(COUNT_POS);
+        int from = bound(sorted, lo, false, bucketStart(sorted, lo[0]),
+                bucketEnd(sorted, hi[0], count));
+        int to = bound(sorted, hi, true, from,
+                bucketEnd(sorted, hi[0], count));
+        for (int i = from; i < to && result.size() < limit; i++) {
+            result.add(hashAt(sorted, i));
+        }
+        for (String uid : tail()) {
+            if (result.size() >= limit) {
+                break;
+            } else if (uid.startsWith(prefix)) {
+                result.add(uid);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Fold the tail into the sorted file. */
+    private void merge() {
+        List<String> all = new ArrayList<>(new TreeSet<>(tail()));
+        ByteBuffer sorted = sorted();
+        int count = sorted.getInt(COUNT_POS);
+        List<String> merged = new ArrayList<>(count + all.size());
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            String uid = hashAt(sorted, i);
+            while (j < all.size() && all.get(j).compareTo(uid) < 0) {
+                merged.add(all.get(j++));
+            }
+            if (j < all.size() && all.get(j).equals(uid)) {
+                j++;
+            }
+            merged.add(uid);
+        }
+        merged.addAll(all.subList(j, all.size()));
+        write(merged);
+    }
+
+    /** Replace both files with a sorted file holding exactly UIDS.
+     *  @param uids sorted, distinct commit ids */
+    private void write(List<String> uids) {
+        int[] fanout = new int[256];
+        for (String uid : uids) {
+            fanout[Integer.parseInt(uid.substring(0, 2), 16)]++;
+        }
+        for (int i = 1; i < 256; i++) {
+            fanout[i] += fanout[i - 1];
+        }
+        try {
+            File tmp = File.createTempFile("commit-ids", null, _gitletDir);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(uids.size());
+                for (int f : fanout) {
+                    out.writeInt(f);
+                }
+                for (String uid : uids) {
+                    out.write(Pack.toBytes(uid));
+                }
+            }
+            Files.move(tmp.toPath(), _sortedFile.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _tailFile.delete();
+        _tail = new ArrayList<>();
+        _sorted = null;
+    }
+
+    /** Getter for the mapped sorted file, built from the object store
+     *  first if it does not exist.
+     *  @return the sorted file */
+    private ByteBuffer sorted() {
+        if (_sorted == null) {
+            if (!_sortedFile.exists()) {
+                _tail = null;
+                _tailFile.delete();
+                write(new ObjectStore(_gitletDir).list("commits"));
+            }
+            try (FileChannel ch = FileChannel.open(_sortedFile.toPath(),
+                    StandardOpenOption.READ)) {
+                _sorted = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+            if (_sorted.getInt(0) != MAGIC) {
+                throw new GitletException("Corrupt commit index.");
+            }
+            _sortedTime = _sortedFile.lastModified();
+            _tailLength = _tailFile.length();
+        }
+        return _sorted;
+    }
+
+    /** Getter for the ids of the tail, read on first use.
+     *  @return unsorted ids */
+    private List<String> tail() {
+        if (_tail == null) {
+            sorted();
+        }
+        if (_tail == null) {
+            _tail = new ArrayList<>();
+            if (_tailFile.exists()) {
+                byte[] raw = Utils.readContents(_tailFile);
+                ByteBuffer buf = ByteBuffer.wrap(raw);
+                int n = raw.length / Pack.HASH_BYTES;
+                for (int i = 0; i < n; i++) {
+                    _tail.add(Pack.toHex(buf, i * Pack.HASH_BYTES));
+                }
+            }
+        }
+        return _tail;
+    }
+
+    /** First record in [FROM, TO) whose id is at least KEY, or, if
+     *  AFTER, greater than KEY.
+     *  @param sorted the sorted file
+     *  @param key binary id
+     *  @param after whether equal ids come before the bound
+     *  @param from first record to consider
+     *  @param to one past the last record to consider
+     *  @return record number */
+    private static int bound(ByteBuffer sorted, byte[] key, boolean after,
+                             int from, int to) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareAt(sorted, RECORDS_POS + mid * Pack.HASH_BYTES,
+                    key);
+            if (cmp < 0 || (after && cmp == 0)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** First record of the fan-out bucket of FIRST.
+     *  @param sorted the sorted file
+     *  @param first first byte of an id
+     *  @return record number */
+    private static int bucketStart(ByteBuffer sorted, byte first) {
+        int b = first & 0xff;
+        return (b == 0) ? 0 : sorted.getInt(FANOUT_POS + 4 * (b - 1));
+    }
+
+    /** One past the last record of the fan-out bucket of LAST.
+     *  @param sorted the sorted file
+     *  @param last first byte of an id
+     *  @param count number of records
+     *  @return record number */
+    private static int bucketEnd(ByteBuffer sorted, byte last, int count) {
+        return Math.min(count, sorted.getInt(FANOUT_POS + 4 * (last & 0xff)));
+    }
+
+    /** Compare the id at byte POS with KEY, unsigned bytewise.
+     *  @param buf a buffer
+     *  @param pos byte position
+     *  @param key binary id
+     *  @return comparison result */
+    private static int compareAt(ByteBuffer buf, int pos, byte[] key) {
+        for (int i = 0; i < Pack.HASH_BYTES; i++) {
+            int cmp = (buf.get(pos + i) & 0xff) - (key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Hex id of record I of the sorted file.
+     *  @param sorted the sorted file
+     *  @param i record number
+     *  @return full id */
+    private static String hashAt(ByteBuffer sorted, int i) {
+        return Pack.toHex(sorted, RECORDS_POS + i * Pack.HASH_BYTES);
+    }
+
+    /** Check that PREFIX could start a commit id.
+     *  @param prefix a string
+     *  @return true if it is 1 to 40 lowercase hex digits */
+    private static boolean isHexPrefix(String prefix) {
+        if (prefix.isEmpty() || prefix.length() > Utils.UID_LENGTH) {
+            return false;
+        }
+        for (char c : prefix.toCharArray()) {
+            if (Character.digit(c, 16) < 0 || Character.isUpperCase(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Pad PREFIX to a full id with C.
+     *  @param prefix hex prefix
+     *  @param c padding digit
+     *  @return 40 hex digits */
+    private static String pad(String prefix, char c) {
+        StringBuilder sb = new StringBuilder(prefix);
+        while (sb.length() < Utils.UID_LENGTH) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /** Tail length above which it is merged into the sorted file. */
+    static final int MAX_TAIL = 4096;
+    /** Magic number of the sorted file ("GCID"). */
+    private static final int MAGIC = 0x47434944;
+    /** Format version of the sorted file. */
+    private static final int VERSION = 1;
+    /** Position of the id count. */
+    private static final int COUNT_POS = 8;
+    /** Position of the fan-out table. */
+    private static final int FANOUT_POS = 12;
+    /** Position of the first id. */
+    private static final int RECORDS_POS = FANOUT_POS + 256 * 4;
+
+    /** The .gitlet directory. */
+    private File _gitletDir;
+    /** The sorted file. */
+    private File _sortedFile;
+    /** The tail file. */
+    private File _tailFile;
+    /** Mapped sorted file, null until used. */
+    private ByteBuffer _sorted;
+    /** Ids of the tail, null until used. */
+    private List<String> _tail;
+    /** Modification time of the sorted file when mapped. */
+    private long _sortedTime;
+    /** Length of the tail file as last read or written. */
+    private long _tailLength;
+}
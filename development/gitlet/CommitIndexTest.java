@@ -0,0 +1,162 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of CommitIndex for Gitlet, the tiny stupid version-control
+ *  system. Each test works on the index of a fresh .gitlet directory.
+ *  @author Kevin Li
+ */
+public class CommitIndexTest {
+
+    /** A full id: PREFIX padded with the digit C.
+     *  @param prefix hex digits
+     *  @param c padding digit
+     *  @return 40 hex digits */
+    private static String id(String prefix, char c) {
+        StringBuilder sb = new StringBuilder(prefix);
+        while (sb.length() < Utils.UID_LENGTH) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /** Create an empty .gitlet directory. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("gitlet").toFile();
+        _gitlet = new File(_dir, ".gitlet");
+        _gitlet.mkdir();
+    }
+
+    /** Delete the directory of the test. */
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(_dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    /** Check that resolving PREFIX in INDEX fails with a message
+     *  containing MSG.
+     *  @param index a commit index
+     *  @param prefix an abbreviated id
+     *  @param msg part of the expected message */
+    private static void assertFails(CommitIndex index, String prefix,
+                                    String msg) {
+        try {
+            index.resolve(prefix);
+            fail(prefix + " resolved");
+        } catch (GitletException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(msg));
+        }
+    }
+
+    @Test
+    public void uniqueAndAmbiguousPrefixes() {
+        CommitIndex index = new CommitIndex(_gitlet);
+        String a = id("abc1", '0'), b = id("abc2", '0'), c = id("d", 'f');
+        index.add(a);
+        index.add(b);
+        index.add(c);
+        assertEquals(a, index.resolve("abc1"));
+        assertEquals(b, index.resolve("abc2"));
+        assertEquals(c, index.resolve("d"));
+        assertEquals(a, index.resolve(a));
+        assertFails(index, "abc", "ambiguous");
+        assertFails(index, "a", "ambiguous");
+        assertFails(index, "abc3", "No commit with that id exists.");
+        assertFails(index, "e", "No commit with that id exists.");
+        assertEquals(List.of(a, b), index.matches("ab", 10));
+        assertEquals(1, index.matches("ab", 1).size());
+    }
+
+    @Test
+    public void malformedPrefixesMatchNothing() {
+        CommitIndex index = new CommitIndex(_gitlet);
+        index.add(id("abc", '0'));
+        assertTrue(index.matches("", 2).isEmpty());
+        assertTrue(index.matches("ABC", 2).isEmpty());
+        assertTrue(index.matches("abx", 2).isEmpty());
+        assertTrue(index.matches(id("abc", '0') + "0", 2).isEmpty());
+    }
+
+    @Test
+    public void bucketEdges() {
+        CommitIndex index = new CommitIndex(_gitlet);
+        String low = id("", '0'), high = id("", 'f');
+        String below = id("0f", 'f'), above = id("f0", '0');
+        for (String uid : List.of(low, high, below, above)) {
+            index.add(uid);
+        }
+        index.remove(Set.of());
+        assertEquals(low, index.resolve("00"));
+        assertEquals(below, index.resolve("0f"));
+        assertEquals(above, index.resolve("f0"));
+        assertEquals(high, index.resolve("ff"));
+        assertFails(index, "0", "ambiguous");
+        assertFails(index, "f", "ambiguous");
+    }
+
+    @Test
+    public void sortedFileAndTailTogether() {
+        CommitIndex index = new CommitIndex(_gitlet);
+        for (int i = 0; i <= CommitIndex.MAX_TAIL; i++) {
+            index.add(Utils.sha1("commit " + i));
+        }
+        String sorted = Utils.sha1("commit 7");
+        String tail = id(sorted.substring(0, 12) + "f", '0');
+        index.add(tail);
+        index.add(tail);
+        CommitIndex reread = new CommitIndex(_gitlet);
+        for (CommitIndex idx : List.of(index, reread)) {
+            assertEquals(sorted, idx.resolve(sorted.substring(0, 13)));
+            assertEquals(tail, idx.resolve(tail.substring(0, 13)));
+            assertFails(idx, sorted.substring(0, 12), "ambiguous");
+            assertTrue(idx.contains(Utils.sha1("commit 0")));
+            assertFalse(idx.contains(Utils.sha1("commit -1")));
+        }
+    }
+
+    @Test
+    public void removedCommitsAreForgotten() {
+        CommitIndex index = new CommitIndex(_gitlet);
+        String a = id("abc1", '0'), b = id("abc2", '0');
+        index.add(a);
+        index.add(b);
+        index.remove(Set.of(b));
+        assertEquals(a, index.resolve("abc"));
+        assertEquals(a, new CommitIndex(_gitlet).resolve("abc"));
+        assertFalse(index.contains(b));
+    }
+
+    @Test
+    public void builtFromTheObjectStore() {
+        ObjectStore store = new ObjectStore(_gitlet);
+        String a = id("1234", '0'), b = id("1235", '0');
+        for (String uid : List.of(a, b)) {
+            store.write("commits", uid, Codec.frame(Commit.KIND,
+                    new byte[0]));
+        }
+        CommitIndex index = new CommitIndex(_gitlet);
+        assertEquals(a, index.resolve("1234"));
+        assertFails(index, "123", "ambiguous");
+    }
+
+    /** Working directory of the test. */
+    private File _dir;
+    /** Its .gitlet directory. */
+    private File _gitlet;
+}
@@ -5,9 +5,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Set;
-import java.util.HashSet;
 import java.util.List;
-import java.util.ArrayList;
 
 /** CTree class for Gitlet, the tiny stupid version-control system.
  *  @author Kevin Li
@@ -20,6 +18,7 @@ public class CommitTree implements Serializable {
     public CommitTree() {
         Commit root = Commit.initialCommit();
         writeCommit(root);
+        CommitGraph.local().add(root);
         writeBranch(_currBranch, root.getHash());
         writeCTree();
     }
@@ -47,6 +46,7 @@ public class CommitTree implements Serializable {
         head.setMergeParent(merge);
         writeBranch(_currBranch, head.getHash());
         writeCommit(head);
+        CommitGraph.local().add(head);
         writeCTree();
         return head;
     }
@@ -67,17 +67,21 @@ public class CommitTree implements Serializable {
      *  @return copy */
     private Commit copyFrom(Commit head, String msg) {
         return new Commit(head.getHash(), null,
-                    null, head.blobsMap(), msg);
+                    null, head.treeHash(), msg);
     }
 
-    /** Get the Head commit of this CTree from /refs/branches/master.
+    /** Get the Head commit of this CTree from the branch HEAD names,
+     *  loose or packed. It is read once and then kept until a ref is
+     *  written.
      * @return a new commit*/
     private Commit getHeadCommit() {
-        String headPath = Utils.readContentsAsString(
-                new File("." + SLASH + ".gitlet" + SLASH + "HEAD"));
-        String activeBranchContent
-                = Utils.readContentsAsString(new File(headPath));
-        return Utils.uidToCommit(activeBranchContent);
+        if (_head == null) {
+            String headPath = Utils.readContentsAsString(
+                    RepoRoot.gitlet("HEAD"));
+            _head = Utils.uidToCommit(
+                    Refs.local().read(Refs.branchOf(headPath)));
+        }
+        return _head;
     }
     /** Getter for current branch.
      * @return the current branch*/
@@ -89,35 +93,35 @@ public class CommitTree implements Serializable {
      * @param branch this branch*/
     public void setCurrBranch(String branch) {
         _currBranch = branch;
+        _head = null;
         writeCTree();
     }
 
     /** Write commit to ./objects/commits/<new_fileName>, regardless
-     * of its branch (_branches takes care of this).
+     * of its branch (_branches takes care of this). A commit that is
+     * already stored, loose or packed, is not written again, nor
+     * indexed again.
      * @param curr current commit */
     private void writeCommit(Commit curr) {
-        try {
-            File hashFile = Utils.join(_commitPath, curr.getHash());
-            hashFile.createNewFile();
-            Utils.writeObject(hashFile, curr);
-        } catch (IOException e) {
-            System.out.println(e);
-            System.exit(0);
+        if (ObjectStore.local().contains("commits", curr.getHash())) {
+            return;
         }
+        ObjectStore.local().write("commits", curr.getHash(), curr.encode());
+        CommitIndex.local().add(curr.getHash());
+        MessageIndex.local().add(curr.getHash(), curr.getMessage());
     }
-    /** Writing into a branch with an assumption that the branch FILE
-     *  is created already.
+    /** Writing into a branch, creating it if needed.
      * @param branch branch to write in
      * @param hashCommit commit to be written
      *  */
-    private void writeBranch(String branch, String hashCommit) {
-        File branchPath = Utils.join(_branchPath, branch);
-        Utils.writeContents(branchPath, hashCommit);
+    void writeBranch(String branch, String hashCommit) {
+        Refs.local().write(branch, hashCommit);
+        _head = null;
     }
 
     /** Write in Commit Tree. */
     private void writeCTree() {
-        cTreePath = Utils.join(objectPath, "CTree");
+        File cTreePath = path();
         try {
             cTreePath.createNewFile();
         } catch (IOException e) {
@@ -126,52 +130,51 @@ public class CommitTree implements Serializable {
         Utils.writeObject(cTreePath, this);
     }
 
+    /** File the CommitTree of the repo at RepoRoot is serialized in.
+     *  @return the CTree file */
+    static File path() {
+        return RepoRoot.gitlet("objects", "CTree");
+    }
+
+    /** Directory of the remotes of the repo at RepoRoot.
+     *  @return the remotes directory */
+    private static File remotePath() {
+        return RepoRoot.gitlet("refs", "remotes");
+    }
+
     /** Check if is in HEAD blob.
      * @param fname filename
      * @return is returnable*/
     boolean isInHEADBlob(String fname) {
-        return getHeadCommit().blobsMap().containsKey(fname);
+        return getHeadCommit().blobHash(fname) != null;
+    }
+    /** Drop the cached HEAD, for refs may have been written by another
+     *  process since it was read. */
+    void forgetHead() {
+        _head = null;
     }
-    /** Getter for head commit. Might be inefficient since every
-     *  request require a I/O operation.
+
+    /** Getter for head commit, cached until a ref is written.
      *  @return the HEAD
      *  */
     Commit getHEAD() {
         return getHeadCommit();
     }
 
-    /** Make a new file with the branch name, and write in the HEAD hash.
+    /** Make a new branch, and write in the HEAD hash.
      * @param branch is a new branch*/
     public void createBranch(String branch) {
-        String headHash = getHeadCommit().getHash();
-        File path = Utils.join(_branchPath, branch);
-        Utils.writeContents(path, headHash);
+        Refs.local().write(branch, getHeadCommit().getHash());
         writeCTree();
     }
 
     /** Helper function for merge to get a chain list of parent
-     *  starting from a commit. Returns a HashSet of parents' id.
+     *  starting from a commit. Returns a HashSet of parents' id, read
+     *  off the commit graph.
      *  @param curr curr commit
      *  @return a new set of parents*/
     Set<String> getParentChain(Commit curr) {
-        Set<String> idSet = new HashSet<>();
-        idSet.add(curr.getHash());
-        List<String> prober = new ArrayList<>();
-        prober.add(curr.getHash());
-
-        while (!prober.isEmpty()) {
-            Commit step = Utils.uidToCommit(prober.get(0));
-            if (step.getParent() != null) {
-                prober.add(step.getParent());
-                idSet.add(step.getParent());
-            }
-            if (step.getMergeParent() != null) {
-                prober.add(step.getMergeParent());
-                idSet.add(step.getMergeParent());
-            }
-            prober.remove(0);
-        }
-        return idSet;
+        return CommitGraph.local().ancestors(curr.getHash());
     }
 
     /** Gitlet command for pushing.
@@ -179,8 +182,8 @@ public class CommitTree implements Serializable {
      * @param remote given remote to push to */
     public void push(String remote, String branch) {
         checkPushCondition(remote, branch);
-        File requested = Utils.join(_remotePath, remote);
-        Remote stored = Utils.readObject(requested, Remote.class);
+        File requested = Utils.join(remotePath(), remote);
+        Remote stored = Remote.read(requested);
 
         copyFutureCommits(stored, branch);
         writeForeignBranch(stored, branch);
@@ -188,32 +191,22 @@ public class CommitTree implements Serializable {
                 + remote + SLASH + branch + " successful.");
     }
 
-    /** Gitlet command for fetching.
+    /** Gitlet command for fetching. Only the commits of the remote
+     *  branch we do not have yet, and the trees and blobs they bring,
+     *  are copied (see Transfer).
      * @param branch branch name
      * @param remote given remote to fetch from */
     public void fetch(String remote, String branch) {
         checkFetchCondition(remote, branch);
-        File requested = Utils.join(_remotePath, remote);
-        Remote stored = Utils.readObject(requested, Remote.class);
-        File abBranchPath = Utils.join(stored.location(),
-                    "refs" + SLASH + "branches");
-        File abCommitPath = Utils.join(stored.location(),
-                    "objects" + SLASH + "commits");
-        File abBlobsPath = Utils.join(stored.location(),
-                    "objects" + SLASH + "blobs");
-        String remoteHeadHash
-                = Utils.readContentsAsString(Utils.join(abBranchPath, branch));
+        File requested = Utils.join(remotePath(), remote);
+        Remote stored = Remote.read(requested);
+        ObjectStore theirs = new ObjectStore(stored.location());
+        String remoteHeadHash = new Refs(stored.location()).read(branch);
 
-        recursiveWriteCommits(remoteHeadHash, abCommitPath,
-                new ArrayList<>());
-        List<String> fetchBlobs = Utils.plainFilenamesIn(abBlobsPath);
-        assert fetchBlobs != null;
-        for (String b : fetchBlobs) {
-            byte[] remoteBlobsContents
-                    = Utils.readContents((Utils.join(abBlobsPath, b)));
-            Utils.writeContents(Utils.join(_blobsPath, b),
-                    remoteBlobsContents);
-        }
+        new Transfer(theirs, ObjectStore.local()).copy(remoteHeadHash,
+                Refs.local().read(remote + "_" + branch),
+                getHeadCommit().getHash());
+        CommitGraph.local().add(remoteHeadHash);
         overWriteBranch(remote + "_" + branch, remoteHeadHash);
     }
 
@@ -222,62 +215,19 @@ public class CommitTree implements Serializable {
      *  @param stored a remote object converted
      *  @param branch is a branch name */
     private void writeForeignBranch(Remote stored, String branch) {
-        File toWrite = Utils.join(stored.location(),
-                    "refs" + SLASH + "branches" + SLASH + branch);
-        Utils.writeContents(toWrite, getHeadCommit().getHash());
+        new Refs(stored.location()).write(branch, getHeadCommit().getHash());
     }
 
-    /** Commit all commits in the future of remote's given branch head.
+    /** Copy the commits of HEAD's history the remote lacks, and the
+     *  trees and blobs they bring that it lacks, each once (see
+     *  Transfer). The walk stops at commits the remote has, among them
+     *  the head of its branch.
      *  @param stored is a remote object converted back
      *  @param branch is branch name given */
     private void copyFutureCommits(Remote stored, String branch) {
-        File remHeadPath = Utils.join(stored.location(),
-                "refs" + SLASH + "branches" + SLASH + branch);
-        String remHeadHash = Utils.readContentsAsString(remHeadPath);
-        String headHash = getHeadCommit().getHash();
-        List<String> prober = new ArrayList<>();
-        prober.add(headHash);
-
-        foreignCommit(stored, headHash, Utils.uidToCommit(headHash));
-        while (!prober.isEmpty()) {
-            Commit step = Utils.uidToCommit(prober.remove(0));
-            String p = step.getParent();
-            String mp = step.getMergeParent();
-            if (p != null && !p.equals(remHeadHash)) {
-                prober.add(step.getParent());
-            }
-            if (mp != null && !mp.equals(remHeadHash)) {
-                prober.add(step.getMergeParent());
-            }
-            foreignCommit(stored, step.getHash(), step);
-        }
-    }
-
-    /** A helper for copying commit to foreign remote.
-     *  Also deals with blobs copying.
-     * @param fname is filename
-     * @param commit is assigned commit that would be written in
-     * @param stored is a remote object previously added */
-    private void foreignCommit(Remote stored, String fname, Commit commit) {
-        File absPath = Utils.join(stored.location(),
-                "objects" + SLASH + "commits" + SLASH + fname);
-        Utils.writeObject(absPath, commit);
-        File remoteBlobDir
-                = Utils.join(stored.location(), "objects" + SLASH + "blobs");
-        foreignCopyBlobs(commit.blobsMap(), remoteBlobDir);
-    }
-
-    /** Helper function to move blobs to remote blobs directory, when
-     *  `gitlet push` is called.
-     *  @param blobsMap current local commit's blob map
-     *  @param absDir is the blobs path in remote to write in. */
-    private void foreignCopyBlobs(HashMap<String, String> blobsMap,
-                                  File absDir) {
-        for (String fname : blobsMap.keySet()) {
-            File blobSerialized = Utils.join(_blobsPath, blobsMap.get(fname));
-            Blob target = Utils.readObject(blobSerialized, Blob.class);
-            Utils.writeObject(Utils.join(absDir, blobsMap.get(fname)), target);
-        }
+        new Transfer(ObjectStore.local(), new ObjectStore(stored.location()))
+                .copy(getHeadCommit().getHash(),
+                        new Refs(stored.location()).read(branch));
     }
 
     /** A helper for copying commit to overwrite remote's branch.
@@ -285,46 +235,34 @@ public class CommitTree implements Serializable {
      * @param remoteHead is the head hash of remote branch
      * */
     private void overWriteBranch(String bName, String remoteHead) {
-        File branchPath = Utils.join(_branchPath, bName);
-        Utils.writeContents(branchPath, remoteHead);
-    }
-
-    /** To fetch all commits from given parent and write them
-     * into local repo, from remote.
-     *  @param cHash is commit hash
-     *  @param absPath absolute path to commit that would be written
-     *  @param memo memoization for efficient writing */
-    private void recursiveWriteCommits(String cHash,
-                                       File absPath, List<String> memo) {
-        if (cHash == null || memo.contains(cHash)) {
-            return;
-        }
-        Commit curr
-                = Utils.readObject(Utils.join(absPath, cHash), Commit.class);
-        writeCommit(curr);
-
-        memo.add(cHash);
-        recursiveWriteCommits(curr.getParent(), absPath, memo);
-        recursiveWriteCommits(curr.getMergeParent(), absPath, memo);
+        writeBranch(bName, remoteHead);
     }
 
     /** Check fetch condition.
      * @param remote is remote name
      * @param branch is remote's branch name */
     private void checkFetchCondition(String remote, String branch) {
-        File requested = Utils.join(_remotePath, remote);
-        Remote stored = Utils.readObject(requested, Remote.class);
-        String localBranch = "refs" + SLASH + "branches" + SLASH + branch;
+        File requested = Utils.join(remotePath(), remote);
+        Remote stored = Remote.read(requested);
         if (!requested.exists() || !stored.location().exists()) {
             throw new GitletException("Remote directory not found.");
         }
-        File branchPath = Utils.join(stored.location(), localBranch);
-        if (!branchPath.exists()) {
+        checkRemoteFormat(stored);
+        if (!new Refs(stored.location()).exists(branch)) {
             throw new GitletException("That remote does"
                     + " not have that branch.");
         }
     }
 
+    /** Refuse a remote whose objects are laid out by an older gitlet.
+     *  @param stored a converted remote object */
+    private void checkRemoteFormat(Remote stored) {
+        if (!Migration.isCurrent(stored.location())) {
+            throw new GitletException("The remote repository uses an old "
+                    + "format. Run `gitlet migrate` in it first.");
+        }
+    }
+
     /** Helper function to checkout current head's file to remote's cwd,
      *  also move over necessary blobs.
      *  @param stored is a converted remote object*/
@@ -337,22 +275,14 @@ public class CommitTree implements Serializable {
         Set<String> filesToTrack = headBlobs.keySet();
 
         for (String i : filesToTrack) {
-            Utils.writeContents(Utils.join(remoteCWD, i),
-                    findBlobByUID(headBlobs.get(i)).getContent());
+            ObjectStore.local().copyTo("blobs", headBlobs.get(i),
+                    Utils.join(remoteCWD, i));
             currDest.remove(i);
         }
         for (String c : currDest) {
             Utils.join(remoteCWD, c).delete();
         }
     }
-    /** Helper function that maps UID to Blob object.
-     * @param blobHash is file
-     * @return the corresponding blob
-     * */
-    private Blob findBlobByUID(String blobHash) {
-        return Utils.readObject(Utils.join(_blobsPath, blobHash), Blob.class);
-    }
-
     /** Check condition before pushing.
      *  If existing remote does not have the requested branch, do
      *  not error, just create the branch later (not in this function.
@@ -360,21 +290,20 @@ public class CommitTree implements Serializable {
      * @param branch a given branch name
      * @return true if the requested branch exists. */
     private boolean checkPushCondition(String remote, String branch) {
-        File requested = Utils.join(_remotePath, remote);
+        File requested = Utils.join(remotePath(), remote);
         if (!requested.exists()) {
             throw new GitletException("Remote directory not found.");
         }
-        Remote stored = Utils.readObject(requested, Remote.class);
+        Remote stored = Remote.read(requested);
         if (!stored.location().exists()) {
             throw new GitletException("Remote directory not found.");
         }
+        checkRemoteFormat(stored);
 
-        String dir = "refs" + SLASH + "branches" + SLASH + branch;
-        File actualBranch = Utils.join(stored.location(), dir);
-        if (actualBranch.exists()) {
-            String remoteHEAD = Utils.readContentsAsString(actualBranch);
-            boolean inHistory
-                    = getParentChain(getHeadCommit()).contains(remoteHEAD);
+        String remoteHEAD = new Refs(stored.location()).read(branch);
+        if (remoteHEAD != null) {
+            boolean inHistory = CommitGraph.local()
+                    .isAncestor(remoteHEAD, getHeadCommit().getHash());
             if (!inHistory) {
                 throw new GitletException("Please pull down"
                         + " remote changes before pushing.");
@@ -384,25 +313,12 @@ public class CommitTree implements Serializable {
         return false;
     }
 
+    /** Version of this class, pinned so older repos stay readable. */
+    private static final long serialVersionUID = -7835834525381945452L;
+    /** HEAD commit, null until read or after a ref is written. */
+    private transient Commit _head;
     /** Current branch name. Default to master. */
     private String _currBranch = "master";
     /** File separator. */
     private static final String SLASH = File.separator;
-    /** Object path. */
-    private File objectPath = new File("." + SLASH
-            + ".gitlet" + SLASH + "objects");
-    /** Branch path. */
-    private File _branchPath = new File("." + SLASH
-            + ".gitlet" + SLASH + "refs" + SLASH + "branches");
-    /** Commits path. */
-    private File _commitPath = new File("." + SLASH
-            + ".gitlet" + SLASH + "objects" + SLASH + "commits");
-    /** Commit Tree path. */
-    private static File cTreePath;
-    /** Path File to remote. */
-    private File _remotePath = new File("." + SLASH
-            + ".gitlet" + SLASH + "refs" + SLASH + "remotes");
-    /** Path File to local blobs. */
-    private File _blobsPath = new File("." + SLASH
-            + ".gitlet" + SLASH + "objects" + SLASH + "blobs");
 }
@@ -0,0 +1,236 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/** Daemon class for Gitlet, the tiny stupid version-control system.
+ *  `gitlet daemon` serves the repo in CWD on the Unix domain socket
+ *  .gitlet/daemon.sock, so that commands skip JVM startup and find the
+ *  object cache, packs, commit graph and Repo already loaded. Requests
+ *  are run one at a time through Main.run(), with System.out and
+ *  System.err sent back to the client, so output and exit codes are
+ *  those of a direct run. The protocol: the client sends the number of
+ *  arguments and each argument (writeUTF); the daemon answers with
+ *  frames (tag, length, bytes) tagged OUT or ERR, then an EXIT frame
+ *  holding the exit code. `gitlet daemon stop` stops it.
+ *  @author Kevin Li
+ */
+class Daemon {
+
+    /** Not meant to be instantiated. */
+    private Daemon() { }
+
+    /** Gitlet command daemon.
+     *  @param args "daemon", optionally followed by "stop" */
+    static void command(String... args) {
+        if (args.length == 1) {
+            serve();
+        } else if (args.length == 2 && args[1].equals("stop")) {
+            if (!socket().exists()
+                    || request(args, System.out, System.err) == NO_DAEMON) {
+                throw new GitletException("No gitlet daemon is running.");
+            }
+        } else {
+            throw new GitletException("Incorrect operands.");
+        }
+    }
+
+    /** Send ARGS to the daemon of the repo in CWD and copy its output.
+     *  Only a failure to connect means there is no daemon: once the
+     *  request is sent it may have run, so a later failure is reported
+     *  and must not be retried in-process.
+     *  @param args command and operands
+     *  @param out where the output of the command goes
+     *  @param err where its error output goes
+     *  @return the exit code, or NO_DAEMON if no daemon answered */
+    static int request(String[] args, OutputStream out, OutputStream err) {
+        SocketChannel ch;
+        try {
+            ch = SocketChannel.open(
+                    UnixDomainSocketAddress.of(socket().toPath()));
+        } catch (IOException e) {
+            return NO_DAEMON;
+        }
+        try (ch) {
+            DataOutputStream req = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(ch)));
+            req.writeInt(args.length);
+            for (String arg : args) {
+                req.writeUTF(arg);
+            }
+            req.flush();
+            DataInputStream resp = new DataInputStream(
+                    Channels.newInputStream(ch));
+            while (true) {
+                int tag = resp.readByte();
+                byte[] data = new byte[resp.readInt()];
+                resp.readFully(data);
+                if (tag == EXIT) {
+                    out.flush();
+                    err.flush();
+                    return ByteBuffer.wrap(data).getInt();
+                }
+                OutputStream dest = (tag == ERR) ? err : out;
+                dest.write(data);
+            }
+        } catch (IOException e) {
+            try {
+                out.flush();
+                String why = (e.getMessage() == null) ? ""
+                        : ": " + e.getMessage();
+                err.write(("Lost the connection to the gitlet daemon"
+                        + why + "\n").getBytes());
+                err.flush();
+            } catch (IOException ignored) {
+                // nowhere left to report it
+            }
+            return LOST;
+        }
+    }
+
+    /** The socket the daemon of the repo listens on.
+     *  @return .gitlet/daemon.sock under RepoRoot */
+    static File socket() {
+        return RepoRoot.gitlet("daemon.sock");
+    }
+
+    /** Serve requests until asked to stop. */
+    private static void serve() {
+        File socket = socket();
+        if (socket.exists()) {
+            if (request(new String[] {"daemon", "ping"},
+                    OutputStream.nullOutputStream(),
+                    OutputStream.nullOutputStream()) != NO_DAEMON) {
+                throw new GitletException("A gitlet daemon is already "
+                        + "running.");
+            }
+            socket.delete();
+        }
+        try (ServerSocketChannel server
+                     = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket.toPath()));
+            Runtime.getRuntime().addShutdownHook(new Thread(socket::delete));
+            System.out.println("Serving " + new File(".").getCanonicalPath()
+                    + " on " + socket.getPath());
+            System.out.flush();
+            boolean running = true;
+            while (running) {
+                try (SocketChannel ch = server.accept()) {
+                    running = handle(ch);
+                } catch (IOException e) {
+                    System.err.println("Request failed: " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            throw new GitletException("Cannot start the daemon: "
+                    + e.getMessage());
+        } finally {
+            socket.delete();
+        }
+    }
+
+    /** Run one request. Whatever a command throws, Errors included, is
+     *  reported the way the JVM would report it in a direct run, exit
+     *  code 1 and all, and the daemon goes on serving with a cold repo.
+     *  @param ch connection of a client
+     *  @return false if the daemon was asked to stop */
+    private static boolean handle(SocketChannel ch) throws IOException {
+        DataInputStream req = new DataInputStream(Channels.newInputStream(ch));
+        String[] args = new String[req.readInt()];
+        for (int i = 0; i < args.length; i++) {
+            args[i] = req.readUTF();
+        }
+        DataOutputStream resp = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(ch)));
+        PrintStream out = new PrintStream(new BufferedOutputStream(
+                new FrameStream(resp, OUT)));
+        PrintStream err = new PrintStream(new BufferedOutputStream(
+                new FrameStream(resp, ERR)));
+        boolean control = args.length > 0 && args[0].equals("daemon");
+        int code = 0;
+        PrintStream stdout = System.out, stderr = System.err;
+        System.setOut(out);
+        System.setErr(err);
+        try {
+            if (control && args.length == 1) {
+                Utils.message("A gitlet daemon is already running.");
+            } else if (!control) {
+                code = Main.run(args);
+                Repo.keepWarm(Main.lastRepo());
+            }
+        } catch (Throwable e) {
+            err.print("Exception in thread \"main\" ");
+            e.printStackTrace(err);
+            Repo.keepWarm(null);
+            code = 1;
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        out.flush();
+        err.flush();
+        resp.writeByte(EXIT);
+        resp.writeInt(4);
+        resp.writeInt(code);
+        resp.flush();
+        return !(control && args.length == 2 && args[1].equals("stop"));
+    }
+
+    /** An output stream writing each chunk as one frame of a tag. */
+    private static class FrameStream extends OutputStream {
+        /** Constructor.
+         *  @param out the connection
+         *  @param tag OUT or ERR */
+        FrameStream(DataOutputStream out, int tag) {
+            _out = out;
+            _tag = tag;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return;
+            }
+            _out.writeByte(_tag);
+            _out.writeInt(len);
+            _out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            _out.flush();
+        }
+
+        /** The connection. */
+        private DataOutputStream _out;
+        /** Tag of every frame. */
+        private int _tag;
+    }
+
+    /** Frame tag of standard output. */
+    private static final int OUT = 1;
+    /** Frame tag of error output. */
+    private static final int ERR = 2;
+    /** Frame tag of the exit code, always last. */
+    private static final int EXIT = 3;
+    /** What request() returns when no daemon answered. */
+    static final int NO_DAEMON = -1;
+    /** Exit code of a request whose connection broke after it was sent. */
+    static final int LOST = 1;
+}
@@ -0,0 +1,197 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Daemon for Gitlet, the tiny stupid version-control system.
+ *  Each test serves a fresh repo from a thread and sends it requests
+ *  over the socket, checking output and exit code against a direct run
+ *  of the same command in this JVM.
+ *  @author Kevin Li
+ */
+public class DaemonTest {
+
+    /** Create a repo and start serving it. */
+    @Before
+    public void setUp() throws IOException, InterruptedException {
+        _dir = Files.createTempDirectory("gitlet").toFile();
+        RepoRoot.set(_dir);
+        assertEquals(0, direct("init").code);
+        PrintStream stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            _daemon = new Thread(() -> Daemon.command("daemon"));
+            _daemon.start();
+            for (int i = 0; i < WAIT_TRIES; i++) {
+                if (Daemon.request(new String[] {"daemon"},
+                        OutputStream.nullOutputStream(),
+                        OutputStream.nullOutputStream())
+                        != Daemon.NO_DAEMON) {
+                    return;
+                }
+                Thread.sleep(WAIT_MILLIS);
+            }
+            fail("The daemon did not start.");
+        } finally {
+            System.setOut(stdout);
+        }
+    }
+
+    /** Stop the daemon and delete the repo. */
+    @After
+    public void tearDown() throws IOException, InterruptedException {
+        daemon("daemon", "stop");
+        _daemon.join();
+        Repo.keepWarm(null);
+        ObjectCache.shared().clear();
+        RepoRoot.set(new File("."));
+        try (Stream<Path> files = Files.walk(_dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    /** What a command printed and returned. */
+    private static class Result {
+        /** Standard output. */
+        private String out;
+        /** Error output. */
+        private String err;
+        /** Exit code. */
+        private int code;
+    }
+
+    /** Run ARGS in this JVM, reporting a throw the way the JVM does.
+     *  @param args command and operands
+     *  @return what it printed and returned */
+    private static Result direct(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(),
+                err = new ByteArrayOutputStream();
+        PrintStream stdout = System.out, stderr = System.err;
+        System.setOut(new PrintStream(out, true));
+        System.setErr(new PrintStream(err, true));
+        Result result = new Result();
+        try {
+            result.code = Main.run(args);
+        } catch (Throwable e) {
+            System.err.print("Exception in thread \"main\" ");
+            e.printStackTrace();
+            result.code = 1;
+        } finally {
+            System.setOut(stdout);
+            System.setErr(stderr);
+        }
+        result.out = out.toString();
+        result.err = err.toString();
+        return result;
+    }
+
+    /** Send ARGS to the daemon.
+     *  @param args command and operands
+     *  @return what it sent back */
+    private static Result daemon(String... args) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(),
+                err = new ByteArrayOutputStream();
+        Result result = new Result();
+        result.code = Daemon.request(args, out, err);
+        assertTrue("no daemon", result.code != Daemon.NO_DAEMON);
+        result.out = out.toString();
+        result.err = err.toString();
+        return result;
+    }
+
+    /** Check that the daemon answers ARGS as a direct run does.
+     *  @param args command and operands, which must not change the
+     *              repo */
+    private static void assertSameRun(String... args) {
+        Result expected = direct(args), actual = daemon(args);
+        String cmd = String.join(" ", args);
+        assertEquals(cmd, expected.out, actual.out);
+        assertEquals(cmd, expected.err, actual.err);
+        assertEquals(cmd, expected.code, actual.code);
+    }
+
+    /** Write CONTENTS to the working file FNAME.
+     *  @param fname file name
+     *  @param contents new contents */
+    private static void write(String fname, String contents) {
+        Utils.writeContents(RepoRoot.file(fname), contents);
+    }
+
+    @Test
+    public void answersLikeDirectRun() {
+        assertSameRun();
+        assertSameRun("foo");
+        assertSameRun("status");
+        assertSameRun("log");
+        assertSameRun("find", "nope");
+        assertSameRun("checkout", "nope");
+        assertSameRun("add", "missing.txt");
+        assertSameRun("commit", "a", "b");
+    }
+
+    @Test
+    public void seesChangesOfBothSides() {
+        write("wug.txt", "wug\n");
+        assertEquals(0, daemon("add", "wug.txt").code);
+        assertSameRun("status");
+        assertEquals(0, daemon("commit", "added wug").code);
+        assertSameRun("log");
+        assertSameRun("status");
+        write("wug.txt", "not a wug\n");
+        assertEquals(0, direct("add", "wug.txt").code);
+        assertSameRun("status");
+        assertEquals(0, direct("commit", "changed wug").code);
+        assertSameRun("log");
+        assertSameRun("global-log");
+        assertSameRun("find", "changed wug");
+    }
+
+    @Test
+    public void survivesAnError() {
+        write("wug.txt", "a\n");
+        direct("add", "wug.txt");
+        direct("commit", "a");
+        direct("branch", "other");
+        write("wug.txt", "b\n");
+        String lost = new Blob(RepoRoot.file("wug.txt")).getHash();
+        direct("add", "wug.txt");
+        direct("commit", "b");
+        direct("checkout", "other");
+        write("wug.txt", "c\n");
+        direct("add", "wug.txt");
+        direct("commit", "c");
+        direct("checkout", "master");
+        assertTrue(ObjectStore.local().looseFile("blobs", lost).delete());
+        ObjectCache.shared().clear();
+
+        Result broken = daemon("merge", "other");
+        assertEquals(1, broken.code);
+        assertTrue(broken.err,
+                broken.err.startsWith("Exception in thread \"main\" "));
+        assertSameRun("status");
+        assertSameRun("log");
+    }
+
+    /** How many times setUp() tries the socket. */
+    private static final int WAIT_TRIES = 200;
+    /** How long it waits between tries. */
+    private static final long WAIT_MILLIS = 25;
+
+    /** Working directory of the test. */
+    private File _dir;
+    /** Thread serving the repo. */
+    private Thread _daemon;
+}
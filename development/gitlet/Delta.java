@@ -0,0 +1,180 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+
+/** Delta class for Gitlet, the tiny stupid version-control system.
+ *  Encodes one byte array as a list of instructions against another,
+ *  so that a packfile only stores what changed between two versions.
+ *  A delta starts with the base length and the result length, followed
+ *  by COPY (offset, length into base) and INSERT (literal bytes) ops.
+ *  @author Kevin Li
+ */
+class Delta {
+
+    /** Not meant to be instantiated. */
+    private Delta() { }
+
+    /** Compute a delta that turns BASE into TARGET.
+     *  @param base the base object
+     *  @param target the object to be encoded
+     *  @return the encoded delta */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int[] table = indexBlocks(base);
+        int mask = table.length - 1;
+        int pending = 0;
+        int i = 0;
+        while (i + BLOCK <= target.length) {
+            int candidate = table[hash(target, i) & mask] - 1;
+            int len = 0;
+            if (candidate >= 0) {
+                while (candidate + len < base.length
+                        && i + len < target.length
+                        && base[candidate + len] == target[i + len]) {
+                    len++;
+                }
+            }
+            if (len < BLOCK) {
+                i++;
+                continue;
+            }
+            int back = 0;
+            while (back < i - pending && back < candidate
+                    && base[candidate - back - 1] == target[i - back - 1]) {
+                back++;
+            }
+            writeInsert(out, target, pending, i - back);
+            writeCopy(out, candidate - back, len + back);
+            i += len;
+            pending = i;
+        }
+        writeInsert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Rebuild an object from its base and a delta.
+     *  @param base the base object
+     *  @param delta a delta produced by create()
+     *  @return the original object */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        int baseLen = readVarint(delta, pos);
+        int resultLen = readVarint(delta, pos);
+        if (baseLen != base.length) {
+            throw new GitletException("Corrupt delta: base mismatch.");
+        }
+        byte[] result = new byte[resultLen];
+        int written = 0;
+        while (pos[0] < delta.length) {
+            int op = delta[pos[0]++];
+            if (op == COPY) {
+                int offset = readVarint(delta, pos);
+                int len = readVarint(delta, pos);
+                System.arraycopy(base, offset, result, written, len);
+                written += len;
+            } else if (op == INSERT) {
+                int len = readVarint(delta, pos);
+                System.arraycopy(delta, pos[0], result, written, len);
+                pos[0] += len;
+                written += len;
+            } else {
+                throw new GitletException("Corrupt delta: unknown op.");
+            }
+        }
+        if (written != resultLen) {
+            throw new GitletException("Corrupt delta: length mismatch.");
+        }
+        return result;
+    }
+
+    /** Hash every aligned block of BASE into an open table that maps a
+     *  block hash to (offset + 1). Later blocks win on collision.
+     *  @param base the base object
+     *  @return the table, whose length is a power of two */
+    private static int[] indexBlocks(byte[] base) {
+        int size = 16;
+        while (size < 2 * (base.length / BLOCK + 1)) {
+            size <<= 1;
+        }
+        int[] table = new int[size];
+        for (int i = 0; i + BLOCK <= base.length; i += BLOCK) {
+            table[hash(base, i) & (size - 1)] = i + 1;
+        }
+        return table;
+    }
+
+    /** Hash of the BLOCK bytes starting at START.
+     *  @param data array
+     *  @param start offset
+     *  @return the hash */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i++) {
+            h = h * 31 + data[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Emit an INSERT op for DATA[FROM..TO), if non-empty.
+     *  @param out output
+     *  @param data source
+     *  @param from start
+     *  @param to end */
+    private static void writeInsert(ByteArrayOutputStream out, byte[] data,
+                                    int from, int to) {
+        if (to > from) {
+            out.write(INSERT);
+            writeVarint(out, to - from);
+            out.write(data, from, to - from);
+        }
+    }
+
+    /** Emit a COPY op.
+     *  @param out output
+     *  @param offset offset in base
+     *  @param len number of bytes */
+    private static void writeCopy(ByteArrayOutputStream out,
+                                  int offset, int len) {
+        out.write(COPY);
+        writeVarint(out, offset);
+        writeVarint(out, len);
+    }
+
+    /** Write a non-negative int using 7 bits per byte.
+     *  @param out output
+     *  @param value the value */
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** Read an int written by writeVarint, advancing POS[0].
+     *  @param data source
+     *  @param pos one-element cursor
+     *  @return the value */
+    static int readVarint(byte[] data, int[] pos) {
+        int result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = data[pos[0]++] & 0xff;
+            result |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return result;
+    }
+
+    /** Most bytes a varint of an int takes. */
+    static final int MAX_VARINT = 5;
+    /** Minimum match length, also the granularity of the base index. */
+    private static final int BLOCK = 16;
+    /** Op code for inserting literal bytes. */
+    private static final int INSERT = 0;
+    /** Op code for copying from the base. */
+    private static final int COPY = 1;
+}
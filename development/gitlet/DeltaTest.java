@@ -0,0 +1,97 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Delta for Gitlet, the tiny stupid version-control system.
+ *  @author Kevin Li
+ */
+public class DeltaTest {
+
+    /** Random bytes.
+     *  @param size how many
+     *  @param seed random seed
+     *  @return the bytes */
+    private static byte[] random(int size, long seed) {
+        byte[] result = new byte[size];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /** Check that the delta from BASE to TARGET rebuilds TARGET.
+     *  @param base the base object
+     *  @param target the object to encode
+     *  @return the delta */
+    private static byte[] roundTrip(byte[] base, byte[] target) {
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        return delta;
+    }
+
+    @Test
+    public void similarObjectsGiveSmallDelta() {
+        byte[] base = random(10000, 1);
+        byte[] target = Arrays.copyOf(base, base.length + 100);
+        System.arraycopy(random(100, 2), 0, target, base.length, 100);
+        target[5000] ^= 1;
+        byte[] delta = roundTrip(base, target);
+        assertTrue("delta is " + delta.length + " bytes",
+                delta.length < 300);
+    }
+
+    @Test
+    public void movedAndRepeatedBlocks() {
+        byte[] base = random(4096, 3);
+        byte[] target = new byte[3 * 1024];
+        System.arraycopy(base, 3072, target, 0, 1024);
+        System.arraycopy(base, 0, target, 1024, 1024);
+        System.arraycopy(base, 0, target, 2048, 1024);
+        byte[] delta = roundTrip(base, target);
+        assertTrue(delta.length < 100);
+    }
+
+    @Test
+    public void unrelatedObjects() {
+        roundTrip(random(1000, 4), random(1000, 5));
+    }
+
+    @Test
+    public void emptyAndShortObjects() {
+        byte[] some = random(100, 6);
+        roundTrip(new byte[0], new byte[0]);
+        roundTrip(new byte[0], some);
+        roundTrip(some, new byte[0]);
+        roundTrip(some, Arrays.copyOf(some, 15));
+        roundTrip(Arrays.copyOf(some, 15), some);
+    }
+
+    @Test(expected = GitletException.class)
+    public void wrongBaseIsRejected() {
+        byte[] base = random(1000, 7);
+        byte[] delta = Delta.create(base, random(1000, 8));
+        Delta.apply(Arrays.copyOf(base, 999), delta);
+    }
+
+    @Test
+    public void varints() {
+        int[] values = {0, 1, 0x7f, 0x80, 0x3fff, 0x4000, 1 << 28,
+            Integer.MAX_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int v : values) {
+            Delta.writeVarint(out, v);
+        }
+        byte[] data = out.toByteArray();
+        int[] pos = {0};
+        for (int v : values) {
+            int start = pos[0];
+            assertEquals(v, Delta.readVarint(data, pos));
+            assertTrue(pos[0] - start <= Delta.MAX_VARINT);
+        }
+        assertEquals(data.length, pos[0]);
+    }
+
+}
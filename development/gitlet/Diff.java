@@ -0,0 +1,780 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Diff class for Gitlet, the tiny stupid version-control system.
+ *  Line diffs of two files. The lines of both are first interned: each
+ *  distinct line gets a small int, found through an open-addressing
+ *  table over the bytes of the files, so the algorithms below compare
+ *  ints and allocate nothing in their inner loops. Two algorithms mark
+ *  which lines were deleted from A and inserted into B:
+ *  - myers, Myers' O(ND) algorithm in linear space (the middle snake,
+ *    then each half), as GNU diff runs it: lines that do not occur in
+ *    the other file at all are marked first and left out of the search,
+ *    and once a search grows too expensive the furthest-reaching
+ *    diagonal is taken as the split, which gives up minimality for a
+ *    bounded running time.
+ *  - histogram, as in JGit: a region is split around the common line
+ *    that is rarest in A (at most MAX_CHAIN occurrences), extended to
+ *    the longest common run through it, and regions without such a line
+ *    fall back to myers. This keeps unique lines such as function
+ *    headers matched, which reads better.
+ *  Both return the result as a list of edits, which unified() prints as
+ *  hunks and which is what a line-level merge needs.
+ *  @author Kevin Li
+ */
+class Diff {
+
+    /** A diff of the interned lines A and B, nothing marked yet.
+     *  @param a interned lines of the old file
+     *  @param b interned lines of the new file */
+    private Diff(int[] a, int[] b) {
+        _a = a;
+        _b = b;
+        _changedA = new boolean[a.length];
+        _changedB = new boolean[b.length];
+        int ids = 0;
+        for (int id : a) {
+            ids = Math.max(ids, id + 1);
+        }
+        for (int id : b) {
+            ids = Math.max(ids, id + 1);
+        }
+        _ids = ids;
+    }
+
+    /** The edits from A to B by Myers' algorithm.
+     *  @param a interned lines of the old file
+     *  @param b interned lines of the new file
+     *  @return edits in order */
+    static List<Edit> myers(int[] a, int[] b) {
+        Diff diff = new Diff(a, b);
+        diff.myers(0, a.length, 0, b.length);
+        return diff.edits();
+    }
+
+    /** The edits from A to B by the histogram algorithm.
+     *  @param a interned lines of the old file
+     *  @param b interned lines of the new file
+     *  @return edits in order */
+    static List<Edit> histogram(int[] a, int[] b) {
+        Diff diff = new Diff(a, b);
+        diff.histogram();
+        return diff.edits();
+    }
+
+    /** Number the lines of A and B so that equal lines, and only those,
+     *  get equal ids, counting from 0.
+     *  @param a old file
+     *  @param b new file
+     *  @return the ids of the lines of A, then those of B */
+    static int[][] intern(Text a, Text b) {
+        Text[] texts = {a, b};
+        int total = a.size() + b.size();
+        int mask = Integer.highestOneBit(Math.max(2 * total, 16)) * 2 - 1;
+        int[] slots = new int[mask + 1];
+        Arrays.fill(slots, -1);
+        int[] hashes = new int[total];
+        int[] ownerText = new int[total];
+        int[] ownerLine = new int[total];
+        int[][] result = {new int[a.size()], new int[b.size()]};
+        int ids = 0;
+        for (int t = 0; t < 2; t++) {
+            Text text = texts[t];
+            for (int line = 0; line < text.size(); line++) {
+                int hash = text.hash(line);
+                int slot = hash & mask;
+                int id;
+                while ((id = slots[slot]) >= 0
+                        && (hashes[id] != hash || !texts[ownerText[id]]
+                            .sameLine(ownerLine[id], text, line))) {
+                    slot = (slot + 1) & mask;
+                }
+                if (id < 0) {
+                    id = ids++;
+                    slots[slot] = id;
+                    hashes[id] = hash;
+                    ownerText[id] = t;
+                    ownerLine[id] = line;
+                }
+                result[t][line] = id;
+            }
+        }
+        return result;
+    }
+
+    /** Append to OUT the edits EDITS from A to B as unified diff hunks,
+     *  with CONTEXT unchanged lines around each change. Changes closer
+     *  than twice CONTEXT share a hunk.
+     *  @param a old file
+     *  @param b new file
+     *  @param edits edits from A to B, in order
+     *  @param context lines of context
+     *  @param out buffer receiving the hunks */
+    static void unified(Text a, Text b, List<Edit> edits, int context,
+                        StringBuilder out) {
+        int i = 0;
+        while (i < edits.size()) {
+            int j = i;
+            while (j + 1 < edits.size() && edits.get(j + 1)._beginA
+                    - edits.get(j)._endA <= 2 * context) {
+                j++;
+            }
+            Edit first = edits.get(i);
+            Edit last = edits.get(j);
+            int lead = Math.min(context, first._beginA);
+            int trail = Math.min(context, a.size() - last._endA);
+            int aStart = first._beginA - lead;
+            int bStart = first._beginB - lead;
+            out.append("@@ -");
+            range(aStart, last._endA + trail - aStart, out);
+            out.append(" +");
+            range(bStart, last._endB + trail - bStart, out);
+            out.append(" @@\n");
+            int line = aStart;
+            for (int k = i; k <= j; k++) {
+                Edit edit = edits.get(k);
+                for (; line < edit._beginA; line++) {
+                    a.append(' ', line, out);
+                }
+                for (int x = edit._beginA; x < edit._endA; x++) {
+                    a.append('-', x, out);
+                }
+                for (int y = edit._beginB; y < edit._endB; y++) {
+                    b.append('+', y, out);
+                }
+                line = edit._endA;
+            }
+            for (; line < last._endA + trail; line++) {
+                a.append(' ', line, out);
+            }
+            i = j + 1;
+        }
+    }
+
+    /** Append to OUT the range of COUNT lines from line START (counting
+     *  from 0) as a hunk header shows it.
+     *  @param start first line
+     *  @param count number of lines
+     *  @param out buffer receiving the range */
+    private static void range(int start, int count, StringBuilder out) {
+        if (count == 0) {
+            out.append(start).append(",0");
+        } else {
+            out.append(start + 1);
+            if (count != 1) {
+                out.append(',').append(count);
+            }
+        }
+    }
+
+    /** Mark the changes between the whole of A and B by histogram. The
+     *  regions still to do are kept on a stack rather than recursed
+     *  into, since a long file may be split many times. */
+    private void histogram() {
+        int[] a = _a;
+        int[] b = _b;
+        int[] head = new int[_ids];
+        int[] count = new int[_ids];
+        int[] next = new int[a.length];
+        Arrays.fill(head, -1);
+        IntStack regions = new IntStack();
+        regions.push(0, a.length, 0, b.length);
+        while (!regions.isEmpty()) {
+            int bHi = regions.pop();
+            int bLo = regions.pop();
+            int aHi = regions.pop();
+            int aLo = regions.pop();
+            while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+                aLo++;
+                bLo++;
+            }
+            while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+                aHi--;
+                bHi--;
+            }
+            if (aLo == aHi || bLo == bHi) {
+                mark(aLo, aHi, bLo, bHi);
+                continue;
+            }
+            for (int i = aHi - 1; i >= aLo; i--) {
+                next[i] = head[a[i]];
+                head[a[i]] = i;
+                count[a[i]]++;
+            }
+            int bestLength = 0;
+            int lowest = MAX_CHAIN + 1;
+            int bestA = 0;
+            int bestB = 0;
+            for (int bi = bLo; bi < bHi;) {
+                int c = count[b[bi]];
+                if (c == 0 || c > lowest) {
+                    bi++;
+                    continue;
+                }
+                int after = bi + 1;
+                for (int ai = head[b[bi]]; ai >= 0; ai = next[ai]) {
+                    int as = ai;
+                    int bs = bi;
+                    int ae = ai + 1;
+                    int be = bi + 1;
+                    int rarest = c;
+                    while (as > aLo && bs > bLo && a[as - 1] == b[bs - 1]) {
+                        as--;
+                        bs--;
+                        rarest = Math.min(rarest, count[a[as]]);
+                    }
+                    while (ae < aHi && be < bHi && a[ae] == b[be]) {
+                        rarest = Math.min(rarest, count[a[ae]]);
+                        ae++;
+                        be++;
+                    }
+                    after = Math.max(after, be);
+                    if (be - bs > bestLength || rarest < lowest) {
+                        bestLength = be - bs;
+                        lowest = rarest;
+                        bestA = as;
+                        bestB = bs;
+                    }
+                }
+                bi = after;
+            }
+            for (int i = aLo; i < aHi; i++) {
+                head[a[i]] = -1;
+                count[a[i]] = 0;
+            }
+            if (bestLength == 0) {
+                myers(aLo, aHi, bLo, bHi);
+            } else {
+                regions.push(aLo, bestA, bLo, bestB);
+                regions.push(bestA + bestLength, aHi,
+                        bestB + bestLength, bHi);
+            }
+        }
+    }
+
+    /** Mark the changes between lines [ALO, AHI) of A and [BLO, BHI) of
+     *  B by Myers' algorithm. Lines found in only one of the two ranges
+     *  are marked at once and the search runs on the rest.
+     *  @param aLo first line of A
+     *  @param aHi end of the lines of A
+     *  @param bLo first line of B
+     *  @param bHi end of the lines of B */
+    private void myers(int aLo, int aHi, int bLo, int bHi) {
+        if (_inA == null) {
+            _inA = new int[_ids];
+            _inB = new int[_ids];
+        }
+        for (int i = aLo; i < aHi; i++) {
+            _inA[_a[i]]++;
+        }
+        for (int j = bLo; j < bHi; j++) {
+            _inB[_b[j]]++;
+        }
+        int[] keptA = new int[aHi - aLo];
+        int[] keptB = new int[bHi - bLo];
+        int n = 0;
+        int m = 0;
+        for (int i = aLo; i < aHi; i++) {
+            if (_inB[_a[i]] == 0) {
+                _changedA[i] = true;
+            } else {
+                keptA[n++] = i;
+            }
+        }
+        for (int j = bLo; j < bHi; j++) {
+            if (_inA[_b[j]] == 0) {
+                _changedB[j] = true;
+            } else {
+                keptB[m++] = j;
+            }
+        }
+        for (int i = aLo; i < aHi; i++) {
+            _inA[_a[i]] = 0;
+        }
+        for (int j = bLo; j < bHi; j++) {
+            _inB[_b[j]] = 0;
+        }
+        int[] x = new int[n];
+        int[] y = new int[m];
+        for (int i = 0; i < n; i++) {
+            x[i] = _a[keptA[i]];
+        }
+        for (int j = 0; j < m; j++) {
+            y[j] = _b[keptB[j]];
+        }
+        Myers search = new Myers(x, y);
+        search.run();
+        for (int i = 0; i < n; i++) {
+            if (search._changedX[i]) {
+                _changedA[keptA[i]] = true;
+            }
+        }
+        for (int j = 0; j < m; j++) {
+            if (search._changedY[j]) {
+                _changedB[keptB[j]] = true;
+            }
+        }
+    }
+
+    /** Mark lines [ALO, AHI) of A and [BLO, BHI) of B changed.
+     *  @param aLo first line of A
+     *  @param aHi end of the lines of A
+     *  @param bLo first line of B
+     *  @param bHi end of the lines of B */
+    private void mark(int aLo, int aHi, int bLo, int bHi) {
+        Arrays.fill(_changedA, aLo, aHi, true);
+        Arrays.fill(_changedB, bLo, bHi, true);
+    }
+
+    /** The marked lines as edits: each run of changed lines of A with
+     *  the run of changed lines of B at the same place.
+     *  @return edits in order */
+    private List<Edit> edits() {
+        List<Edit> result = new ArrayList<>();
+        int i = 0;
+        int j = 0;
+        while (i < _a.length || j < _b.length) {
+            if (i < _a.length && j < _b.length
+                    && !_changedA[i] && !_changedB[j]) {
+                i++;
+                j++;
+                continue;
+            }
+            int beginA = i;
+            int beginB = j;
+            while (i < _a.length && _changedA[i]) {
+                i++;
+            }
+            while (j < _b.length && _changedB[j]) {
+                j++;
+            }
+            result.add(new Edit(beginA, i, beginB, j));
+        }
+        return result;
+    }
+
+    /** The lines of a file. */
+    static class Text {
+        /** The lines of CONTENT. A last line without a newline is a line
+         *  too, different from the same line with one.
+         *  @param content file contents */
+        Text(byte[] content) {
+            _content = content;
+            int lines = 0;
+            for (byte c : content) {
+                if (c == '\n') {
+                    lines++;
+                }
+            }
+            if (content.length > 0 && content[content.length - 1] != '\n') {
+                lines++;
+            }
+            _starts = new int[lines + 1];
+            int line = 0;
+            for (int i = 0; i < content.length; i++) {
+                if (content[i] == '\n') {
+                    _starts[++line] = i + 1;
+                }
+            }
+            _starts[lines] = content.length;
+        }
+
+        /** Number of lines.
+         *  @return count */
+        int size() {
+            return _starts.length - 1;
+        }
+
+        /** Check whether the file looks binary: a NUL byte within its
+         *  first BINARY_PROBE bytes, as git decides.
+         *  @return true if binary */
+        boolean isBinary() {
+            int end = Math.min(_content.length, BINARY_PROBE);
+            for (int i = 0; i < end; i++) {
+                if (_content[i] == 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /** Hash of the bytes of LINE.
+         *  @param line line number
+         *  @return hash */
+        int hash(int line) {
+            int h = 0;
+            for (int i = _starts[line]; i < _starts[line + 1]; i++) {
+                h = 31 * h + _content[i];
+            }
+            return h ^ (h >>> 16);
+        }
+
+        /** Check whether LINE has the same bytes as line OTHERLINE of
+         *  OTHER.
+         *  @param line line number
+         *  @param other a text
+         *  @param otherLine line number in OTHER
+         *  @return true if equal */
+        boolean sameLine(int line, Text other, int otherLine) {
+            return Arrays.equals(_content, _starts[line], _starts[line + 1],
+                    other._content, other._starts[otherLine],
+                    other._starts[otherLine + 1]);
+        }
+
+        /** Append LINE to OUT behind PREFIX, with a newline, noting when
+         *  the file has none there.
+         *  @param prefix ' ', '-' or '+'
+         *  @param line line number
+         *  @param out buffer receiving the line */
+        void append(char prefix, int line, StringBuilder out) {
+            int start = _starts[line];
+            int end = _starts[line + 1];
+            boolean newline = end > start && _content[end - 1] == '\n';
+            out.append(prefix).append(new String(_content, start,
+                    end - start - (newline ? 1 : 0), StandardCharsets.UTF_8));
+            out.append('\n');
+            if (!newline) {
+                out.append("\\ No newline at end of file\n");
+            }
+        }
+
+        /** File contents. */
+        private byte[] _content;
+        /** Offset of each line in _content, and its length at the end. */
+        private int[] _starts;
+    }
+
+    /** Lines [beginA, endA) of A replaced by lines [beginB, endB) of B.
+     *  One side is empty for a pure deletion or insertion. */
+    static class Edit {
+        /** Constructor.
+         *  @param beginA first line of A
+         *  @param endA end of the lines of A
+         *  @param beginB first line of B
+         *  @param endB end of the lines of B */
+        Edit(int beginA, int endA, int beginB, int endB) {
+            _beginA = beginA;
+            _endA = endA;
+            _beginB = beginB;
+            _endB = endB;
+        }
+
+        /** Getter for the first line of A.
+         *  @return line number */
+        int beginA() {
+            return _beginA;
+        }
+
+        /** Getter for the end of the lines of A.
+         *  @return line number */
+        int endA() {
+            return _endA;
+        }
+
+        /** Getter for the first line of B.
+         *  @return line number */
+        int beginB() {
+            return _beginB;
+        }
+
+        /** Getter for the end of the lines of B.
+         *  @return line number */
+        int endB() {
+            return _endB;
+        }
+
+        @Override
+        public String toString() {
+            return "Edit(" + _beginA + "-" + _endA + ", " + _beginB + "-"
+                    + _endB + ")";
+        }
+
+        /** First line of A. */
+        private final int _beginA;
+        /** End of the lines of A. */
+        private final int _endA;
+        /** First line of B. */
+        private final int _beginB;
+        /** End of the lines of B. */
+        private final int _endB;
+    }
+
+    /** Myers' search over two sequences of ints X and Y, which marks the
+     *  elements of a shortest edit script, or a near-shortest one when a
+     *  split gets too expensive. */
+    private static final class Myers {
+        /** Constructor.
+         *  @param x old sequence
+         *  @param y new sequence */
+        Myers(int[] x, int[] y) {
+            _x = x;
+            _y = y;
+            _changedX = new boolean[x.length];
+            _changedY = new boolean[y.length];
+            _fd = new int[x.length + y.length + 3];
+            _bd = new int[x.length + y.length + 3];
+            _offset = y.length + 1;
+            int cost = 1;
+            for (int diags = x.length + y.length + 3; diags != 0;
+                 diags >>= 2) {
+                cost <<= 1;
+            }
+            _tooExpensive = Math.max(MIN_COST, cost);
+        }
+
+        /** Mark the changes between all of X and Y. */
+        void run() {
+            IntStack parts = new IntStack();
+            parts.push(0, _x.length, 0, _y.length);
+            while (!parts.isEmpty()) {
+                int yHi = parts.pop();
+                int yLo = parts.pop();
+                int xHi = parts.pop();
+                int xLo = parts.pop();
+                while (xLo < xHi && yLo < yHi && _x[xLo] == _y[yLo]) {
+                    xLo++;
+                    yLo++;
+                }
+                while (xLo < xHi && yLo < yHi
+                        && _x[xHi - 1] == _y[yHi - 1]) {
+                    xHi--;
+                    yHi--;
+                }
+                if (xLo == xHi || yLo == yHi) {
+                    Arrays.fill(_changedX, xLo, xHi, true);
+                    Arrays.fill(_changedY, yLo, yHi, true);
+                    continue;
+                }
+                split(xLo, xHi, yLo, yHi);
+                if (_midX == xLo && _midY == yLo
+                        || _midX == xHi && _midY == yHi) {
+                    Arrays.fill(_changedX, xLo, xHi, true);
+                    Arrays.fill(_changedY, yLo, yHi, true);
+                    continue;
+                }
+                parts.push(xLo, _midX, yLo, _midY);
+                parts.push(_midX, xHi, _midY, yHi);
+            }
+        }
+
+        /** Find the middle snake of [XLO, XHI) and [YLO, YHI), searching
+         *  forward from the start and backward from the end, one edit
+         *  more on each side per round, until the two meet. Sets _midX
+         *  and _midY to where the edit script crosses it. The ranges
+         *  must differ at both ends.
+         *  @param xLo first element of X
+         *  @param xHi end of the elements of X
+         *  @param yLo first element of Y
+         *  @param yHi end of the elements of Y */
+        private void split(int xLo, int xHi, int yLo, int yHi) {
+            int[] x = _x;
+            int[] y = _y;
+            int[] fd = _fd;
+            int[] bd = _bd;
+            int off = _offset;
+            int dMin = xLo - yHi;
+            int dMax = xHi - yLo;
+            int fMid = xLo - yLo;
+            int bMid = xHi - yHi;
+            int fMin = fMid;
+            int fMax = fMid;
+            int bMin = bMid;
+            int bMax = bMid;
+            boolean odd = ((fMid - bMid) & 1) != 0;
+            fd[fMid + off] = xLo;
+            bd[bMid + off] = xHi;
+            for (int c = 1;; c++) {
+                if (fMin > dMin) {
+                    fd[--fMin - 1 + off] = -1;
+                } else {
+                    fMin++;
+                }
+                if (fMax < dMax) {
+                    fd[++fMax + 1 + off] = -1;
+                } else {
+                    fMax--;
+                }
+                for (int d = fMax; d >= fMin; d -= 2) {
+                    int lo = fd[d - 1 + off];
+                    int hi = fd[d + 1 + off];
+                    int i = (lo < hi) ? hi : lo + 1;
+                    int j = i - d;
+                    while (i < xHi && j < yHi && x[i] == y[j]) {
+                        i++;
+                        j++;
+                    }
+                    fd[d + off] = i;
+                    if (odd && bMin <= d && d <= bMax && bd[d + off] <= i) {
+                        _midX = i;
+                        _midY = j;
+                        return;
+                    }
+                }
+                if (bMin > dMin) {
+                    bd[--bMin - 1 + off] = Integer.MAX_VALUE;
+                } else {
+                    bMin++;
+                }
+                if (bMax < dMax) {
+                    bd[++bMax + 1 + off] = Integer.MAX_VALUE;
+                } else {
+                    bMax--;
+                }
+                for (int d = bMax; d >= bMin; d -= 2) {
+                    int lo = bd[d - 1 + off];
+                    int hi = bd[d + 1 + off];
+                    int i = (lo < hi) ? lo : hi - 1;
+                    int j = i - d;
+                    while (i > xLo && j > yLo && x[i - 1] == y[j - 1]) {
+                        i--;
+                        j--;
+                    }
+                    bd[d + off] = i;
+                    if (!odd && fMin <= d && d <= fMax && i <= fd[d + off]) {
+                        _midX = i;
+                        _midY = j;
+                        return;
+                    }
+                }
+                if (c >= _tooExpensive) {
+                    cheapSplit(xLo, xHi, yLo, yHi, fMin, fMax, bMin, bMax);
+                    return;
+                }
+            }
+        }
+
+        /** Give up on the middle snake and split where the forward or the
+         *  backward search got furthest, whichever got further.
+         *  @param xLo first element of X
+         *  @param xHi end of the elements of X
+         *  @param yLo first element of Y
+         *  @param yHi end of the elements of Y
+         *  @param fMin lowest forward diagonal
+         *  @param fMax highest forward diagonal
+         *  @param bMin lowest backward diagonal
+         *  @param bMax highest backward diagonal */
+        private void cheapSplit(int xLo, int xHi, int yLo, int yHi,
+                                int fMin, int fMax, int bMin, int bMax) {
+            int fBest = -1;
+            int fBestX = 0;
+            for (int d = fMax; d >= fMin; d -= 2) {
+                int i = Math.min(_fd[d + _offset], xHi);
+                int j = i - d;
+                if (j > yHi) {
+                    i = yHi + d;
+                    j = yHi;
+                }
+                if (fBest < i + j) {
+                    fBest = i + j;
+                    fBestX = i;
+                }
+            }
+            int bBest = Integer.MAX_VALUE;
+            int bBestX = 0;
+            for (int d = bMax; d >= bMin; d -= 2) {
+                int i = Math.max(xLo, _bd[d + _offset]);
+                int j = i - d;
+                if (j < yLo) {
+                    i = yLo + d;
+                    j = yLo;
+                }
+                if (i + j < bBest) {
+                    bBest = i + j;
+                    bBestX = i;
+                }
+            }
+            if ((xHi + yHi) - bBest < fBest - (xLo + yLo)) {
+                _midX = fBestX;
+                _midY = fBest - fBestX;
+            } else {
+                _midX = bBestX;
+                _midY = bBest - bBestX;
+            }
+        }
+
+        /** Least edit cost at which a search settles for a cheap split. */
+        private static final int MIN_COST = 256;
+
+        /** Old sequence. */
+        private final int[] _x;
+        /** New sequence. */
+        private final int[] _y;
+        /** Elements of _x deleted. */
+        private final boolean[] _changedX;
+        /** Elements of _y inserted. */
+        private final boolean[] _changedY;
+        /** Furthest x reached forward on each diagonal, by diagonal. */
+        private final int[] _fd;
+        /** Furthest x reached backward on each diagonal, by diagonal. */
+        private final int[] _bd;
+        /** Index of diagonal 0 in _fd and _bd. */
+        private final int _offset;
+        /** Edit cost at which a search settles for a cheap split. */
+        private final int _tooExpensive;
+        /** X of the split found by split(). */
+        private int _midX;
+        /** Y of the split found by split(). */
+        private int _midY;
+    }
+
+    /** A growable stack of ints, holding ranges still to diff. */
+    private static final class IntStack {
+        /** Push the four ints of a range.
+         *  @param xLo first line of the old side
+         *  @param xHi end of the old side
+         *  @param yLo first line of the new side
+         *  @param yHi end of the new side */
+        void push(int xLo, int xHi, int yLo, int yHi) {
+            if (_size + 4 > _items.length) {
+                _items = Arrays.copyOf(_items, _items.length * 2);
+            }
+            _items[_size++] = xLo;
+            _items[_size++] = xHi;
+            _items[_size++] = yLo;
+            _items[_size++] = yHi;
+        }
+
+        /** Pop one int.
+         *  @return the int pushed last */
+        int pop() {
+            return _items[--_size];
+        }
+
+        /** Check whether the stack is empty.
+         *  @return true if empty */
+        boolean isEmpty() {
+            return _size == 0;
+        }
+
+        /** The ints. */
+        private int[] _items = new int[64];
+        /** Number of ints. */
+        private int _size;
+    }
+
+    /** Most occurrences in A of a line histogram splits around. */
+    static final int MAX_CHAIN = 64;
+    /** Bytes searched for a NUL to tell a binary file. */
+    static final int BINARY_PROBE = 8000;
+
+    /** Interned lines of the old file. */
+    private final int[] _a;
+    /** Interned lines of the new file. */
+    private final int[] _b;
+    /** Number of distinct ids in _a and _b. */
+    private final int _ids;
+    /** Lines of _a deleted. */
+    private final boolean[] _changedA;
+    /** Lines of _b inserted. */
+    private final boolean[] _changedB;
+    /** Occurrences of each id in the range myers is working on in A,
+     *  zero between calls. */
+    private int[] _inA;
+    /** Occurrences of each id in the range myers is working on in B,
+     *  zero between calls. */
+    private int[] _inB;
+}
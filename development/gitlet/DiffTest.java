@@ -0,0 +1,174 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Diff for Gitlet, the tiny stupid version-control system.
+ *  @author Kevin Li
+ */
+public class DiffTest {
+
+    /** The lines of S.
+     *  @param s file contents
+     *  @return the text */
+    private static Diff.Text text(String s) {
+        return new Diff.Text(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Check that EDITS turn A into B: they are in order, each changes
+     *  something, and the lines between them are equal.
+     *  @param a interned old lines
+     *  @param b interned new lines
+     *  @param edits edits from A to B
+     *  @return number of lines deleted and inserted */
+    private static int check(int[] a, int[] b, List<Diff.Edit> edits) {
+        int i = 0, j = 0, changed = 0;
+        for (Diff.Edit e : edits) {
+            assertTrue(e.toString(), e.beginA() >= i && e.beginB() >= j);
+            assertTrue(e.toString(), e.endA() > e.beginA()
+                    || e.endB() > e.beginB());
+            assertEquals(e.beginA() - i, e.beginB() - j);
+            for (; i < e.beginA(); i++, j++) {
+                assertEquals(a[i], b[j]);
+            }
+            changed += e.endA() - e.beginA() + e.endB() - e.beginB();
+            i = e.endA();
+            j = e.endB();
+        }
+        assertEquals(a.length - i, b.length - j);
+        for (; i < a.length; i++, j++) {
+            assertEquals(a[i], b[j]);
+        }
+        return changed;
+    }
+
+    /** Length of a longest common subsequence of A and B.
+     *  @param a a sequence
+     *  @param b another
+     *  @return its length */
+    private static int lcs(int[] a, int[] b) {
+        int[][] best = new int[a.length + 1][b.length + 1];
+        for (int i = a.length - 1; i >= 0; i--) {
+            for (int j = b.length - 1; j >= 0; j--) {
+                best[i][j] = (a[i] == b[j]) ? best[i + 1][j + 1] + 1
+                        : Math.max(best[i + 1][j], best[i][j + 1]);
+            }
+        }
+        return best[0][0];
+    }
+
+    /** A random sequence of SIZE ids below IDS.
+     *  @param random source
+     *  @param size length
+     *  @param ids number of distinct ids
+     *  @return the sequence */
+    private static int[] random(Random random, int size, int ids) {
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = random.nextInt(ids);
+        }
+        return result;
+    }
+
+    @Test
+    public void myersIsMinimal() {
+        int[] a = {0, 1, 2, 0, 1, 1, 0};
+        int[] b = {2, 1, 0, 1, 0, 2};
+        assertEquals(5, check(a, b, Diff.myers(a, b)));
+        Random random = new Random(1);
+        for (int n = 0; n < 200; n++) {
+            a = random(random, random.nextInt(40), 4);
+            b = random(random, random.nextInt(40), 4);
+            assertEquals(a.length + b.length - 2 * lcs(a, b),
+                    check(a, b, Diff.myers(a, b)));
+        }
+    }
+
+    @Test
+    public void histogramIsValid() {
+        Random random = new Random(2);
+        for (int n = 0; n < 200; n++) {
+            int[] a = random(random, random.nextInt(60), 8);
+            int[] b = random(random, random.nextInt(60), 8);
+            check(a, b, Diff.histogram(a, b));
+        }
+    }
+
+    @Test
+    public void emptyAndEqualSequences() {
+        int[] none = {};
+        int[] some = {0, 1, 2};
+        for (boolean myers : new boolean[] {true, false}) {
+            assertTrue((myers ? Diff.myers(some, some)
+                    : Diff.histogram(some, some)).isEmpty());
+            assertEquals(3, check(none, some, myers ? Diff.myers(none, some)
+                    : Diff.histogram(none, some)));
+            assertEquals(3, check(some, none, myers ? Diff.myers(some, none)
+                    : Diff.histogram(some, none)));
+        }
+    }
+
+    @Test
+    public void histogramMatchesUniqueLines() {
+        Diff.Text a = text("}\nvoid f() {\n    x();\n}\n");
+        Diff.Text b = text("}\nvoid g() {\n    y();\n}\n\n"
+                + "void f() {\n    x();\n}\n");
+        int[][] ids = Diff.intern(a, b);
+        List<Diff.Edit> edits = Diff.histogram(ids[0], ids[1]);
+        assertEquals(4, check(ids[0], ids[1], edits));
+        assertEquals(1, edits.size());
+        assertEquals("Edit(1-1, 1-5)", edits.get(0).toString());
+    }
+
+    @Test
+    public void internNumbersEqualLinesAlike() {
+        int[][] ids = Diff.intern(text("a\nb\na\n"), text("b\nc\na"));
+        assertEquals(ids[0][0], ids[0][2]);
+        assertEquals(ids[0][1], ids[1][0]);
+        assertTrue(ids[1][1] != ids[0][0] && ids[1][1] != ids[0][1]);
+        assertTrue(ids[1][2] != ids[0][0]);
+    }
+
+    @Test
+    public void unifiedHunks() {
+        StringBuilder old = new StringBuilder();
+        StringBuilder now = new StringBuilder();
+        for (int i = 1; i <= 20; i++) {
+            old.append(i).append('\n');
+            if (i != 19) {
+                now.append(i == 2 ? "two" : i).append('\n');
+            }
+        }
+        Diff.Text a = text(old.toString());
+        Diff.Text b = text(now.append("21").toString());
+        int[][] ids = Diff.intern(a, b);
+        StringBuilder out = new StringBuilder();
+        Diff.unified(a, b, Diff.histogram(ids[0], ids[1]), 3, out);
+        assertEquals("@@ -1,5 +1,5 @@\n 1\n-2\n+two\n 3\n 4\n 5\n"
+                + "@@ -16,5 +16,5 @@\n 16\n 17\n 18\n-19\n 20\n+21\n"
+                + "\\ No newline at end of file\n", out.toString());
+    }
+
+    @Test
+    public void lastLineWithoutNewline() {
+        Diff.Text a = text("x\ny");
+        Diff.Text b = text("x\ny\n");
+        assertEquals(2, a.size());
+        assertEquals(2, b.size());
+        int[][] ids = Diff.intern(a, b);
+        assertEquals(ids[0][0], ids[1][0]);
+        assertTrue(ids[0][1] != ids[1][1]);
+        assertEquals(0, text("").size());
+    }
+
+    @Test
+    public void binaryFiles() {
+        assertTrue(new Diff.Text(new byte[] {'a', 0, 'b'}).isBinary());
+        assertFalse(text("plain\ntext\n").isBinary());
+    }
+
+}
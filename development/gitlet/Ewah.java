@@ -0,0 +1,104 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/** Ewah class for Gitlet, the tiny stupid version-control system.
+ *  Compresses bitmaps with EWAH, word-aligned run-length encoding: the
+ *  64-bit words of the bitmap are coded as a marker word followed by
+ *  literal words. A marker holds
+ *    bit 0        the bit filling the run,
+ *    bits 1-32    how many words of that bit the run is,
+ *    bits 33-63   how many literal words follow it.
+ *  Runs of all-zero and all-one words, which make up most of a
+ *  reachability bitmap, shrink to one marker. The coded bitmap starts
+ *  with the number of words it expands to.
+ *  @author Kevin Li
+ */
+class Ewah {
+
+    /** Not meant to be instantiated. */
+    private Ewah() { }
+
+    /** Compress BITS.
+     *  @param bits a bitmap
+     *  @return its coded bytes */
+    static byte[] compress(BitSet bits) {
+        return compress(bits, MAX_RUN, MAX_LITERALS);
+    }
+
+    /** Compress BITS with markers holding at most MAXRUN run words and
+     *  MAXLITERALS literal words, so that tests can reach the limits.
+     *  @param bits a bitmap
+     *  @param maxRun longest run, at most MAX_RUN
+     *  @param maxLiterals most literals, at most MAX_LITERALS
+     *  @return its coded bytes */
+    static byte[] compress(BitSet bits, long maxRun, int maxLiterals) {
+        long[] words = bits.toLongArray();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(words.length);
+            int i = 0;
+            while (i < words.length) {
+                long fill = (words[i] == -1L) ? -1L : 0L;
+                long run = 0;
+                while (i < words.length && words[i] == fill && run < maxRun) {
+                    run++;
+                    i++;
+                }
+                int start = i;
+                while (i < words.length && words[i] != 0L && words[i] != -1L
+                        && i - start < maxLiterals) {
+                    i++;
+                }
+                out.writeLong((fill & 1L) | (run << 1)
+                        | ((long) (i - start) << LITERALS_SHIFT));
+                for (int k = start; k < i; k++) {
+                    out.writeLong(words[k]);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Expand a bitmap coded by compress().
+     *  @param buf buffer holding it
+     *  @param pos its first byte
+     *  @return the bitmap */
+    static BitSet expand(ByteBuffer buf, int pos) {
+        long[] words = new long[buf.getInt(pos)];
+        pos += 4;
+        int i = 0;
+        while (i < words.length) {
+            long marker = buf.getLong(pos);
+            pos += 8;
+            long fill = ((marker & 1L) == 0) ? 0L : -1L;
+            long run = (marker >>> 1) & MAX_RUN;
+            int literals = (int) (marker >>> LITERALS_SHIFT);
+            if (run + literals == 0 || run > words.length - i
+                    || literals > words.length - i - run) {
+                throw new GitletException("Corrupt bitmap.");
+            }
+            for (long k = 0; k < run; k++) {
+                words[i++] = fill;
+            }
+            for (int k = 0; k < literals; k++) {
+                words[i++] = buf.getLong(pos);
+                pos += 8;
+            }
+        }
+        return BitSet.valueOf(words);
+    }
+
+    /** Longest run one marker holds. */
+    private static final long MAX_RUN = 0xffffffffL;
+    /** Most literal words one marker holds. */
+    private static final int MAX_LITERALS = Integer.MAX_VALUE;
+    /** Position of the literal count in a marker. */
+    private static final int LITERALS_SHIFT = 33;
+}
@@ -0,0 +1,105 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Ewah for Gitlet, the tiny stupid version-control system.
+ *  @author Kevin Li
+ */
+public class EwahTest {
+
+    /** Check that BITS compressed with markers of at most MAXRUN run
+     *  words and MAXLITERALS literal words expand back to BITS.
+     *  @param bits a bitmap
+     *  @param maxRun longest run of a marker
+     *  @param maxLiterals most literals of a marker
+     *  @return the coded bytes */
+    private static byte[] roundTrip(BitSet bits, long maxRun,
+                                    int maxLiterals) {
+        byte[] coded = Ewah.compress(bits, maxRun, maxLiterals);
+        assertEquals(bits, Ewah.expand(ByteBuffer.wrap(coded), 0));
+        return coded;
+    }
+
+    /** A bitmap of the words WORDS.
+     *  @param words 64-bit words, lowest first
+     *  @return the bitmap */
+    private static BitSet words(long... words) {
+        return BitSet.valueOf(words);
+    }
+
+    @Test
+    public void emptyBitmap() {
+        byte[] coded = Ewah.compress(new BitSet());
+        assertEquals(4, coded.length);
+        assertEquals(new BitSet(), Ewah.expand(ByteBuffer.wrap(coded), 0));
+    }
+
+    @Test
+    public void runsShrinkToOneMarker() {
+        BitSet bits = new BitSet();
+        bits.set(0, 64 * 1000);
+        bits.set(64 * 5000 + 3);
+        byte[] coded = Ewah.compress(bits);
+        assertEquals(bits, Ewah.expand(ByteBuffer.wrap(coded), 0));
+        assertEquals(4 + 8 * 3, coded.length);
+    }
+
+    @Test
+    public void runsLongerThanOneMarker() {
+        long[] w = new long[23];
+        for (int i = 0; i < 10; i++) {
+            w[i] = -1L;
+        }
+        for (int i = 17; i < 22; i++) {
+            w[i] = 0x5555L << i;
+        }
+        w[22] = -1L;
+        BitSet bits = words(w);
+        byte[] coded = roundTrip(bits, 3, 2);
+        assertEquals(4 + 8 * (10 + 5), coded.length);
+        assertEquals(4 + 8 * (3 + 5), roundTrip(bits, 1000, 1000).length);
+        assertEquals(4 + 8 * (22 + 5), roundTrip(bits, 1, 1).length);
+    }
+
+    @Test
+    public void randomBitmaps() {
+        Random random = new Random(7);
+        for (int n = 0; n < 200; n++) {
+            long[] w = new long[random.nextInt(300)];
+            for (int i = 0; i < w.length; i++) {
+                switch (random.nextInt(4)) {
+                case 0: w[i] = 0L; break;
+                case 1: w[i] = -1L; break;
+                default: w[i] = random.nextLong(); break;
+                }
+            }
+            BitSet bits = words(w);
+            roundTrip(bits, 1, 1);
+            roundTrip(bits, 2, 3);
+            roundTrip(bits, 1 + random.nextInt(5), 1 + random.nextInt(5));
+            assertArrayEquals(Ewah.compress(bits),
+                    roundTrip(bits, 0xffffffffL, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test(expected = GitletException.class)
+    public void emptyMarkerIsCorrupt() {
+        ByteBuffer buf = ByteBuffer.allocate(4 + 8);
+        buf.putInt(0, 2);
+        Ewah.expand(buf, 0);
+    }
+
+    @Test(expected = GitletException.class)
+    public void runPastTheEndIsCorrupt() {
+        BitSet bits = new BitSet();
+        bits.set(0, 64 * 4);
+        ByteBuffer buf = ByteBuffer.wrap(Ewah.compress(bits));
+        buf.putInt(0, 3);
+        Ewah.expand(buf, 0);
+    }
+}
@@ -0,0 +1,152 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** GarbageCollector class for Gitlet, the tiny stupid version-control
+ *  system. Deletes the objects nothing leads to any more: commits left
+ *  behind by rm-branch and reset, and the blobs of edits that were added
+ *  but never committed. Everything reachable from a branch or staged is
+ *  marked, packed objects in a bitmap of the pack (one bit each, and the
+ *  stored PackBitmaps of the branch heads cover most of the history
+ *  without a walk) and only the objects outside the pack in a set. Loose
+ *  objects that were not reached are deleted once they are older than
+ *  the grace period (-Dgitlet.gcGraceSeconds, two weeks by default), so
+ *  that a blob another process has just written but not yet staged
+ *  survives. Their age is their mtime, which ObjectStore also sets when
+ *  a write finds the object already there. Unreached packed objects
+ *  are as old as their pack: those of a pack younger than the grace
+ *  period are written out as loose objects dated like the pack, and
+ *  age from there. What is left is repacked, which drops the other
+ *  unreached packed objects along with the old pack. commit-ids and
+ *  messages forget the deleted commits; the commit graph keeps their
+ *  records, which no live commit leads to.
+ *  @author Kevin Li
+ */
+class GarbageCollector {
+
+    /** A collector for STORE.
+     *  @param store the object store of a repo */
+    GarbageCollector(ObjectStore store) {
+        _store = store;
+    }
+
+    /** Collect every object unreachable from HEADS and STAGED.
+     *  @param heads commit hashes, typically the branch heads
+     *  @param staged blob hashes of the stage */
+    void collect(Collection<String> heads, Collection<String> staged) {
+        long before = size();
+        List<Pack> packs = _store.packs();
+        Pack pack = packs.isEmpty() ? null : packs.get(0);
+        PackBitmaps bitmaps = new PackBitmaps(_store, pack);
+        HashSet<String> outside = new HashSet<>();
+        BitSet bits = bitmaps.reachable(new HashSet<>(heads), outside);
+        for (String blob : staged) {
+            bitmaps.mark(blob, bits, outside);
+        }
+        long cutoff = System.currentTimeMillis()
+                - Long.getLong("gitlet.gcGraceSeconds", GRACE_SECONDS) * 1000;
+        HashSet<String> deadCommits = new HashSet<>();
+        for (String type : ObjectStore.TYPES) {
+            _store.forEachLoose(type, uid -> {
+                File file = _store.looseFile(type, uid);
+                if (!bitmaps.has(bits, outside, uid)
+                        && file.lastModified() < cutoff && file.delete()) {
+                    _removed++;
+                    if (type.equals("commits")) {
+                        deadCommits.add(uid);
+                    }
+                }
+            });
+        }
+        for (Pack p : packs) {
+            long packTime = p.packFile().lastModified();
+            for (String type : ObjectStore.TYPES) {
+                for (String uid : p.list(Pack.typeCode(type))) {
+                    if (bitmaps.has(bits, outside, uid)
+                            || _store.looseFile(type, uid).isFile()) {
+                        continue;
+                    }
+                    if (packTime >= cutoff) {
+                        _store.unpack(p, type, uid, packTime);
+                    } else if (type.equals("commits")) {
+                        deadCommits.add(uid);
+                    }
+                }
+            }
+        }
+        deleteStale(Utils.join(_store.gitletDir(), "objects", "tmp"), cutoff);
+        _packed = _store.repack(uid -> bitmaps.has(bits, outside, uid));
+        if (!deadCommits.isEmpty()) {
+            new CommitIndex(_store.gitletDir()).remove(deadCommits);
+            MessageIndex.of(_store.gitletDir()).remove(deadCommits);
+        }
+        _reclaimed = before - size();
+    }
+
+    /** Getter for the number of loose objects deleted.
+     *  @return count */
+    int removed() {
+        return _removed;
+    }
+
+    /** Getter for the number of objects in the new pack.
+     *  @return count */
+    int packed() {
+        return _packed;
+    }
+
+    /** Getter for how much smaller the objects directory got.
+     *  @return bytes */
+    long reclaimed() {
+        return _reclaimed;
+    }
+
+    /** Delete the files in DIR last modified before CUTOFF, left there
+     *  by writes that never finished.
+     *  @param dir a temporary directory
+     *  @param cutoff time in milliseconds */
+    private static void deleteStale(File dir, long cutoff) {
+        List<String> names = Utils.plainFilenamesIn(dir);
+        if (names == null) {
+            return;
+        }
+        for (String name : names) {
+            File file = Utils.join(dir, name);
+            if (file.lastModified() < cutoff) {
+                file.delete();
+            }
+        }
+    }
+
+    /** Total size of the files under the objects directory.
+     *  @return bytes */
+    private long size() {
+        File dir = Utils.join(_store.gitletDir(), "objects");
+        try (Stream<Path> files = Files.walk(dir.toPath())) {
+            return files.filter(Files::isRegularFile)
+                    .mapToLong(f -> f.toFile().length()).sum();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Default grace period of unreachable loose objects: two weeks. */
+    private static final long GRACE_SECONDS = 14L * 24 * 60 * 60;
+
+    /** The store being collected. */
+    private ObjectStore _store;
+    /** Loose objects deleted. */
+    private int _removed;
+    /** Objects in the new pack. */
+    private int _packed;
+    /** Bytes reclaimed. */
+    private long _reclaimed;
+}
@@ -0,0 +1,186 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of GarbageCollector for Gitlet, the tiny stupid version-control
+ *  system. Each test makes a repo with a branch that is then removed,
+ *  and a blob that is staged but never committed. Collections see the
+ *  stage as it was before any file is added again, as when another
+ *  process adds it while gc runs.
+ *  @author Kevin Li
+ */
+public class GarbageCollectorTest {
+
+    /** Write CONTENTS to the working file FNAME of the test repo.
+     *  @param fname file name
+     *  @param contents its contents
+     *  @return the blob hash of the file */
+    private String write(String fname, String contents) throws IOException {
+        File file = new File(_dir, fname);
+        Files.writeString(file.toPath(), contents);
+        return ObjectStore.hashFile(Blob.KIND, file);
+    }
+
+    /** Make the repo: master with one commit, and a removed branch
+     *  whose commit adds a file of its own. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("gitlet").toFile();
+        _repo = GitletRepository.init(_dir);
+        _kept = write("wug.txt", "a wug\n");
+        _repo.add("wug.txt");
+        _head = _repo.commit("added wug");
+        _repo.branch("other");
+        _repo.checkout("other");
+        _lost = write("k.txt", "only on other\n");
+        _repo.add("k.txt");
+        _lostCommit = _repo.commit("added k");
+        _repo.checkout("master");
+        _repo.rmBranch("other");
+        _staged = write("staged.txt", "staged only\n");
+        _repo.add("staged.txt");
+        _store = new ObjectStore(new File(_dir, ".gitlet"));
+    }
+
+    /** Delete the repo and the grace period set by the test. */
+    @After
+    public void tearDown() throws IOException {
+        System.clearProperty("gitlet.gcGraceSeconds");
+        try (Stream<Path> files = Files.walk(_dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    /** Collect the test repo from its master head and staged blob.
+     *  @return the collector */
+    private GarbageCollector collect() {
+        GarbageCollector gc = new GarbageCollector(_store);
+        gc.collect(List.of(_head), List.of(_staged));
+        return gc;
+    }
+
+    @Test
+    public void youngObjectsAreKept() {
+        GarbageCollector gc = collect();
+        assertEquals(0, gc.removed());
+        assertTrue(_store.contains("commits", _lostCommit));
+        assertTrue(_store.contains("blobs", _lost));
+        assertEquals(_lostCommit, new CommitIndex(_store.gitletDir())
+                .resolve(_lostCommit.substring(0, 8)));
+    }
+
+    @Test
+    public void unreachableObjectsPastGraceAreDeleted() {
+        System.setProperty("gitlet.gcGraceSeconds", "-60");
+        GarbageCollector gc = collect();
+        assertEquals(3, gc.removed());
+        assertFalse(_store.contains("commits", _lostCommit));
+        assertFalse(_store.contains("blobs", _lost));
+        assertFalse(new CommitIndex(_store.gitletDir())
+                .contains(_lostCommit));
+        assertTrue(_store.contains("commits", _head));
+        assertTrue(_store.contains("blobs", _kept));
+        assertTrue(_store.contains("blobs", _staged));
+        assertEquals(_head, _repo.head());
+        _repo.checkoutFile(_head, "wug.txt");
+        assertEquals(List.of(_head), _repo.find("added wug"));
+        assertTrue(_repo.find("added k").isEmpty());
+    }
+
+    @Test
+    public void packedUnreachableObjectsAreDropped() {
+        System.setProperty("gitlet.gcGraceSeconds", "-60");
+        _store.repack();
+        collect();
+        assertFalse(_store.contains("commits", _lostCommit));
+        assertFalse(_store.contains("blobs", _lost));
+        assertTrue(_store.contains("commits", _head));
+        assertTrue(_store.contains("blobs", _staged));
+        assertTrue(_store.listLoose("commits").isEmpty());
+    }
+
+    /** Date FILE a month back, past the default grace period.
+     *  @param file a loose object or pack file */
+    private static void age(File file) {
+        assertTrue(file.setLastModified(System.currentTimeMillis()
+                - MONTH_MILLIS));
+    }
+
+    @Test
+    public void reAddedLooseObjectIsKept() throws IOException {
+        age(_store.looseFile("commits", _lostCommit));
+        age(_store.looseFile("blobs", _lost));
+        write("k.txt", "only on other\n");
+        _repo.add("k.txt");
+        collect();
+        assertTrue(_store.contains("blobs", _lost));
+        assertFalse(_store.contains("commits", _lostCommit));
+    }
+
+    @Test
+    public void youngPackKeepsUnreachableObjects() {
+        _store.repack();
+        collect();
+        assertTrue(_store.looseFile("commits", _lostCommit).isFile());
+        assertTrue(_store.looseFile("blobs", _lost).isFile());
+        assertEquals(_lostCommit, new CommitIndex(_store.gitletDir())
+                .resolve(_lostCommit.substring(0, 8)));
+        age(_store.looseFile("commits", _lostCommit));
+        age(_store.looseFile("blobs", _lost));
+        collect();
+        assertFalse(_store.contains("commits", _lostCommit));
+        assertFalse(_store.contains("blobs", _lost));
+    }
+
+    @Test
+    public void oldPackDropsUnreachableObjects() {
+        _store.repack();
+        age(_store.packs().get(0).packFile());
+        collect();
+        assertFalse(_store.contains("commits", _lostCommit));
+        assertFalse(_store.contains("blobs", _lost));
+        assertTrue(_store.contains("blobs", _kept));
+    }
+
+    @Test
+    public void reAddedPackedObjectIsKept() throws IOException {
+        _store.repack();
+        age(_store.packs().get(0).packFile());
+        write("k.txt", "only on other\n");
+        _repo.add("k.txt");
+        collect();
+        assertTrue(_store.contains("blobs", _lost));
+    }
+
+    /** A month in milliseconds. */
+    private static final long MONTH_MILLIS = 30L * 24 * 60 * 60 * 1000;
+
+    /** Working directory of the test repo. */
+    private File _dir;
+    /** The test repo. */
+    private GitletRepository _repo;
+    /** Its object store. */
+    private ObjectStore _store;
+    /** Head of master. */
+    private String _head;
+    /** Blob of master. */
+    private String _kept;
+    /** Commit of the removed branch. */
+    private String _lostCommit;
+    /** Blob only the removed branch had. */
+    private String _lost;
+    /** Blob that is staged but in no commit. */
+    private String _staged;
+}
@@ -0,0 +1,357 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/** GitletRepository class for Gitlet, the tiny stupid version-control
+ *  system. The Java API to a repo: the commands of the command line, on
+ *  a repo given by its root directory instead of CWD, returning what
+ *  they found instead of printing it. Failures are thrown as
+ *  GitletException with the message the command line would print.
+ *  Each call points RepoRoot at the root for its length. Calls on all
+ *  repos share one lock, so a process can hold many GitletRepository
+ *  objects and use them from many threads, one call at a time.
+ *  @author Kevin Li
+ */
+public class GitletRepository {
+
+    /** Constructor.
+     *  @param root working directory of the repo */
+    private GitletRepository(File root) {
+        _root = root.getAbsoluteFile();
+    }
+
+    /** Create a repo in ROOT, with an initial commit on master.
+     *  @param root working directory of the new repo, which must exist
+     *  @return the repo */
+    public static GitletRepository init(File root) {
+        GitletRepository result = new GitletRepository(root);
+        result.call(Repo::init);
+        return result;
+    }
+
+    /** Open the repo whose working directory is ROOT.
+     *  @param root working directory of the repo
+     *  @return the repo */
+    public static GitletRepository open(File root) {
+        GitletRepository result = new GitletRepository(root);
+        result.call(() -> {
+            if (!RepoRoot.gitlet().isDirectory()) {
+                throw new GitletException("Not in an "
+                        + "initialized Gitlet directory.");
+            }
+            return null;
+        });
+        return result;
+    }
+
+    /** Getter for the working directory of the repo.
+     *  @return the root */
+    public File root() {
+        return _root;
+    }
+
+    /** Stage files, as `gitlet add` does.
+     *  @param fnames file names relative to the root, or "." */
+    public void add(String... fnames) {
+        run(repo -> repo.add(fnames));
+    }
+
+    /** Unstage or remove a file, as `gitlet rm` does.
+     *  @param fname file name relative to the root */
+    public void rm(String fname) {
+        run(repo -> repo.rm(fname));
+    }
+
+    /** Commit the stage, as `gitlet commit` does.
+     *  @param msg commit message
+     *  @return hash of the new commit */
+    public String commit(String msg) {
+        return call(() -> {
+            Repo repo = Repo.getRepo(false);
+            return repo.getCTree().commit(false, repo.getStage(), null, msg)
+                    .getHash();
+        });
+    }
+
+    /** Getter for the head commit.
+     *  @return its hash */
+    public String head() {
+        return call(() -> Repo.getRepo(false).getCTree().getHEAD()
+                .getHash());
+    }
+
+    /** Getter for the current branch.
+     *  @return its name */
+    public String currentBranch() {
+        return call(() -> Repo.getRepo(false).getCTree().getCurrBranch());
+    }
+
+    /** Getter for the branches.
+     *  @return every branch name, in order */
+    public List<String> branches() {
+        return call(() -> status(Repo.getRepo(false)).branches());
+    }
+
+    /** Create a branch at the head, as `gitlet branch` does.
+     *  @param name branch name */
+    public void branch(String name) {
+        run(repo -> repo.branch(name));
+    }
+
+    /** Delete a branch, as `gitlet rm-branch` does.
+     *  @param name branch name */
+    public void rmBranch(String name) {
+        run(repo -> repo.rmBranch(name));
+    }
+
+    /** Switch to a branch, as `gitlet checkout BRANCH` does.
+     *  @param name branch name */
+    public void checkout(String name) {
+        run(repo -> repo.checkout(3, "checkout", name));
+    }
+
+    /** Restore a file from the head, as `gitlet checkout -- FILE` does.
+     *  @param fname file name relative to the root */
+    public void checkoutFile(String fname) {
+        run(repo -> repo.checkout(1, "checkout", "--", fname));
+    }
+
+    /** Restore a file from a commit, as `gitlet checkout ID -- FILE`
+     *  does.
+     *  @param commit full or abbreviated commit id
+     *  @param fname file name relative to the root */
+    public void checkoutFile(String commit, String fname) {
+        run(repo -> repo.checkout(2, "checkout", commit, "--", fname));
+    }
+
+    /** Move the current branch to a commit, as `gitlet reset` does.
+     *  @param commit full or abbreviated commit id */
+    public void reset(String commit) {
+        run(repo -> repo.reset(commit));
+    }
+
+    /** Getter for the status, as `gitlet status` shows it.
+     *  @return the status */
+    public StatusReport status() {
+        return call(() -> {
+            Repo repo = Repo.getRepo(false);
+            Status status = status(repo);
+            StatusReport result = new StatusReport(
+                    repo.getCTree().getCurrBranch(), status.branches(),
+                    status.staged(), status.removed(), status.modified(),
+                    status.untracked());
+            repo.getStage().writeIfDirty();
+            return result;
+        });
+    }
+
+    /** The commits from the head back along first parents, as `gitlet
+     *  log` shows them. Commits are read as the iterator advances.
+     *  @return the log, newest first */
+    public Iterator<LogEntry> log() {
+        String head = head();
+        return new Iterator<LogEntry>() {
+            @Override
+            public boolean hasNext() {
+                return _next != null;
+            }
+
+            @Override
+            public LogEntry next() {
+                if (_next == null) {
+                    throw new NoSuchElementException();
+                }
+                LogEntry entry = call(() ->
+                        new LogEntry(Utils.uidToCommit(_next)));
+                _next = entry.getParent();
+                return entry;
+            }
+
+            /** The next commit, or null at the end. */
+            private String _next = head;
+        };
+    }
+
+    /** Find commits by message, as `gitlet find` does, but returning an
+     *  empty list if there is none.
+     *  @param msg the exact message
+     *  @return matching commit hashes */
+    public List<String> find(String msg) {
+        return call(() -> MessageIndex.local().exact(msg));
+    }
+
+    /** Merge a branch into the current one, as `gitlet merge` does.
+     *  @param name branch name
+     *  @return what the merge did */
+    public MergeResult merge(String name) {
+        return call(() -> new Merge(Repo.getRepo(false)).merge(name));
+    }
+
+    /** Status of REPO.
+     *  @param repo a repo
+     *  @return its status */
+    private static Status status(Repo repo) {
+        return new Status(repo.getCTree(), repo.getStage());
+    }
+
+    /** Run ACTION on the repo, read afresh, under the root.
+     *  @param action the command */
+    private void run(Consumer<Repo> action) {
+        call(() -> {
+            action.accept(Repo.getRepo(false));
+            return null;
+        });
+    }
+
+    /** Run BODY with RepoRoot pointing at the root of this repo.
+     *  @param body the work
+     *  @param <T> type of its result
+     *  @return its result */
+    private <T> T call(Supplier<T> body) {
+        synchronized (RepoRoot.class) {
+            File saved = RepoRoot.dir();
+            RepoRoot.set(_root);
+            try {
+                return body.get();
+            } finally {
+                RepoRoot.set(saved);
+            }
+        }
+    }
+
+    /** One commit of the log. */
+    public static class LogEntry {
+        /** Constructor.
+         *  @param commit the commit */
+        LogEntry(Commit commit) {
+            _hash = commit.getHash();
+            _parent = commit.getParent();
+            _mergeParent = commit.getMergeParent();
+            _date = commit.getTimestamp();
+            _message = commit.getMessage();
+        }
+
+        /** Getter for the hash.
+         *  @return commit hash */
+        public String getHash() {
+            return _hash;
+        }
+
+        /** Getter for the first parent.
+         *  @return its hash, or null for the initial commit */
+        public String getParent() {
+            return _parent;
+        }
+
+        /** Getter for the second parent.
+         *  @return its hash, or null unless this is a merge */
+        public String getMergeParent() {
+            return _mergeParent;
+        }
+
+        /** Getter for the time of the commit.
+         *  @return the date */
+        public Date getDate() {
+            return _date;
+        }
+
+        /** Getter for the message.
+         *  @return the message */
+        public String getMessage() {
+            return _message;
+        }
+
+        /** Commit hash. */
+        private String _hash;
+        /** First parent. */
+        private String _parent;
+        /** Second parent. */
+        private String _mergeParent;
+        /** Time of the commit. */
+        private Date _date;
+        /** Message. */
+        private String _message;
+    }
+
+    /** The sections of `gitlet status`. */
+    public static class StatusReport {
+        /** Constructor.
+         *  @param current current branch
+         *  @param branches every branch
+         *  @param staged files staged for addition
+         *  @param removed files staged for removal
+         *  @param modified changed files not staged
+         *  @param untracked untracked files */
+        StatusReport(String current, List<String> branches,
+                     List<String> staged, List<String> removed,
+                     Map<String, String> modified, List<String> untracked) {
+            _current = current;
+            _branches = Collections.unmodifiableList(branches);
+            _staged = Collections.unmodifiableList(staged);
+            _removed = Collections.unmodifiableList(removed);
+            _modified = Collections.unmodifiableMap(modified);
+            _untracked = Collections.unmodifiableList(untracked);
+        }
+
+        /** Getter for the current branch.
+         *  @return its name */
+        public String getCurrentBranch() {
+            return _current;
+        }
+
+        /** Getter for the branches.
+         *  @return names, in order */
+        public List<String> getBranches() {
+            return _branches;
+        }
+
+        /** Getter for the files staged for addition.
+         *  @return names, in order */
+        public List<String> getStaged() {
+            return _staged;
+        }
+
+        /** Getter for the files staged for removal.
+         *  @return names, in order */
+        public List<String> getRemoved() {
+            return _removed;
+        }
+
+        /** Getter for the modifications not staged for commit.
+         *  @return map from file name, in order, to "modified" or
+         *          "deleted" */
+        public Map<String, String> getModified() {
+            return _modified;
+        }
+
+        /** Getter for the untracked files.
+         *  @return names, in order */
+        public List<String> getUntracked() {
+            return _untracked;
+        }
+
+        /** Current branch. */
+        private String _current;
+        /** Every branch. */
+        private List<String> _branches;
+        /** Files staged for addition. */
+        private List<String> _staged;
+        /** Files staged for removal. */
+        private List<String> _removed;
+        /** Changed files not staged. */
+        private Map<String, String> _modified;
+        /** Untracked files. */
+        private List<String> _untracked;
+    }
+
+    /** Working directory of the repo. */
+    private File _root;
+}
@@ -0,0 +1,254 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of GitletRepository for Gitlet, the tiny stupid version-control
+ *  system. Each test drives two repos from this one JVM, interleaving
+ *  their calls, and checks that neither sees the other's state.
+ *  @author Kevin Li
+ */
+public class GitletRepositoryTest {
+
+    /** Make two repos. */
+    @Before
+    public void setUp() throws IOException {
+        _dirA = Files.createTempDirectory("gitlet").toFile();
+        _dirB = Files.createTempDirectory("gitlet").toFile();
+        _a = GitletRepository.init(_dirA);
+        _b = GitletRepository.init(_dirB);
+    }
+
+    /** Delete both repos. */
+    @After
+    public void tearDown() throws IOException {
+        for (File dir : new File[] {_dirA, _dirB}) {
+            try (Stream<Path> files = Files.walk(dir.toPath())) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                        .forEach(File::delete);
+            }
+        }
+    }
+
+    /** Write CONTENTS to the working file FNAME of REPO.
+     *  @param repo a repo
+     *  @param fname file name
+     *  @param contents its contents */
+    private static void write(GitletRepository repo, String fname,
+                              String contents) throws IOException {
+        Files.writeString(new File(repo.root(), fname).toPath(), contents);
+    }
+
+    /** Contents of the working file FNAME of REPO.
+     *  @param repo a repo
+     *  @param fname file name
+     *  @return its contents */
+    private static String read(GitletRepository repo, String fname)
+            throws IOException {
+        return Files.readString(new File(repo.root(), fname).toPath());
+    }
+
+    /** The log of REPO.
+     *  @param repo a repo
+     *  @return its messages, newest first */
+    private static List<String> log(GitletRepository repo) {
+        List<String> result = new ArrayList<>();
+        for (Iterator<GitletRepository.LogEntry> it = repo.log();
+             it.hasNext();) {
+            result.add(it.next().getMessage());
+        }
+        return result;
+    }
+
+    @Test
+    public void reposKeepTheirOwnState() throws IOException {
+        write(_a, "wug.txt", "a wug\n");
+        write(_b, "notwug.txt", "not a wug\n");
+        _a.add("wug.txt");
+        assertEquals(List.of("wug.txt"), _a.status().getStaged());
+        assertTrue(_b.status().getStaged().isEmpty());
+        assertEquals(List.of("notwug.txt"), _b.status().getUntracked());
+        String headA = _a.commit("added wug");
+        _b.add("notwug.txt");
+        String headB = _b.commit("added wug");
+        assertFalse(headA.equals(headB));
+        assertEquals(headA, _a.head());
+        assertEquals(headB, _b.head());
+        assertEquals(List.of("added wug", "initial commit"), log(_a));
+        assertEquals(List.of("added wug", "initial commit"), log(_b));
+        assertEquals(List.of(headA), _a.find("added wug"));
+        assertEquals(List.of(headB), _b.find("added wug"));
+        assertTrue(_a.status().getStaged().isEmpty());
+        assertTrue(_a.status().getUntracked().isEmpty());
+        assertFalse(new File(_dirA, "notwug.txt").exists());
+        assertEquals(new File("."), RepoRoot.dir());
+        GitletRepository reopened = GitletRepository.open(_dirB);
+        assertEquals(headB, reopened.head());
+        assertEquals(List.of("master"), reopened.branches());
+    }
+
+    @Test
+    public void interleavedBranchesAndCheckouts() throws IOException {
+        for (GitletRepository repo : List.of(_a, _b)) {
+            write(repo, "wug.txt", "a wug\n");
+            repo.add("wug.txt");
+            repo.commit("added wug");
+            repo.branch("other");
+        }
+        write(_a, "wug.txt", "changed in a\n");
+        _a.add("wug.txt");
+        _a.commit("changed wug");
+        _b.checkout("other");
+        write(_b, "wug.txt", "changed in b\n");
+        _b.add("wug.txt");
+        _b.commit("changed wug on other");
+        _a.checkout("other");
+        assertEquals("a wug\n", read(_a, "wug.txt"));
+        assertEquals("changed in b\n", read(_b, "wug.txt"));
+        assertEquals("other", _a.status().getCurrentBranch());
+        assertEquals("other", _b.status().getCurrentBranch());
+        _b.checkout("master");
+        assertEquals("a wug\n", read(_b, "wug.txt"));
+        _a.checkoutFile(_a.find("changed wug").get(0), "wug.txt");
+        assertEquals("changed in a\n", read(_a, "wug.txt"));
+        assertEquals("modified", _a.status().getModified().get("wug.txt"));
+        assertTrue(_b.status().getModified().isEmpty());
+    }
+
+    @Test
+    public void mergesInBothRepos() throws IOException {
+        for (GitletRepository repo : List.of(_a, _b)) {
+            write(repo, "wug.txt", "a wug\n");
+            repo.add("wug.txt");
+            repo.commit("added wug");
+            repo.branch("other");
+        }
+        write(_a, "wug.txt", "master wug\n");
+        _a.add("wug.txt");
+        String ours = _a.commit("changed wug");
+        write(_b, "wug.txt", "master wug\n");
+        _b.add("wug.txt");
+        _b.commit("changed wug");
+        _a.checkout("other");
+        _b.checkout("other");
+        write(_a, "k.txt", "k\n");
+        _a.add("k.txt");
+        String theirs = _a.commit("added k");
+        write(_b, "wug.txt", "other wug\n");
+        _b.add("wug.txt");
+        _b.commit("changed wug on other");
+        _a.checkout("master");
+        _b.checkout("master");
+
+        MergeResult clean = _a.merge("other");
+        assertEquals(MergeResult.Kind.MERGED, clean.getKind());
+        assertTrue(clean.getConflicts().isEmpty());
+        assertEquals(_a.head(), clean.getCommit());
+        GitletRepository.LogEntry merge = _a.log().next();
+        assertEquals(ours, merge.getParent());
+        assertEquals(theirs, merge.getMergeParent());
+        assertEquals("k\n", read(_a, "k.txt"));
+
+        MergeResult conflict = _b.merge("other");
+        assertEquals(MergeResult.Kind.MERGED, conflict.getKind());
+        assertEquals(List.of("wug.txt"), conflict.getConflicts());
+        assertEquals("<<<<<<<< HEAD\nmaster wug\n========\nother wug\n"
+                + ">>>>>>>>\n", read(_b, "wug.txt"));
+        assertFalse(new File(_dirB, "k.txt").exists());
+
+        assertEquals(MergeResult.Kind.UP_TO_DATE,
+                _a.merge("other").getKind());
+        _a.checkout("other");
+        MergeResult forward = _a.merge("master");
+        assertEquals(MergeResult.Kind.FAST_FORWARD, forward.getKind());
+        assertEquals(clean.getCommit(), forward.getCommit());
+    }
+
+    @Test
+    public void errorsStayInTheirRepo() throws IOException {
+        try {
+            _a.commit("nothing");
+            fail("commit with nothing staged");
+        } catch (GitletException e) {
+            assertEquals("No changes added to the commit.", e.getMessage());
+        }
+        try {
+            _b.merge("nope");
+            fail("merge of a missing branch");
+        } catch (GitletException e) {
+            assertEquals("A branch with that name does not exist.",
+                    e.getMessage());
+        }
+        File empty = new File(_dirA, "empty");
+        assertTrue(empty.mkdir());
+        try {
+            GitletRepository.open(empty);
+            fail("open of a directory without a repo");
+        } catch (GitletException e) {
+            assertEquals("Not in an initialized Gitlet directory.",
+                    e.getMessage());
+        }
+        write(_b, "wug.txt", "a wug\n");
+        _b.add("wug.txt");
+        _b.commit("added wug");
+        assertEquals(List.of("initial commit"), log(_a));
+    }
+
+    @Test
+    public void callsFromManyThreads() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        for (GitletRepository repo : List.of(_a, _b)) {
+            Thread t = new Thread(() -> {
+                try {
+                    for (int i = 0; i < COMMITS; i++) {
+                        write(repo, "f.txt", repo.root() + " " + i + "\n");
+                        repo.add("f.txt");
+                        repo.commit("version " + i);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            threads.add(t);
+            t.start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(List.of(), failures);
+        for (GitletRepository repo : List.of(_a, _b)) {
+            List<String> log = log(repo);
+            assertEquals(COMMITS + 1, log.size());
+            assertEquals("version " + (COMMITS - 1), log.get(0));
+            assertTrue(repo.status().getModified().isEmpty());
+            assertEquals(1, repo.find("version 0").size());
+        }
+    }
+
+    /** Commits each thread makes. */
+    private static final int COMMITS = 20;
+
+    /** Working directory of the first repo. */
+    private File _dirA;
+    /** Working directory of the second repo. */
+    private File _dirB;
+    /** The first repo. */
+    private GitletRepository _a;
+    /** The second repo. */
+    private GitletRepository _b;
+}
@@ -20,7 +20,8 @@ public class Help {
     private static String _init = "init:\t\tTo initizalize a gitlet repo.";
     /** Instance variable, help txt components.*/
     private static String _add
-            = "add:\t\tResembles `git add`. " + "To stage file for commit.";
+            = "add:\t\tResembles `git add`. " + "To stage files for commit, "
+            + "or every file with `add .`.";
     /** Instance variable, help txt components.*/
     private static String _commit
             = "commit:\t\tResembles `git commit`. To commit for file tracking.";
@@ -34,12 +35,17 @@ public class Help {
     /** Instance variable, help txt components.*/
     private static String _find
             = "find:\t\tFind commit based on given message. "
-            + "Doesn't exist in real Git.";
+            + "Doesn't exist in real Git. --word matches words, "
+            + "--contains any part of the message.";
     /** Instance variable, help txt components.*/
     private static String _status
             = "status:\t\tResembles `git status`. Print "
             + "status of current CWD.";
     /** Instance variable, help txt components.*/
+    private static String _diff
+            = "diff:\t\tResembles `git diff`. Show changes between the "
+            + "stage, commits and the working files.";
+    /** Instance variable, help txt components.*/
     private static String _checkout
             = "checkout:\tResembles `git checkout`. Checkout files "
             + "in three following ways.";
@@ -58,6 +64,26 @@ public class Help {
             = "merge:\t\tResembles `git merge`. Merge "
             + "files from a branch to current branch.";
     /** Instance variable, help txt components.*/
+    private static String _repack
+            = "repack:\t\tResembles `git repack -a -d`. Move all objects "
+            + "into one delta-compressed packfile.";
+    /** Instance variable, help txt components.*/
+    private static String _gc
+            = "gc:\t\tResembles `git gc --prune`. Delete unreachable "
+            + "objects and repack the rest.";
+    /** Instance variable, help txt components.*/
+    private static String _packRefs
+            = "pack-refs:\tResembles `git pack-refs --all`. Move all "
+            + "branches into .gitlet/packed-refs.";
+    /** Instance variable, help txt components.*/
+    private static String _migrate
+            = "migrate:\tRewrite a .gitlet made by an older gitlet "
+            + "in the current format.";
+    /** Instance variable, help txt components.*/
+    private static String _daemon
+            = "daemon:\t\tServe this repo on .gitlet/daemon.sock so that "
+            + "gitlet.Client skips JVM startup. `daemon stop` stops it.";
+    /** Instance variable, help txt components.*/
     private static String _listRemote
             = "list-remote:\tList out all remotes added.";
     /** Instance variable, help txt components.*/
@@ -95,13 +121,17 @@ public class Help {
             + "\t" + _commit + "\n"
             + "\t\t\t>>> gitlet commit [message]\n"
             + "\t" + _log + "\n"
-            + "\t\t\t>>> gitlet log\n"
+            + "\t\t\t>>> gitlet log [-n N] [--skip N] [--since DATE] "
+            + "[--until DATE] [branch | commit | A..B]\n"
             + "\t" + _globalLog + "\n"
             + "\t\t\t>>> gitlet global-log\n"
             + "\t" + _find + "\n"
             + "\t\t\t>>> gitlet find [commit message]\n"
             + "\t" + _status + "\n"
             + "\t\t\t>>> gitlet status\n"
+            + "\t" + _diff + "\n"
+            + "\t\t\t>>> gitlet diff [--myers] [commit [commit]] "
+            + "[-- file name]\n"
             + "\t" + _checkout + "\n"
             + "\t\t\t>>> gitlet checkout -- [file name]\n"
             + "\t\t\t>>> gitlet checkout [commit id] -- [file name]\n"
@@ -113,7 +143,17 @@ public class Help {
             + "\t" + _reset + "\n"
             + "\t\t\t>>> gitlet reset [commit]\n"
             + "\t" + _merge + "\n"
-            + "\t\t\t>>> gitlet merge [branch]\n\n"
+            + "\t\t\t>>> gitlet merge [branch]\n"
+            + "\t" + _repack + "\n"
+            + "\t\t\t>>> gitlet repack\n"
+            + "\t" + _gc + "\n"
+            + "\t\t\t>>> gitlet gc\n"
+            + "\t" + _packRefs + "\n"
+            + "\t\t\t>>> gitlet pack-refs\n"
+            + "\t" + _migrate + "\n"
+            + "\t\t\t>>> gitlet migrate\n"
+            + "\t" + _daemon + "\n"
+            + "\t\t\t>>> gitlet daemon [stop]\n\n"
             + "\t" + "===== Remote commands =====" + "\n"
             + "\t" + _listRemote + "\n"
             + "\t\t\t>>> gitlet list-remote\n"
@@ -0,0 +1,264 @@
+package gitlet;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/** LogWalk class for Gitlet, the tiny stupid version-control system.
+ *  The commits `log` prints: the first-parent chain from a head, newest
+ *  first, less every commit reachable from the excluded commits of an
+ *  A..B range, cut by --since/--until and by -n and --skip. Commits are
+ *  read only as the walk reaches them. A priority queue holds the
+ *  frontier, newest timestamp first; an excluded commit marks all its
+ *  parents excluded, so by the time a commit of the chain comes out of
+ *  the queue every commit of the excluded side newer than it has been
+ *  through the queue and has marked it if it reaches it. The walk stops
+ *  once the queue holds no wanted commit, or -n commits were shown, or
+ *  the chain passes --since, so it costs the commits printed plus the
+ *  excluded commits newer than the last of them, not the whole history.
+ *  On equal timestamps excluded commits come out first. Only excluded
+ *  commits are remembered once taken, and then without their contents,
+ *  so a plain log runs in constant memory.
+ *  @author Kevin Li
+ */
+class LogWalk implements Iterator<Commit> {
+
+    /** A walk of STORE from HEAD, excluding what EXCLUDED reach.
+     *  @param store object store holding the commits
+     *  @param head full hash of the first commit
+     *  @param excluded full hashes of commits whose history is left out */
+    LogWalk(ObjectStore store, String head, List<String> excluded) {
+        _store = store;
+        _queue = new PriorityQueue<>((a, b) -> {
+            int cmp = b._commit.getTimestamp()
+                    .compareTo(a._commit.getTimestamp());
+            if (cmp == 0) {
+                cmp = Boolean.compare(b._excluded, a._excluded);
+            }
+            return (cmp != 0) ? cmp : Long.compare(a._order, b._order);
+        });
+        for (String hash : excluded) {
+            exclude(hash);
+        }
+        want(head);
+    }
+
+    /** Stop after LIMIT commits.
+     *  @param limit most commits returned
+     *  @return this walk */
+    LogWalk limit(int limit) {
+        _limit = limit;
+        return this;
+    }
+
+    /** Leave out the first SKIP commits that would be returned.
+     *  @param skip number of commits to pass over
+     *  @return this walk */
+    LogWalk skip(int skip) {
+        _skip = skip;
+        return this;
+    }
+
+    /** Stop at the first commit made before SINCE.
+     *  @param since time in milliseconds
+     *  @return this walk */
+    LogWalk since(long since) {
+        _since = since;
+        return this;
+    }
+
+    /** Pass over commits made after UNTIL.
+     *  @param until time in milliseconds
+     *  @return this walk */
+    LogWalk until(long until) {
+        _until = until;
+        return this;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (_next == null && !_done) {
+            _next = advance();
+            _done = _next == null;
+        }
+        return _next != null;
+    }
+
+    @Override
+    public Commit next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Commit result = _next;
+        _next = null;
+        return result;
+    }
+
+    /** Parse a --since or --until date: "yyyy-MM-dd", an ISO date and
+     *  time with or without an offset, "yyyy-MM-dd HH:mm:ss", or the
+     *  date line of the log. Times without a zone are local.
+     *  @param text the date
+     *  @param endOfDay whether a bare day means its last millisecond
+     *                  rather than its first
+     *  @return time in milliseconds */
+    static long parseDate(String text, boolean endOfDay) {
+        ZoneId zone = ZoneId.systemDefault();
+        try {
+            LocalDate day = LocalDate.parse(text);
+            return (endOfDay ? day.plusDays(1) : day).atStartOfDay(zone)
+                    .toInstant().toEpochMilli() - (endOfDay ? 1 : 0);
+        } catch (DateTimeParseException e) {
+            // not a bare day
+        }
+        try {
+            return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // no offset
+        }
+        try {
+            return LocalDateTime.parse(text.replace(' ', 'T'))
+                    .atZone(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // not ISO
+        }
+        try {
+            return ZonedDateTime.parse(text, LOG_DATE).toInstant()
+                    .toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new GitletException("Incorrect operands.");
+        }
+    }
+
+    /** Find the next commit to return.
+     *  @return the commit, or null at the end */
+    private Commit advance() {
+        while (_shown < _limit && _wanted > 0) {
+            Node node = _queue.poll();
+            Commit commit = node._commit;
+            node._commit = null;
+            if (node._excluded) {
+                exclude(commit.getParent());
+                exclude(commit.getMergeParent());
+                continue;
+            }
+            _nodes.remove(commit.getHash());
+            _wanted--;
+            long time = commit.getTimestamp().getTime();
+            if (time < _since) {
+                return null;
+            }
+            want(commit.getParent());
+            if (time > _until) {
+                continue;
+            } else if (_skipped < _skip) {
+                _skipped++;
+                continue;
+            }
+            _shown++;
+            return commit;
+        }
+        return null;
+    }
+
+    /** Queue commit HASH as part of the chain, unless it is excluded.
+     *  @param hash full hash, or null */
+    private void want(String hash) {
+        if (hash == null || _nodes.containsKey(hash)) {
+            return;
+        }
+        Node node = new Node(read(hash), false);
+        _nodes.put(hash, node);
+        _queue.add(node);
+        _wanted++;
+    }
+
+    /** Mark commit HASH excluded, queueing it if it is new.
+     *  @param hash full hash, or null */
+    private void exclude(String hash) {
+        if (hash == null) {
+            return;
+        }
+        Node node = _nodes.get(hash);
+        if (node == null) {
+            node = new Node(read(hash), true);
+            _nodes.put(hash, node);
+            _queue.add(node);
+        } else if (!node._excluded) {
+            _queue.remove(node);
+            _wanted--;
+            node._excluded = true;
+            _queue.add(node);
+        }
+    }
+
+    /** Read commit HASH without going through the object cache, which a
+     *  long walk would only flush.
+     *  @param hash full hash
+     *  @return the commit */
+    private Commit read(String hash) {
+        byte[] stored = _store.read("commits", hash);
+        if (stored == null) {
+            throw new GitletException("Commit not found for this UID.");
+        }
+        return Commit.decode(hash, stored);
+    }
+
+    /** A commit the walk has reached. */
+    private class Node {
+        /** Constructor.
+         *  @param commit the commit
+         *  @param excluded whether it is reachable from an excluded one */
+        Node(Commit commit, boolean excluded) {
+            _commit = commit;
+            _excluded = excluded;
+            _order = _count++;
+        }
+
+        /** The commit. */
+        private Commit _commit;
+        /** Whether it is reachable from an excluded commit. */
+        private boolean _excluded;
+        /** When it was reached, to keep ties in order. */
+        private long _order;
+    }
+
+    /** Date line of the log. */
+    private static final DateTimeFormatter LOG_DATE =
+            DateTimeFormatter.ofPattern("E MMM d HH:mm:ss yyyy Z");
+
+    /** Store holding the commits. */
+    private ObjectStore _store;
+    /** Reached commits not yet taken, newest first. */
+    private PriorityQueue<Node> _queue;
+    /** Every reached commit by hash. */
+    private HashMap<String, Node> _nodes = new HashMap<>();
+    /** Queued commits that are not excluded. */
+    private int _wanted;
+    /** Most commits returned. */
+    private int _limit = Integer.MAX_VALUE;
+    /** Commits to pass over first. */
+    private int _skip;
+    /** Commits passed over so far. */
+    private int _skipped;
+    /** Commits returned so far. */
+    private int _shown;
+    /** Earliest time shown, in milliseconds. */
+    private long _since = Long.MIN_VALUE;
+    /** Latest time shown, in milliseconds. */
+    private long _until = Long.MAX_VALUE;
+    /** Number of nodes made, for their order. */
+    private long _count;
+    /** Commit found by hasNext() and not yet returned, or null. */
+    private Commit _next;
+    /** Whether the walk has ended. */
+    private boolean _done;
+}
@@ -1,7 +1,7 @@
 package gitlet;
 
 import java.io.File;
-import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
@@ -13,14 +13,26 @@ public class Main {
      *  <COMMAND> <OPERAND> .... */
 
     public static void main(String... args) {
+        int code = run(args);
+        if (code != 0) {
+            System.exit(code);
+        }
+    }
+
+    /** Run one gitlet command, printing to System.out. Used by main() and
+     *  by the daemon, which swaps System.out for each request.
+     *  @param args <COMMAND> <OPERAND> ....
+     *  @return the exit code */
+    static int run(String... args) {
+        repo = null;
         try {
             checkArgs(args);
             switch (args[0]) {
             case "init":
                 validateNumArgs(args, 0); init(); break;
             case "add":
-                validateAndFetch(1, args);
-                repo.add(args[1]); break;
+                validateAndFetch(NONZERO, args);
+                repo.add(Arrays.copyOfRange(args, 1, args.length)); break;
             case "commit":
                 validateAndFetch(1, args);
                 CommitTree cTree = repo.getCTree();
@@ -34,13 +46,19 @@ public class Main {
             case "global-log":
                 displayCmd("global-log", args); break;
             case "find":
-                validateAndFetch(1, args);
-                repo.find(args[1]); break;
+                validateAndFetch(args.length == 3 ? 2 : 1, args);
+                repo.find(args.length == 3 ? args[1] : null,
+                        args[args.length - 1]);
+                break;
             case "status":
                 displayCmd("status", args); break;
+            case "diff":
+                validateAndFetch(args.length - 1, args);
+                repo.diff(Arrays.copyOfRange(args, 1, args.length)); break;
             case "checkout":
                 int check = identifyCheckoutCase(args);
-                Repo.getRepo(false).checkout(check, args); break;
+                repo = Repo.getRepo(false);
+                repo.checkout(check, args); break;
             case "branch":
                 validateAndFetch(1, args);
                 repo.branch(args[1]); break;
@@ -65,20 +83,44 @@ public class Main {
                 remoteCmd("fetch", args); break;
             case "pull":
                 remoteCmd("pull", args); break;
+            case "migrate":
+                isGitletRepo(); validateNumArgs(args, 0);
+                Migration.migrate(); break;
+            case "pack-refs":
+                validateAndFetch(0, args);
+                repo.packRefs(); break;
+            case "repack":
+                validateAndFetch(0, args);
+                repo.repack(); break;
+            case "gc":
+                validateAndFetch(0, args);
+                repo.gc(); break;
+            case "daemon":
+                isGitletRepo(); Daemon.command(args); break;
             case "help": case "?":
                 printHelp(); break;
             default:
                 throw new GitletException("No command with that name exists.");
             }
         } catch (GitletException e) {
-            Utils.message(e.getMessage()); System.exit(0);
+            Utils.message(e.getMessage());
+            repo = null;
         }
+        ObjectCache.reportIfAsked();
+        return 0;
+    }
+
+    /** Getter for the repo the last command ran on.
+     *  @return the repo, or null if the last command failed or did not
+     *          load one */
+    static Repo lastRepo() {
+        return repo;
     }
 
     /** Gitlet command help. */
     private static void printHelp() {
         isGitletRepo();
-        File helpPath =  new File(initDIR + SLASH + "help.txt");
+        File helpPath = RepoRoot.gitlet("help.txt");
         if (!helpPath.exists()) {
             System.out.println("Help text does not exist.");
         }
@@ -93,8 +135,8 @@ public class Main {
             validateAndFetch(0, args);
             repo.status();
         } else if (cmd.equals("log")) {
-            validateAndFetch(0, args);
-            repo.log(false);
+            validateAndFetch(args.length - 1, args);
+            repo.log(Arrays.copyOfRange(args, 1, args.length));
         } else if (cmd.equals("global-log")) {
             validateAndFetch(0, args);
             repo.log(true);
@@ -127,13 +169,11 @@ public class Main {
 
     /** List remote helper.*/
     private static void listRemote() {
-        String remote
-                = ".gitlet" + SLASH + "refs" + SLASH + "remotes";
+        File remote = RepoRoot.gitlet("refs", "remotes");
         List<String> remList = Utils.plainFilenamesIn(remote);
         System.out.println("\n=== Remote List ===");
         for (String i : remList) {
-            Remote rObject
-                    = Utils.readObject(Utils.join(remote, i), Remote.class);
+            Remote rObject = Remote.read(Utils.join(remote, i));
             System.out.println(">>> " + i + "\t" + rObject.location());
         }
         System.out.println("=== List end ===\n");
@@ -170,56 +210,7 @@ public class Main {
     }
     /** Gitlet init folder. */
     public static void init() {
-        if (Utils.join(_cwd, ".gitlet").exists()) {
-            throw new GitletException("A Gitlet version-control"
-                    + " system already exists in the current directory.");
-        }
-        setPersistence();
-        repo = Repo.getRepo(true);
-    }
-
-    /** Make the directories. Set up some static variable for future use.
-     *  Write content in "master" branch. */
-    private static void setPersistence() {
-        initDIR.mkdir();
-        try {
-            _head = Utils.join(initDIR, "HEAD");
-            _stage = Utils.join(initDIR, "stage");
-            _refs = Utils.join(initDIR, "refs");
-            _objects = Utils.join(initDIR, "objects");
-            _head.createNewFile();
-            _stage.createNewFile();
-            _refs.mkdir();
-            Utils.writeContents(Utils.join(initDIR, "help.txt"),
-                    Help.helpTxt());
-            setupObjects(_objects);
-            setUpRefs(_refs);
-            Utils.writeContents(_head, _master.toString());
-        } catch (IOException e) {
-            System.out.println("Writing error in serPersistence method.");
-        }
-    }
-
-    /** Set up Object directory in .gitlet/objects.
-     * @param obj for setup obj folder */
-    private static void setupObjects(File obj) {
-        obj.mkdir();
-        Utils.join(obj, "commits").mkdir();
-        Utils.join(obj, "blobs").mkdir();
-    }
-
-    /** Helper function for setting up the /stage directory.
-     * @param ref set up ref dir*/
-    private static void setUpRefs(File ref) {
-        try {
-            _branches = Utils.join(ref, "branches");
-            _branches.mkdir();
-            Utils.join(ref, "remotes").mkdir();
-            _master = Utils.join(_branches, "master");
-            _master.createNewFile();
-        } catch (IOException e) {
-            System.out.println("Writing error in setUpRefs method.");
-        }
+        repo = Repo.init();
     }
 
     /** Validate the number of arguments, check gitlet repo, and fetch
@@ -243,10 +234,13 @@ public class Main {
     /**
      * Helper function to validate number of arguments.
      * @param args the arguments passsed in
-     * @param n number that the cmd should take in*/
+     * @param n number that the cmd should take in, or NONZERO for
+     *          one or more*/
     private static void validateNumArgs(String[] args, int n) {
-        if (n == NONZERO && args.length == 1) {
-            throw new GitletException("Incorrect operands.");
+        if (n == NONZERO) {
+            if (args.length == 1) {
+                throw new GitletException("Incorrect operands.");
+            }
         } else if (args.length != n + 1) {
             throw new GitletException("Incorrect operands.");
         }
@@ -255,7 +249,7 @@ public class Main {
      * Helper function to check if is a Gitlet repo. Throw an error if not.
      * */
     private static void isGitletRepo() {
-        if (!Utils.join(_cwd, ".gitlet").exists()) {
+        if (!RepoRoot.gitlet().exists()) {
             throw new GitletException("Not in an "
                     + "initialized Gitlet directory.");
         }
@@ -265,24 +259,4 @@ public class Main {
     private static Repo repo = null;
     /** A variable to stand for non-zero value in validateArgs. */
     private static final int NONZERO = 100;
-    /** Current working directory. */
-    private static File _cwd = new File(".");
-    /** Init .gitlet directory. */
-    private static File initDIR = new File(".gitlet");
-    /** HEAD pointer for commitTree. HEAD points to a branch in
-     *  ./refs/branches */
-    private static File _head;
-    /** A ref directory stores branches and remotes.*/
-    private static File _refs;
-    /** Stage for addition. */
-    private static File _stage;
-    /** Should contain `commits` directory and other
-     *  serialized obj if necessary. */
-    private static File _objects;
-    /** Branches directory.*/
-    private static File _branches;
-    /** Master branch.*/
-    private static File _master;
-    /** Separator string.*/
-    private static final String SLASH = File.separator;
 }
@@ -1,9 +1,10 @@
 package gitlet;
 
-import java.io.File;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 /** Merge Helper class for Gitlet, the tiny stupid version-control system.
  *  @author Kevin Li
@@ -20,67 +21,75 @@ public class Merge {
         _stage = repo.getStage();
     }
 
-    /** Gitlet command merge.
-     *  @param mergeB branch to merge from. */
-    public void merge(String mergeB) {
+    /** Gitlet command merge. Only the paths that changed on either side
+     *  since the split point are visited; subtrees whose hashes did not
+     *  change are never opened. Nothing is printed; the caller reports
+     *  the result.
+     *  @param mergeB branch to merge from.
+     *  @return what the merge did */
+    public MergeResult merge(String mergeB) {
         String originMerge = mergeB;
         mergeB = Repo.reconstructBranch(mergeB);
         checkMerge(mergeB); Commit mergeHead = Repo.readBranch(mergeB);
-        HashMap<String, String> currMap = _CTree.getHEAD().blobsMap();
-        HashMap<String, String> mergeMap = mergeHead.blobsMap();
         if (hasUntracked()) {
             throw new GitletException("There is an untracked file "
                     + "in the way; delete it, or add and commit it first.");
         }
         Commit lca = _repo.findLCA(_CTree.getHEAD(), mergeHead);
         if (lca.getHash().equals(mergeHead.getHash())) {
-            System.out.println("Given branch is "
-                    + "an ancestor of the current branch.");
-            return;
+            return new MergeResult(MergeResult.Kind.UP_TO_DATE,
+                    _CTree.getHEAD().getHash(), _conflicts);
         } else if (lca.getHash().equals(_CTree.getHEAD().getHash())) {
-            System.out.println("Current branch fast-forwarded.");
             String fastHash = mergeHead.getHash();
             _repo.checkOutCommit(fastHash);
-            Utils.writeContents(
-                    Utils.join(_branchPath, _CTree.getCurrBranch()), fastHash);
-            return;
+            _CTree.writeBranch(_CTree.getCurrBranch(), fastHash);
+            return new MergeResult(MergeResult.Kind.FAST_FORWARD, fastHash,
+                    _conflicts);
         }
-        HashMap<String, String> lcaMap = lca.blobsMap();
-        HashMap<String, String> unionMap = new HashMap<>(mergeMap);
-        unionMap.putAll(currMap);
-        Set<String> unionCM = unionMap.keySet();
-        for (String i : unionCM) {
-            String currHash = currMap.get(i);
-            String mergeHash = mergeMap.get(i);
+        TreeMap<String, String[]> currDiff = new TreeMap<>();
+        TreeMap<String, String[]> mergeDiff = new TreeMap<>();
+        Tree.diff(lca.treeHash(), _CTree.getHEAD().treeHash(), "", currDiff);
+        Tree.diff(lca.treeHash(), mergeHead.treeHash(), "", mergeDiff);
+        TreeSet<String> changed = new TreeSet<>(currDiff.keySet());
+        changed.addAll(mergeDiff.keySet());
+        for (String i : changed) {
+            String[] c = currDiff.get(i), m = mergeDiff.get(i);
+            String lcaHash = (c != null) ? c[0] : m[0];
+            String currHash = (c != null) ? c[1] : lcaHash;
+            String mergeHash = (m != null) ? m[1] : lcaHash;
             if (currHash != null && mergeHash != null) {
-                if (lcaMap.containsKey(i)) {
-                    processChange(lcaMap.get(i), currHash,
+                if (lcaHash != null) {
+                    processChange(lcaHash, currHash,
                             mergeHash, i);
                 } else if (!currHash.equals(mergeHash)) {
                     processConflict(currHash, mergeHash, i);
                 }
             } else if (currHash != null) {
-                if (lcaMap.containsKey(i)) {
-                    if (currHash.equals(lcaMap.get(i))) {
+                if (lcaHash != null) {
+                    if (currHash.equals(lcaHash)) {
                         _stage.addToStage("remove", i, currHash);
-                        Utils.restrictedDelete(i);
+                        Utils.restrictedDelete(RepoRoot.file(i));
+                        _stage.forget(i);
                     } else {
                         processConflict(currHash, mergeHash, i);
                     }
                 }
             } else if (mergeHash != null) {
-                if (!lcaMap.containsKey(i)) {
-                    Utils.writeContents(new File(i),
-                            Repo.findBlobByUid(mergeHash).getContent());
+                if (lcaHash == null) {
+                    ObjectStore.local().copyTo("blobs", mergeHash,
+                            RepoRoot.file(i));
                     _stage.addToStage("add", i, mergeHash);
-                } else if (!mergeHash.equals(lcaMap.get(i))) {
+                } else if (!mergeHash.equals(lcaHash)) {
                     processConflict(currHash, mergeHash, i);
                 }
             }
         }
         String commitMsg = String.format("Merged %s into %s.",
                 originMerge, _CTree.getCurrBranch());
-        _CTree.commit(false, _stage, mergeHead.getHash(), commitMsg);
+        Commit merged = _CTree.commit(false, _stage, mergeHead.getHash(),
+                commitMsg);
+        return new MergeResult(MergeResult.Kind.MERGED, merged.getHash(),
+                _conflicts);
     }
 
     /** Helper function for merge to process file change conditions.
@@ -95,8 +104,7 @@ public class Merge {
         boolean currChange = ref.compareTo(cHash) != 0;
         boolean mergeChange = ref.compareTo(mHash) != 0;
         if (!currChange && mergeChange) {
-            Utils.writeContents(new File(fname),
-                    Repo.findBlobByUid(mHash).getContent());
+            ObjectStore.local().copyTo("blobs", mHash, RepoRoot.file(fname));
             _stage.addToStage("add", fname, mHash);
         } else if (currChange && mergeChange
                 && !cHash.equals(mHash)) {
@@ -110,7 +118,7 @@ public class Merge {
      * @param fname file*/
     private void processConflict(String cHash, String mHash,
                                  String fname) {
-        System.out.println("Encountered a merge conflict.");
+        _conflicts.add(fname);
         String currContent, mergeContent;
         currContent = mergeContent = "";
         if (cHash != null) {
@@ -121,22 +129,21 @@ public class Merge {
         }
         String result = "<<<<<<<< HEAD\n" + currContent + "========\n"
                 + mergeContent + ">>>>>>>>\n";
-        Utils.writeContents(new File(fname), result);
-        Blob newBlob = new Blob(new File(fname));
+        Utils.writeContents(RepoRoot.file(fname), result);
+        Blob newBlob = new Blob(RepoRoot.file(fname));
         _stage.addToStage("add", fname, newBlob.getHash());
     }
 
     /** Helper function for Merge to verify condition.
      * @param merge is merge checking*/
     private void checkMerge(String merge) {
-        File verify = Utils.join(_branchPath, merge);
         boolean stageCleared = _stage.getStage("add").size() == 0
                 && _stage.getStage("remove").size() == 0;
 
         if (merge.equals(_CTree.getCurrBranch())) {
             throw new GitletException("Cannot merge a "
                     + "branch with itself.");
-        } else if (!verify.exists()) {
+        } else if (!Refs.local().exists(merge)) {
             throw new GitletException("A branch with that"
                     + " name does not exist.");
         } else if (!stageCleared) {
@@ -144,14 +151,14 @@ public class Merge {
         }
     }
 
-    /** Specifically for merge.
+    /** Specifically for merge. Only looks at names, so no file is read.
      * @return true is there is untrack files*/
     private boolean hasUntracked() {
-        List<String> cwdFiles = Utils.plainFilenamesIn(new File("."));
+        List<String> cwdFiles = Utils.plainFilenamesIn(RepoRoot.dir());
+        HashMap<String, String> headBlobs = _CTree.getHEAD().blobsMap();
         if (cwdFiles != null) {
             for (String fname : cwdFiles) {
-                boolean tracked
-                        = _CTree.getHEAD().blobsMap().containsKey(fname);
+                boolean tracked = headBlobs.containsKey(fname);
                 if (!tracked) {
                     return true;
                 }
@@ -166,11 +173,7 @@ public class Merge {
     private CommitTree _CTree;
     /** Private instance variable for Stage. */
     private Stage _stage;
-    /** File separator. */
-    private static final String S = File.separator;
-    /** Path File to branches. */
-    private static File _branchPath
-            = new File("." + S
-            + ".gitlet" + S + "refs" + S + "branches");
+    /** Files written with conflict markers, in order. */
+    private List<String> _conflicts = new ArrayList<>();
 
 }
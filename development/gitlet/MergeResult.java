@@ -0,0 +1,57 @@
+package gitlet;
+
+import java.util.Collections;
+import java.util.List;
+
+/** MergeResult class for Gitlet, the tiny stupid version-control system.
+ *  What a merge did: nothing, a fast-forward, or a merge commit, with the
+ *  files left in conflict.
+ *  @author Kevin Li
+ */
+public class MergeResult {
+
+    /** The ways a merge can end. */
+    public enum Kind {
+        /** The given branch is an ancestor of the current one. */
+        UP_TO_DATE,
+        /** The current branch was moved to the given one. */
+        FAST_FORWARD,
+        /** A merge commit was made. */
+        MERGED
+    }
+
+    /** Constructor.
+     *  @param kind how the merge ended
+     *  @param commit hash the current branch points to afterwards
+     *  @param conflicts files written with conflict markers */
+    MergeResult(Kind kind, String commit, List<String> conflicts) {
+        _kind = kind;
+        _commit = commit;
+        _conflicts = Collections.unmodifiableList(conflicts);
+    }
+
+    /** Getter for how the merge ended.
+     *  @return the kind */
+    public Kind getKind() {
+        return _kind;
+    }
+
+    /** Getter for the head of the current branch after the merge.
+     *  @return commit hash */
+    public String getCommit() {
+        return _commit;
+    }
+
+    /** Getter for the files in conflict, in order. Empty unless MERGED.
+     *  @return file names */
+    public List<String> getConflicts() {
+        return _conflicts;
+    }
+
+    /** How the merge ended. */
+    private Kind _kind;
+    /** Head of the current branch afterwards. */
+    private String _commit;
+    /** Files written with conflict markers. */
+    private List<String> _conflicts;
+}
@@ -0,0 +1,551 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/** MessageIndex class for Gitlet, the tiny stupid version-control system.
+ *  The messages of all commits, so that `find` never decodes a commit.
+ *  They are kept in .gitlet/messages, a header followed by one record
+ *  (hash, message length, UTF-8 message) per commit. The file is
+ *  append-only: commit and fetch append the commits they write, and a
+ *  process that already loaded it only reads the records added since.
+ *  In memory the records stay as read, numbered, and three maps lead
+ *  from a query to record numbers: a hash table on whole messages, and
+ *  maps from lowercase words and from three-character substrings. The
+ *  hash table holds only ints, so loading the file costs no more than
+ *  reading it; the other two maps are built by the first query needing
+ *  them, which pays off in the daemon. A repo older than the file has it
+ *  built by the first `find`, with a parallel scan of every commit.
+ *  @author Kevin Li
+ */
+class MessageIndex {
+
+    /** The message index of the repo whose .gitlet directory is GITLETDIR.
+     *  @param gitletDir a .gitlet directory */
+    MessageIndex(File gitletDir) {
+        _gitletDir = gitletDir;
+        _file = Utils.join(gitletDir, "messages");
+    }
+
+    /** Getter for the message index of the repo at RepoRoot. It is
+     *  loaded again if another process replaced the file since.
+     *  @return the local message index */
+    static MessageIndex local() {
+        return of(RepoRoot.gitlet());
+    }
+
+    /** Getter for the message index kept for the repo whose .gitlet
+     *  directory is GITLETDIR, the one local() returns for that repo.
+     *  @param gitletDir a .gitlet directory
+     *  @return its message index */
+    static MessageIndex of(File gitletDir) {
+        return RepoRoot.local(gitletDir, MessageIndex.class,
+                MessageIndex::new, MessageIndex::fresh);
+    }
+
+    /** Start an empty index in a new repo, so it is never scanned.
+     *  @param gitletDir the .gitlet directory of the repo */
+    static void create(File gitletDir) {
+        new MessageIndex(gitletDir).write(new ArrayList<>(),
+                new ArrayList<>());
+    }
+
+    /** Record the message of a commit that was just written. Repos
+     *  without the file are left alone until their first `find`. Only
+     *  the header is read: the record goes at the end of the file, and
+     *  into memory only if the records there are already up to date.
+     *  @param uid commit hash
+     *  @param msg commit message */
+    void add(String uid, String msg) {
+        if (!_file.exists()) {
+            return;
+        }
+        byte[] record = encode(uid, msg);
+        Object key = fileKey();
+        try (RandomAccessFile out = new RandomAccessFile(_file, "rw")) {
+            long size = out.length();
+            if (size < HEADER || out.readInt() != MAGIC
+                    || out.readInt() != VERSION) {
+                throw new GitletException("Corrupt message index.");
+            }
+            out.seek(size);
+            out.write(record);
+            if (_raw != null && size == _length && key.equals(_key)) {
+                _length += record.length;
+                append(record, 0, record.length);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Drop the records of the commits UIDS, which gc deleted.
+     *  @param uids commit hashes */
+    void remove(Set<String> uids) {
+        if (!_file.exists()) {
+            return;
+        }
+        refresh();
+        List<String> kept = new ArrayList<>();
+        List<String> msgs = new ArrayList<>();
+        for (int i = 0; i < _count; i++) {
+            String uid = Pack.toHex(ByteBuffer.wrap(_raw), _starts[i]);
+            if (!uids.contains(uid)) {
+                kept.add(uid);
+                msgs.add(message(i));
+            }
+        }
+        write(kept, msgs);
+    }
+
+    /** Commits whose message is exactly MSG.
+     *  @param msg a message
+     *  @return sorted commit hashes */
+    List<String> exact(String msg) {
+        load();
+        byte[] key = msg.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(key, 0, key.length);
+        Postings result = new Postings();
+        for (int i = _heads[hash & (_heads.length - 1)]; i >= 0;
+             i = _next[i]) {
+            int pos = _starts[i] + Pack.HASH_BYTES + 4;
+            if (_hashes[i] == hash && Arrays.equals(_raw, pos,
+                    pos + messageLength(i), key, 0, key.length)) {
+                result.add(i);
+            }
+        }
+        return uids(result);
+    }
+
+    /** Commits whose message holds every word of QUERY, ignoring case
+     *  and punctuation.
+     *  @param query one or more words
+     *  @return sorted commit hashes */
+    List<String> words(String query) {
+        load();
+        if (_words == null) {
+            _words = new HashMap<>();
+            for (int i = 0; i < _count; i++) {
+                indexWords(i);
+            }
+        }
+        List<Postings> lists = new ArrayList<>();
+        for (String w : words(query, new HashSet<>())) {
+            lists.add(_words.get(w));
+        }
+        return lists.isEmpty() ? new ArrayList<>() : uids(intersect(lists));
+    }
+
+    /** Commits whose message contains QUERY.
+     *  @param query a string
+     *  @return sorted commit hashes */
+    List<String> substring(String query) {
+        load();
+        Postings candidates;
+        if (query.length() < GRAM) {
+            candidates = new Postings();
+            for (int i = 0; i < _count; i++) {
+                candidates.add(i);
+            }
+        } else {
+            if (_grams == null) {
+                _grams = new HashMap<>();
+                for (int i = 0; i < _count; i++) {
+                    indexGrams(i);
+                }
+            }
+            List<Postings> lists = new ArrayList<>();
+            for (String g : grams(query)) {
+                lists.add(_grams.get(g));
+            }
+            candidates = intersect(lists);
+        }
+        Postings result = new Postings();
+        for (int k = 0; k < candidates._size; k++) {
+            int i = candidates._ids[k];
+            if (message(i).contains(query)) {
+                result.add(i);
+            }
+        }
+        return uids(result);
+    }
+
+    /** Load the file, building it first if the repo has none. */
+    private void load() {
+        if (!_file.exists()) {
+            build();
+        }
+        refresh();
+    }
+
+    /** Check that the records read are still a prefix of the file: it
+     *  is the same file, only ever appended to, and no shorter.
+     *  @return false if another process replaced the file */
+    private boolean fresh() {
+        return _raw == null || (_key.equals(fileKey())
+                && _file.length() >= _length);
+    }
+
+    /** Identity of the file as it is now, which a file renamed over it
+     *  does not share even at the same length.
+     *  @return the file key, or the creation time where there is none,
+     *          or null if there is no file */
+    private Object fileKey() {
+        if (!_file.exists()) {
+            return null;
+        }
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(_file.toPath(),
+                    BasicFileAttributes.class);
+            return (attrs.fileKey() != null) ? attrs.fileKey()
+                    : attrs.creationTime();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Read the records appended since the last read, or all of them
+     *  if the file was replaced since. */
+    private void refresh() {
+        Object key = fileKey();
+        long size = _file.length();
+        if (_raw == null || size < _length || !key.equals(_key)) {
+            _raw = new byte[INITIAL * RECORD_GUESS];
+            _used = 0;
+            _starts = new int[INITIAL];
+            _hashes = new int[INITIAL];
+            _next = new int[INITIAL];
+            _heads = new int[2 * INITIAL];
+            Arrays.fill(_heads, -1);
+            _count = 0;
+            _words = null;
+            _grams = null;
+            _length = 0;
+            _key = key;
+        }
+        if (size == _length) {
+            return;
+        }
+        try (RandomAccessFile in = new RandomAccessFile(_file, "r")) {
+            if (_length == 0) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    throw new GitletException("Corrupt message index.");
+                }
+                _length = HEADER;
+            }
+            byte[] raw = new byte[(int) (size - _length)];
+            in.seek(_length);
+            in.readFully(raw);
+            ByteBuffer buf = ByteBuffer.wrap(raw);
+            int pos = 0;
+            while (raw.length - pos >= Pack.HASH_BYTES + 4) {
+                int len = Pack.HASH_BYTES + 4
+                        + buf.getInt(pos + Pack.HASH_BYTES);
+                if (raw.length - pos < len) {
+                    break;
+                }
+                append(raw, pos, len);
+                pos += len;
+            }
+            _length += pos;
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Build the file from every commit in the repo. Commits are read
+     *  and decoded in parallel. */
+    private void build() {
+        ObjectStore store = new ObjectStore(_gitletDir);
+        List<String> uids = store.list("commits");
+        String[] msgs = new String[uids.size()];
+        IntStream.range(0, msgs.length).parallel().forEach(i -> {
+            String uid = uids.get(i);
+            msgs[i] = Commit.decode(uid, store.read("commits", uid))
+                    .getMessage();
+        });
+        write(uids, Arrays.asList(msgs));
+    }
+
+    /** Replace the file with one holding the messages MSGS of UIDS.
+     *  @param uids commit hashes
+     *  @param msgs their messages */
+    private void write(List<String> uids, List<String> msgs) {
+        try {
+            File tmp = File.createTempFile("messages", null, _gitletDir);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                for (int i = 0; i < uids.size(); i++) {
+                    out.write(encode(uids.get(i), msgs.get(i)));
+                }
+            }
+            Files.move(tmp.toPath(), _file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _raw = null;
+    }
+
+    /** Add the encoded record in LEN bytes of BUF from OFF to the
+     *  records in memory.
+     *  @param buf bytes holding the record
+     *  @param off where it starts
+     *  @param len its length */
+    private void append(byte[] buf, int off, int len) {
+        if (_used + len > _raw.length) {
+            _raw = Arrays.copyOf(_raw, Math.max(2 * _raw.length,
+                    _used + len));
+        }
+        System.arraycopy(buf, off, _raw, _used, len);
+        if (_count == _starts.length) {
+            _starts = Arrays.copyOf(_starts, 2 * _count);
+            _hashes = Arrays.copyOf(_hashes, 2 * _count);
+            _next = Arrays.copyOf(_next, 2 * _count);
+            rehash(4 * _count);
+        }
+        int i = _count++;
+        _starts[i] = _used;
+        _used += len;
+        int pos = _starts[i] + Pack.HASH_BYTES + 4;
+        _hashes[i] = hash(_raw, pos, pos + messageLength(i));
+        link(i);
+        if (_words != null) {
+            indexWords(i);
+        }
+        if (_grams != null) {
+            indexGrams(i);
+        }
+    }
+
+    /** Put record I at the head of the chain of its hash.
+     *  @param i record number */
+    private void link(int i) {
+        int slot = _hashes[i] & (_heads.length - 1);
+        _next[i] = _heads[slot];
+        _heads[slot] = i;
+    }
+
+    /** Rebuild the chains over SLOTS slots.
+     *  @param slots a power of two */
+    private void rehash(int slots) {
+        _heads = new int[slots];
+        Arrays.fill(_heads, -1);
+        for (int i = 0; i < _count; i++) {
+            link(i);
+        }
+    }
+
+    /** Byte length of the message of record I.
+     *  @param i record number
+     *  @return length */
+    private int messageLength(int i) {
+        return ByteBuffer.wrap(_raw).getInt(_starts[i] + Pack.HASH_BYTES);
+    }
+
+    /** Message of record I.
+     *  @param i record number
+     *  @return the message */
+    private String message(int i) {
+        return new String(_raw, _starts[i] + Pack.HASH_BYTES + 4,
+                messageLength(i), StandardCharsets.UTF_8);
+    }
+
+    /** Hash of the bytes of BUF in [FROM, TO).
+     *  @param buf bytes
+     *  @param from first byte
+     *  @param to one past the last byte
+     *  @return hash, spread over the low bits */
+    private static int hash(byte[] buf, int from, int to) {
+        int h = 1;
+        for (int i = from; i < to; i++) {
+            h = 31 * h + buf[i];
+        }
+        return h ^ (h >>> 16);
+    }
+
+    /** Add record I to the word map.
+     *  @param i record number */
+    private void indexWords(int i) {
+        for (String w : words(message(i), new HashSet<>())) {
+            _words.computeIfAbsent(w, k -> new Postings()).add(i);
+        }
+    }
+
+    /** Add record I to the substring map.
+     *  @param i record number */
+    private void indexGrams(int i) {
+        for (String g : grams(message(i))) {
+            _grams.computeIfAbsent(g, k -> new Postings()).add(i);
+        }
+    }
+
+    /** Sorted hashes of the records in LIST.
+     *  @param list record numbers, possibly null
+     *  @return commit hashes */
+    private List<String> uids(Postings list) {
+        TreeSet<String> result = new TreeSet<>();
+        if (list != null) {
+            for (int k = 0; k < list._size; k++) {
+                result.add(Pack.toHex(ByteBuffer.wrap(_raw),
+                        _starts[list._ids[k]]));
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Record numbers present in every one of LISTS.
+     *  @param lists non-empty list of postings, possibly null
+     *  @return their intersection */
+    private static Postings intersect(List<Postings> lists) {
+        lists.sort((a, b) -> Integer.compare(size(a), size(b)));
+        Postings result = lists.get(0);
+        for (int n = 1; n < lists.size() && size(result) > 0; n++) {
+            Postings other = lists.get(n), both = new Postings();
+            int j = 0;
+            for (int k = 0; k < result._size; k++) {
+                int id = result._ids[k];
+                while (j < other._size && other._ids[j] < id) {
+                    j++;
+                }
+                if (j < other._size && other._ids[j] == id) {
+                    both.add(id);
+                }
+            }
+            result = both;
+        }
+        return (result == null) ? new Postings() : result;
+    }
+
+    /** Length of LIST, which may be null.
+     *  @param list postings
+     *  @return number of records */
+    private static int size(Postings list) {
+        return (list == null) ? 0 : list._size;
+    }
+
+    /** Collect the lowercase words of TEXT.
+     *  @param text a message or query
+     *  @param out where the words go
+     *  @return OUT */
+    private static HashSet<String> words(String text, HashSet<String> out) {
+        for (String w : text.toLowerCase(Locale.ROOT).split(WORD_BREAK)) {
+            if (!w.isEmpty()) {
+                out.add(w);
+            }
+        }
+        return out;
+    }
+
+    /** The distinct GRAM-character substrings of TEXT.
+     *  @param text a message or query
+     *  @return substrings */
+    private static HashSet<String> grams(String text) {
+        HashSet<String> result = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            result.add(text.substring(i, i + GRAM));
+        }
+        return result;
+    }
+
+    /** One record of the file.
+     *  @param uid commit hash
+     *  @param msg commit message
+     *  @return encoded record */
+    private static byte[] encode(String uid, String msg) {
+        byte[] text = msg.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(Pack.toBytes(uid));
+            out.writeInt(text.length);
+            out.write(text);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Ascending record numbers, in a growable int array. */
+    private static class Postings {
+        /** Append record I, unless it is already last.
+         *  @param i record number */
+        void add(int i) {
+            if (_size > 0 && _ids[_size - 1] == i) {
+                return;
+            }
+            if (_size == _ids.length) {
+                _ids = Arrays.copyOf(_ids, 2 * _size);
+            }
+            _ids[_size++] = i;
+        }
+
+        /** Record numbers. */
+        private int[] _ids = new int[2];
+        /** Number of record numbers in use. */
+        private int _size;
+    }
+
+    /** Magic number of the file ("GMSG"). */
+    private static final int MAGIC = 0x474d5347;
+    /** Format version of the file. */
+    private static final int VERSION = 1;
+    /** Size of the header. */
+    private static final int HEADER = 8;
+    /** Records room is made for at first. */
+    private static final int INITIAL = 1024;
+    /** Guess at the size of one record. */
+    private static final int RECORD_GUESS = 64;
+    /** Length of the substrings in the substring map. */
+    private static final int GRAM = 3;
+    /** What separates words. */
+    private static final String WORD_BREAK = "[^\\p{L}\\p{N}]+";
+
+    /** The .gitlet directory. */
+    private File _gitletDir;
+    /** The messages file. */
+    private File _file;
+    /** Identity of the file read, from fileKey(). */
+    private Object _key;
+    /** Bytes of the file read so far. */
+    private long _length;
+    /** Records read so far, as in the file, null until loaded. */
+    private byte[] _raw;
+    /** Bytes of _raw in use. */
+    private int _used;
+    /** Number of records. */
+    private int _count;
+    /** Offset in _raw of each record. */
+    private int[] _starts;
+    /** Hash of the message of each record. */
+    private int[] _hashes;
+    /** Next record in the same hash chain, or -1. */
+    private int[] _next;
+    /** First record of each hash chain, or -1. */
+    private int[] _heads;
+    /** Records by word, null until first needed. */
+    private HashMap<String, Postings> _words;
+    /** Records by substring of length GRAM, null until first needed. */
+    private HashMap<String, Postings> _grams;
+}
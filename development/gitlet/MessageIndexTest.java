@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of MessageIndex for Gitlet, the tiny stupid version-control
+ *  system. Each test works on the index of a fresh .gitlet directory;
+ *  a new MessageIndex on it plays the part of another process.
+ *  @author Kevin Li
+ */
+public class MessageIndexTest {
+
+    /** Create a .gitlet directory with an empty index. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("gitlet").toFile();
+        _gitlet = new File(_dir, ".gitlet");
+        _gitlet.mkdir();
+        MessageIndex.create(_gitlet);
+    }
+
+    /** Delete the directory of the test. */
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(_dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    /** Add the commits "NAME 1" to "NAME N" to INDEX.
+     *  @param index a message index
+     *  @param name message prefix
+     *  @param n number of commits
+     *  @return their hashes */
+    private static List<String> commit(MessageIndex index, String name,
+                                       int n) {
+        List<String> result = new ArrayList<>();
+        for (int i = 1; i <= n; i++) {
+            String uid = Utils.sha1(name + " " + i);
+            index.add(uid, name + " " + i);
+            result.add(uid);
+        }
+        return result;
+    }
+
+    /** Record the commit of message MSG in INDEX, under a hash made
+     *  from NAME.
+     *  @param index a message index
+     *  @param name what tells apart commits with the same message
+     *  @param msg commit message
+     *  @return its hash */
+    private static String add(MessageIndex index, String name, String msg) {
+        String uid = Utils.sha1(name, msg);
+        index.add(uid, msg);
+        return uid;
+    }
+
+    /** The sorted list of UIDS.
+     *  @param uids commit hashes
+     *  @return them, sorted */
+    private static List<String> sorted(String... uids) {
+        List<String> result = new ArrayList<>(List.of(uids));
+        Collections.sort(result);
+        return result;
+    }
+
+    @Test
+    public void exactMatchesWholeMessages() {
+        MessageIndex index = MessageIndex.of(_gitlet);
+        String a = add(index, "a", "fix bug");
+        String b = add(index, "b", "fix bug");
+        add(index, "c", "fix bug in merge");
+        add(index, "d", "Fix bug");
+        assertEquals(sorted(a, b), index.exact("fix bug"));
+        assertTrue(index.exact("fix").isEmpty());
+        assertTrue(index.exact("fix bug ").isEmpty());
+        assertTrue(index.exact("").isEmpty());
+    }
+
+    @Test
+    public void wordsIgnoreCaseAndPunctuation() {
+        MessageIndex index = MessageIndex.of(_gitlet);
+        String a = add(index, "a", "Fix merge bug.");
+        String b = add(index, "b", "merge: speed up");
+        add(index, "c", "bug in log");
+        add(index, "d", "merged");
+        assertEquals(sorted(a), index.words("MERGE, bug"));
+        assertEquals(sorted(a, b), index.words("merge"));
+        assertTrue(index.words("merge log").isEmpty());
+        assertTrue(index.words("nothing").isEmpty());
+        assertTrue(index.words("...").isEmpty());
+    }
+
+    @Test
+    public void substringFindsPartsOfWords() {
+        MessageIndex index = MessageIndex.of(_gitlet);
+        String a = add(index, "a", "refactoring merge");
+        String b = add(index, "b", "ref");
+        String c = add(index, "c", "prefix");
+        assertEquals(sorted(a, b, c), index.substring("ref"));
+        assertEquals(sorted(c), index.substring("fi"));
+        assertEquals(sorted(a), index.substring("factoring m"));
+        assertEquals(sorted(a, b, c), index.substring(""));
+        assertTrue(index.substring("Merge").isEmpty());
+        assertTrue(index.substring("refs").isEmpty());
+    }
+
+    @Test
+    public void addsOfEveryProcessAreSeen() {
+        MessageIndex kept = MessageIndex.of(_gitlet);
+        String first = add(kept, "a", "first commit");
+        assertEquals(sorted(first), kept.words("commit"));
+        assertEquals(sorted(first), kept.substring("ommi"));
+        String own = add(kept, "b", "own commit");
+        String other = add(new MessageIndex(_gitlet), "c", "other commit");
+        assertEquals(sorted(first, own, other), kept.words("commit"));
+        assertEquals(sorted(first, own, other), kept.substring("ommi"));
+        assertEquals(sorted(other), kept.exact("other commit"));
+        List<String> many = commit(new MessageIndex(_gitlet), "many", 3000);
+        assertEquals(3000, kept.words("many").size());
+        assertEquals(List.of(many.get(2999)), kept.exact("many 3000"));
+        assertEquals(List.of(many.get(1233)), kept.exact("many 1234"));
+        assertEquals(sorted(own), kept.exact("own commit"));
+    }
+
+    @Test
+    public void removedCommitsAreGone() {
+        MessageIndex kept = MessageIndex.of(_gitlet);
+        String a = add(kept, "a", "keep me");
+        String b = add(kept, "b", "drop me");
+        String c = add(kept, "c", "drop me too");
+        assertEquals(sorted(a, b, c), kept.words("me"));
+        kept.remove(new HashSet<>(List.of(b, c)));
+        for (MessageIndex index : List.of(kept, new MessageIndex(_gitlet))) {
+            assertTrue(index.exact("drop me").isEmpty());
+            assertEquals(sorted(a), index.words("me"));
+            assertEquals(sorted(a), index.substring("me"));
+        }
+        String d = add(kept, "d", "drop me");
+        assertEquals(sorted(d), new MessageIndex(_gitlet).exact("drop me"));
+        assertEquals(sorted(d), kept.exact("drop me"));
+    }
+
+    @Test
+    public void replacedFileIsReadAgain() {
+        MessageIndex kept = MessageIndex.of(_gitlet);
+        List<String> branch = commit(kept, "branch", 6);
+        assertTrue(kept.exact("init").isEmpty());
+        new MessageIndex(_gitlet).remove(new HashSet<>(branch));
+        List<String> master = commit(new MessageIndex(_gitlet), "master",
+                20);
+        for (MessageIndex index : List.of(kept, MessageIndex.of(_gitlet))) {
+            assertEquals(List.of(master.get(19)), index.exact("master 20"));
+            assertEquals(20, index.substring("master").size());
+            assertTrue(index.words("branch").isEmpty());
+        }
+    }
+
+    /** Working directory of the test. */
+    private File _dir;
+    /** Its .gitlet directory. */
+    private File _gitlet;
+}
@@ -0,0 +1,152 @@
+package gitlet;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+
+/** Migration class for Gitlet, the tiny stupid version-control system.
+ *  Rewrites a .gitlet directory created by an older gitlet into the
+ *  current format: Java-serialized blobs, commits, remotes and stage are
+ *  rewritten with Codec, and the stage file becomes the index. Commits
+ *  keep the hash they are stored under, so branch heads and abbreviated
+ *  ids stay valid; blobs move to their content hash. Loose objects kept
+ *  flat in their type directory move into their fan-out shard.
+ *  @author Kevin Li
+ */
+class Migration {
+
+    /** Not meant to be instantiated. */
+    private Migration() { }
+
+    /** Check whether the repo at RepoRoot already uses the current format.
+     *  @return true if no migration is needed */
+    static boolean isCurrent() {
+        return isCurrent(RepoRoot.gitlet());
+    }
+
+    /** Check whether the repo whose .gitlet directory is GITLETDIR uses
+     *  the current format.
+     *  @param gitletDir a .gitlet directory
+     *  @return true if no migration is needed */
+    static boolean isCurrent(File gitletDir) {
+        File version = Utils.join(gitletDir, "version");
+        return version.exists()
+                && Utils.readContentsAsString(version).trim()
+                .equals(Codec.FORMAT_VERSION);
+    }
+
+    /** Mark the repo at RepoRoot as using the current format. */
+    static void markCurrent() {
+        Utils.writeContents(versionFile(), Codec.FORMAT_VERSION + "\n");
+    }
+
+    /** Gitlet command migrate. */
+    static void migrate() {
+        if (isCurrent()) {
+            System.out.println("Repository is already up to date.");
+            return;
+        }
+        int count = ObjectStore.local().shardFlat();
+        if (!versionFile().exists()) {
+            count += fromSerialized(ObjectStore.local());
+        }
+        if (stageFile().exists()) {
+            Stage.read(stageFile(), "stage").writeStage();
+            stageFile().delete();
+        }
+        markCurrent();
+        System.out.println("Migrated " + count + " objects.");
+    }
+
+    /** Convert a repo whose objects are Java-serialized. Blobs get the
+     *  content hash they would get today, and commits, which keep their
+     *  hash, are rewritten to point at the new blob hashes.
+     *  @param store the local store
+     *  @return number of objects converted */
+    private static int fromSerialized(ObjectStore store) {
+        HashMap<String, String> renamed = new HashMap<>();
+        for (String uid : store.listLoose("blobs")) {
+            File f = store.looseFile("blobs", uid);
+            if (Codec.isLegacy(f)) {
+                renameBlob(store, uid,
+                        Utils.readObject(f, Blob.class), renamed);
+            }
+        }
+        for (Pack pack : store.packs()) {
+            for (String uid : pack.list(Pack.BLOB)) {
+                renameBlob(store, uid,
+                        Utils.deserialize(pack.read(uid), Blob.class), renamed);
+            }
+        }
+        int count = renamed.size();
+        for (String uid : store.listLoose("commits")) {
+            File f = store.looseFile("commits", uid);
+            if (Codec.isLegacy(f)) {
+                Commit c = Utils.readObject(f, Commit.class);
+                c.remapBlobs(renamed);
+                Codec.writeFile(f, c.encode());
+                count++;
+            }
+        }
+        for (Pack pack : store.packs()) {
+            for (String uid : pack.list(Pack.COMMIT)) {
+                Commit c = Utils.deserialize(pack.read(uid), Commit.class);
+                c.remapBlobs(renamed);
+                Codec.writeFile(store.newLooseFile("commits", uid),
+                        c.encode());
+                count++;
+            }
+        }
+        if (!store.packs().isEmpty()) {
+            store.repack();
+        }
+        if (stageFile().exists() && Codec.isLegacy(stageFile())) {
+            Stage stage = Utils.readObject(stageFile(), Stage.class);
+            stage.remapBlobs(renamed);
+            stage.writeStage();
+            stageFile().delete();
+        }
+        List<String> remotes = Utils.plainFilenamesIn(remoteDir());
+        if (remotes != null) {
+            for (String name : remotes) {
+                File f = Utils.join(remoteDir(), name);
+                if (Codec.isLegacy(f)) {
+                    Utils.readObject(f, Remote.class).writeRemote();
+                }
+            }
+        }
+        return count;
+    }
+
+    /** Store an old blob under its content hash and drop the old file.
+     *  @param store the local store
+     *  @param uid the old hash
+     *  @param blob the blob
+     *  @param renamed map from old to new hash, updated */
+    private static void renameBlob(ObjectStore store, String uid, Blob blob,
+                                   HashMap<String, String> renamed) {
+        byte[] framed = blob.encode();
+        String hash = Utils.sha1(framed);
+        store.deleteLoose("blobs", uid);
+        store.write("blobs", hash, framed);
+        renamed.put(uid, hash);
+    }
+
+    /** File recording the repository format version.
+     *  @return the version file of RepoRoot */
+    private static File versionFile() {
+        return RepoRoot.gitlet("version");
+    }
+
+    /** Stage file.
+     *  @return the old stage file of RepoRoot */
+    private static File stageFile() {
+        return RepoRoot.gitlet("stage");
+    }
+
+    /** Remotes directory.
+     *  @return the remotes directory of RepoRoot */
+    private static File remoteDir() {
+        return RepoRoot.gitlet("refs", "remotes");
+    }
+}
@@ -0,0 +1,164 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** ObjectCache class for Gitlet, the tiny stupid version-control system.
+ *  Decoded commits and blobs, kept in least-recently-used order and
+ *  bounded by the size of their encoding, plus what a commit holds once
+ *  its tree is flattened. Objects are named by the hash
+ *  of their content, so an entry never goes stale. The bound defaults to
+ *  DEFAULT_BYTES and can be set with -Dgitlet.cacheBytes=N; running with
+ *  -Dgitlet.stats prints the counters to stderr after each command.
+ *  @author Kevin Li
+ */
+class ObjectCache {
+
+    /** A cache holding at most MAXBYTES bytes of objects.
+     *  @param maxBytes bound on the sum of object sizes */
+    ObjectCache(long maxBytes) {
+        _maxBytes = maxBytes;
+        _entries = new LinkedHashMap<>(INITIAL, LOAD, true);
+    }
+
+    /** Getter for the cache shared by the whole process.
+     *  @return the cache */
+    static ObjectCache shared() {
+        if (_shared == null) {
+            _shared = new ObjectCache(Long.getLong("gitlet.cacheBytes",
+                    DEFAULT_BYTES));
+        }
+        return _shared;
+    }
+
+    /** Look up a decoded object.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash
+     *  @return the object, or null on a miss */
+    Object get(String type, String uid) {
+        Entry e = _entries.get(type + SEP + uid);
+        if (e == null) {
+            _misses++;
+            return null;
+        }
+        _hits++;
+        return e._value;
+    }
+
+    /** Remember a decoded object. Objects bigger than the whole cache
+     *  are not kept.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash
+     *  @param value the decoded object
+     *  @param bytes size of its encoding */
+    void put(String type, String uid, Object value, long bytes) {
+        if (bytes > _maxBytes) {
+            return;
+        }
+        Entry old = _entries.put(type + SEP + uid, new Entry(value, bytes));
+        _bytes += bytes - ((old == null) ? 0 : old._bytes);
+        evict();
+    }
+
+    /** Charge BYTES more to VALUE, which grew after it was cached, as a
+     *  commit does when its tree is flattened. Nothing happens unless
+     *  VALUE itself is the entry for UID.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash
+     *  @param value the decoded object
+     *  @param bytes size added */
+    void grow(String type, String uid, Object value, long bytes) {
+        Entry e = _entries.get(type + SEP + uid);
+        if (e == null || e._value != value) {
+            return;
+        }
+        e._bytes += bytes;
+        _bytes += bytes;
+        evict();
+    }
+
+    /** Drop least recently used entries until the bound is met. */
+    private void evict() {
+        Iterator<Entry> it = _entries.values().iterator();
+        while (_bytes > _maxBytes && it.hasNext()) {
+            _bytes -= it.next()._bytes;
+            it.remove();
+            _evictions++;
+        }
+    }
+
+    /** Forget every object. */
+    void clear() {
+        _entries.clear();
+        _bytes = 0;
+    }
+
+    /** Describe the counters of this cache.
+     *  @return one line of statistics */
+    String stats() {
+        return String.format("cache: %d hits, %d misses, %d evictions, "
+                + "%d objects in %d bytes", _hits, _misses, _evictions,
+                _entries.size(), _bytes);
+    }
+
+    /** Getter for the hit counter.
+     *  @return number of hits */
+    long hits() {
+        return _hits;
+    }
+
+    /** Getter for the miss counter, which is also the number of objects
+     *  decoded through the cache.
+     *  @return number of misses */
+    long misses() {
+        return _misses;
+    }
+
+    /** Print the counters of the shared cache to stderr, if asked to with
+     *  -Dgitlet.stats. */
+    static void reportIfAsked() {
+        if (_shared != null && System.getProperty("gitlet.stats") != null) {
+            System.err.println(_shared.stats());
+        }
+    }
+
+    /** A cached object and its size. */
+    private static class Entry {
+        /** Constructor.
+         *  @param value the decoded object
+         *  @param bytes size of its encoding */
+        Entry(Object value, long bytes) {
+            _value = value;
+            _bytes = bytes;
+        }
+
+        /** The decoded object. */
+        private Object _value;
+        /** Size of its encoding, and of what it grew since. */
+        private long _bytes;
+    }
+
+    /** Default bound on cached bytes. */
+    static final long DEFAULT_BYTES = 64L << 20;
+    /** Separator of type and hash in keys. */
+    private static final char SEP = '/';
+    /** Initial capacity of the map. */
+    private static final int INITIAL = 256;
+    /** Load factor of the map. */
+    private static final float LOAD = 0.75f;
+    /** Cache shared by the whole process. */
+    private static ObjectCache _shared;
+
+    /** Entries, least recently used first. */
+    private LinkedHashMap<String, Entry> _entries;
+    /** Bound on the sum of entry sizes. */
+    private long _maxBytes;
+    /** Sum of entry sizes. */
+    private long _bytes;
+    /** Lookups that found their object. */
+    private long _hits;
+    /** Lookups that did not. */
+    private long _misses;
+    /** Entries dropped to stay under the bound. */
+    private long _evictions;
+}
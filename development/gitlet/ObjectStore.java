@@ -0,0 +1,669 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** ObjectStore class for Gitlet, the tiny stupid version-control system.
+ *  An ObjectStore is the single door to the objects of one .gitlet
+ *  directory. Objects either live loose (one file per object under
+ *  objects/commits, objects/trees and objects/blobs) or inside the
+ *  packfiles under objects/pack. Callers never need to know which.
+ *  Loose objects are fanned out by the first byte of their hash, so
+ *  that object ab12... of type blobs is objects/blobs/ab/12...: no
+ *  directory grows past a 256th of the objects, a lookup is one path,
+ *  and listings go one shard at a time.
+ *  @author Kevin Li
+ */
+public class ObjectStore {
+
+    /** Constructor of an object store.
+     *  @param gitletDir the .gitlet directory to read and write. */
+    public ObjectStore(File gitletDir) {
+        _gitletDir = gitletDir;
+        _objectDir = Utils.join(gitletDir, "objects");
+    }
+
+    /** Getter for the object store of the repo at RepoRoot.
+     *  @return the local object store */
+    static ObjectStore local() {
+        return RepoRoot.local(ObjectStore.class, ObjectStore::new);
+    }
+
+    /** Read an object, as framed by Codec.frame().
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash of the object
+     *  @return the framed object, or null if the object does not exist */
+    byte[] read(String type, String uid) {
+        File loose = looseFile(type, uid);
+        if (loose.isFile()) {
+            return Codec.readFile(loose);
+        }
+        for (Pack pack : packs()) {
+            byte[] result = pack.read(uid);
+            if (result != null) {
+                return result;
+            }
+        }
+        return reloadPacks() ? read(type, uid) : null;
+    }
+
+    /** Length of an object as read() returns it, framed, read from its
+     *  header where it is loose and from its pack entry where it is not,
+     *  so the object itself is not inflated.
+     *  @param type either "commits", "trees" or "blobs"
+     *  @param uid full hash of the object
+     *  @return the length, or -1 if the object does not exist */
+    long size(String type, String uid) {
+        File loose = looseFile(type, uid);
+        if (loose.isFile()) {
+            try (InputStream in = new InflaterInputStream(
+                    new FileInputStream(loose))) {
+                StringBuilder header = new StringBuilder();
+                int c;
+                while ((c = in.read()) != '\n' && c != -1) {
+                    header.append((char) c);
+                }
+                String length = header.substring(header.indexOf(" ") + 1);
+                return header.length() + 1 + Long.parseLong(length);
+            } catch (IOException | NumberFormatException e) {
+                throw new GitletException("Corrupt object: " + uid);
+            }
+        }
+        for (Pack pack : packs()) {
+            long result = pack.size(uid);
+            if (result >= 0) {
+                return result;
+            }
+        }
+        return reloadPacks() ? size(type, uid) : -1;
+    }
+
+    /** Check whether an object is present, loose or packed.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash of the object
+     *  @return true if present */
+    boolean contains(String type, String uid) {
+        if (looseFile(type, uid).isFile()) {
+            return true;
+        }
+        for (Pack pack : packs()) {
+            if (pack.contains(uid)) {
+                return true;
+            }
+        }
+        return reloadPacks() && contains(type, uid);
+    }
+
+    /** Check whether an object is present, as contains() does, and if
+     *  so date the file holding it, loose file or pack, to now. Writes
+     *  that find their object already stored call this instead of
+     *  contains(), since gc takes the mtime for the age of an object and
+     *  spares young unreachable ones: an object just added again must
+     *  count as new even if an old unreachable copy was there.
+     *  @param type either "commits", "trees" or "blobs"
+     *  @param uid full hash of the object
+     *  @return true if present */
+    boolean freshen(String type, String uid) {
+        long now = System.currentTimeMillis();
+        File loose = looseFile(type, uid);
+        if (loose.isFile()) {
+            loose.setLastModified(now);
+            return true;
+        }
+        for (Pack pack : packs()) {
+            if (pack.contains(uid)) {
+                pack.packFile().setLastModified(now);
+                return true;
+            }
+        }
+        return reloadPacks() && freshen(type, uid);
+    }
+
+    /** Write an object as a loose file, unless it is already stored.
+     *  It is written to objects/tmp and renamed into place, so readers
+     *  never see it half written.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash of the object
+     *  @param framed the object, as framed by Codec.frame() */
+    void write(String type, String uid, byte[] framed) {
+        if (freshen(type, uid)) {
+            return;
+        }
+        File tmp = tempFile();
+        Codec.writeFile(tmp, framed);
+        install(tmp, type, uid);
+    }
+
+    /** Store the contents of SOURCE as a loose object of kind KIND
+     *  without ever holding the file in memory: the file is read from a
+     *  FileChannel in CHUNK-sized pieces that are hashed and deflated into
+     *  a temporary file, which is renamed into place at the end.
+     *  @param type either "commits" or "blobs"
+     *  @param kind object kind for the Codec header
+     *  @param source file to store
+     *  @return hash of the stored object */
+    String writeFile(String type, String kind, File source) {
+        File tmp = tempFile();
+        String uid;
+        try (OutputStream out = new DeflaterOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp),
+                        CHUNK))) {
+            uid = streamFile(kind, source, out);
+        } catch (IOException e) {
+            tmp.delete();
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        if (freshen(type, uid)) {
+            tmp.delete();
+        } else {
+            install(tmp, type, uid);
+        }
+        return uid;
+    }
+
+    /** A new empty file in objects/tmp, where objects are written before
+     *  they are renamed into place.
+     *  @return the file */
+    private File tempFile() {
+        File tmpDir = Utils.join(_objectDir, "tmp");
+        tmpDir.mkdirs();
+        try {
+            return File.createTempFile("obj-", null, tmpDir);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Rename TMP, a finished loose object, into place as object UID.
+     *  If another process got there first, TMP is dropped.
+     *  @param tmp file from tempFile()
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash */
+    private void install(File tmp, String type, String uid) {
+        try {
+            Files.move(tmp.toPath(), newLooseFile(type, uid).toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            tmp.delete();
+            looseFile(type, uid).setLastModified(System.currentTimeMillis());
+        } catch (IOException e) {
+            tmp.delete();
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Compute the hash SOURCE would get as an object of kind KIND,
+     *  reading it in CHUNK-sized pieces and storing nothing.
+     *  @param kind object kind for the Codec header
+     *  @param source file to hash
+     *  @return hash */
+    static String hashFile(String kind, File source) {
+        return streamFile(kind, source, null);
+    }
+
+    /** Write the body of an object to DEST, inflating it on the fly when
+     *  it is loose, so big blobs never sit in memory.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash
+     *  @param dest file to (over)write */
+    void copyTo(String type, String uid, File dest) {
+        try (InputStream in = openBody(type, uid);
+             OutputStream out = new FileOutputStream(dest)) {
+            byte[] buf = new byte[CHUNK];
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                out.write(buf, 0, n);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Compare the body of an object with FILE, chunk by chunk.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash
+     *  @param file a working file
+     *  @return true if FILE exists and holds exactly the object body */
+    boolean sameContent(String type, String uid, File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        try (InputStream obj = openBody(type, uid);
+             InputStream in = new FileInputStream(file)) {
+            byte[] a = new byte[CHUNK];
+            byte[] b = new byte[CHUNK];
+            while (true) {
+                int n = obj.readNBytes(a, 0, CHUNK);
+                int m = in.readNBytes(b, 0, CHUNK);
+                if (n != m || !Arrays.equals(a, 0, n, b, 0, m)) {
+                    return false;
+                } else if (n < CHUNK) {
+                    return true;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Copy one object from another store into this one. Loose objects
+     *  are copied still deflated, without being decoded.
+     *  @param other the store to copy from
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash */
+    void copyFrom(ObjectStore other, String type, String uid) {
+        if (freshen(type, uid)) {
+            return;
+        }
+        File theirs = other.looseFile(type, uid);
+        if (!theirs.isFile()) {
+            write(type, uid, other.read(type, uid));
+            return;
+        }
+        File tmp = tempFile();
+        try {
+            Files.copy(theirs.toPath(), tmp.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            tmp.delete();
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        install(tmp, type, uid);
+    }
+
+    /** Open the body of an object, past its header line.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash
+     *  @return stream of the raw body */
+    private InputStream openBody(String type, String uid) throws IOException {
+        File loose = looseFile(type, uid);
+        if (!loose.isFile()) {
+            byte[] framed = read(type, uid);
+            if (framed == null) {
+                throw new GitletException("Object " + uid + " not found.");
+            }
+            int start = headerLength(framed);
+            return new ByteArrayInputStream(framed, start,
+                    framed.length - start);
+        }
+        InputStream in = new InflaterInputStream(
+                new BufferedInputStream(new FileInputStream(loose), CHUNK));
+        int c;
+        do {
+            c = in.read();
+        } while (c != '\n' && c != -1);
+        return in;
+    }
+
+    /** Length of the header line of FRAMED, newline included.
+     *  @param framed framed object
+     *  @return length */
+    private static int headerLength(byte[] framed) {
+        int i = 0;
+        while (framed[i] != '\n') {
+            i++;
+        }
+        return i + 1;
+    }
+
+    /** Hash SOURCE as an object of kind KIND, copying header and body to
+     *  OUT as they are read, unless OUT is null.
+     *  @param kind object kind for the Codec header
+     *  @param source file
+     *  @param out destination, or null
+     *  @return hash */
+    private static String streamFile(String kind, File source,
+                                     OutputStream out) {
+        try (FileChannel in = FileChannel.open(source.toPath(),
+                StandardOpenOption.READ)) {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            long size = in.size();
+            byte[] header = (kind + " " + size + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            md.update(header);
+            if (out != null) {
+                out.write(header);
+            }
+            ByteBuffer buf = ByteBuffer.allocate(CHUNK);
+            long total = 0;
+            int n;
+            while ((n = in.read(buf)) > 0) {
+                md.update(buf.array(), 0, n);
+                if (out != null) {
+                    out.write(buf.array(), 0, n);
+                }
+                total += n;
+                buf.clear();
+            }
+            if (total != size) {
+                throw new GitletException(source.getName()
+                        + " changed while being read.");
+            }
+            return Pack.toHex(ByteBuffer.wrap(md.digest()), 0);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** List every object of a type, loose and packed.
+     *  @param type either "commits" or "blobs"
+     *  @return sorted uids */
+    List<String> list(String type) {
+        List<String> result = new ArrayList<>();
+        forEach(type, result::add);
+        return result;
+    }
+
+    /** Call ACTION on every object of a type, loose and packed, in hash
+     *  order, holding the names of only one shard at a time.
+     *  @param type either "commits", "trees" or "blobs"
+     *  @param action called with each uid */
+    void forEach(String type, Consumer<String> action) {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            TreeSet<String> uids = new TreeSet<>(listShard(type, shard));
+            for (Pack pack : packs()) {
+                uids.addAll(pack.list(Pack.typeCode(type), shard));
+            }
+            uids.forEach(action);
+        }
+    }
+
+    /** List the loose objects of a type.
+     *  @param type either "commits" or "blobs"
+     *  @return sorted uids, never null */
+    List<String> listLoose(String type) {
+        List<String> result = new ArrayList<>();
+        forEachLoose(type, result::add);
+        return result;
+    }
+
+    /** Call ACTION on every loose object of a type, in hash order, one
+     *  shard at a time.
+     *  @param type either "commits", "trees" or "blobs"
+     *  @param action called with each uid */
+    void forEachLoose(String type, Consumer<String> action) {
+        for (int shard = 0; shard < SHARDS; shard++) {
+            listShard(type, shard).forEach(action);
+        }
+    }
+
+    /** Move loose objects stored flat in their type directory, as
+     *  gitlet did before shards, into their shard.
+     *  @return number of objects moved */
+    int shardFlat() {
+        int count = 0;
+        for (String type : TYPES) {
+            List<String> names = Utils.plainFilenamesIn(typeDir(type));
+            if (names == null) {
+                continue;
+            }
+            for (String name : names) {
+                if (name.length() != Utils.UID_LENGTH) {
+                    continue;
+                }
+                try {
+                    Files.move(Utils.join(typeDir(type), name).toPath(),
+                            newLooseFile(type, name).toPath(),
+                            StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    throw new IllegalArgumentException(e.getMessage());
+                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** List the loose objects of a type in one shard.
+     *  @param type either "commits", "trees" or "blobs"
+     *  @param shard first byte of the hashes
+     *  @return sorted uids */
+    private List<String> listShard(String type, int shard) {
+        String prefix = shardName(shard);
+        List<String> names = Utils.plainFilenamesIn(
+                Utils.join(typeDir(type), prefix));
+        List<String> result = new ArrayList<>();
+        if (names != null) {
+            for (String name : names) {
+                result.add(prefix + name);
+            }
+        }
+        return result;
+    }
+
+    /** Copy the packed object UID out of PACK into a loose file dated
+     *  MTIME, so that it ages as it would have in the pack.
+     *  @param pack a pack holding the object
+     *  @param type either "commits", "trees" or "blobs"
+     *  @param uid full hash of the object
+     *  @param mtime modification time to give the file, in milliseconds */
+    void unpack(Pack pack, String type, String uid, long mtime) {
+        File tmp = tempFile();
+        Codec.writeFile(tmp, pack.read(uid));
+        install(tmp, type, uid);
+        looseFile(type, uid).setLastModified(mtime);
+    }
+
+    /** Delete a loose object. Packed objects are left alone.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash of the object */
+    void deleteLoose(String type, String uid) {
+        looseFile(type, uid).delete();
+    }
+
+    /** Pack every object in this store into one new packfile, delta
+     *  compressing similar objects, then drop the loose copies and any
+     *  packs that were superseded. Packs are named by the objects they
+     *  hold, so an old pack with the same objects is the new one and is
+     *  kept. Loose objects bigger than MAX_PACKED
+     *  stay loose so that they can keep being streamed. The new pack
+     *  gets PackBitmaps for the branch heads.
+     *  @return number of objects packed */
+    int repack() {
+        return repack(uid -> true);
+    }
+
+    /** Repack as repack() does, but only the objects KEEP accepts. The
+     *  others are dropped with the old packs if packed, and left alone
+     *  if loose.
+     *  @param keep test on full hashes
+     *  @return number of objects packed */
+    int repack(Predicate<String> keep) {
+        List<Pack> old = new ArrayList<>(packs());
+        PackWriter writer = new PackWriter(this);
+        for (String type : TYPES) {
+            for (String uid : list(type)) {
+                if (!keep.test(uid)
+                        || looseFile(type, uid).length() > MAX_PACKED) {
+                    continue;
+                }
+                writer.add(Pack.typeCode(type), uid, size(type, uid));
+                if (type.equals("blobs")) {
+                    continue;
+                }
+                byte[] data = read(type, uid);
+                if (type.equals("trees")) {
+                    for (Map.Entry<String, Tree.Entry> e
+                            : Tree.read(this, uid).entries().entrySet()) {
+                        if (!e.getValue().isTree()) {
+                            writer.hint(e.getValue().hash(), e.getKey());
+                        }
+                    }
+                } else if (type.equals("commits")) {
+                    Commit commit = Commit.decode(uid, data);
+                    if (!commit.hasTree()) {
+                        for (String fname : commit.blobsMap().keySet()) {
+                            writer.hint(commit.blobsMap().get(fname), fname);
+                        }
+                    }
+                }
+            }
+        }
+        if (writer.size() == 0) {
+            for (Pack pack : old) {
+                pack.delete();
+            }
+            _packs = null;
+            return 0;
+        }
+        File packDir = Utils.join(_objectDir, "pack");
+        packDir.mkdir();
+        Pack written = writer.write(packDir);
+        for (String type : TYPES) {
+            for (String uid : listLoose(type)) {
+                if (written.contains(uid)) {
+                    deleteLoose(type, uid);
+                }
+            }
+        }
+        for (Pack pack : old) {
+            if (pack.bitmapFile().equals(written.bitmapFile())) {
+                pack.close();
+            } else {
+                pack.delete();
+            }
+        }
+        _packs = null;
+        PackBitmaps.write(this, written, branchHeads());
+        return writer.size();
+    }
+
+    /** The commits the branches of this repo point to.
+     *  @return branch heads */
+    private List<String> branchHeads() {
+        Refs refs = new Refs(_gitletDir);
+        List<String> result = new ArrayList<>();
+        for (String name : refs.list()) {
+            result.add(refs.read(name));
+        }
+        return result;
+    }
+
+    /** Getter for the packs of this store, loaded lazily.
+     *  @return list of packs */
+    synchronized List<Pack> packs() {
+        if (_packs == null) {
+            _packs = new ArrayList<>();
+            File packDir = Utils.join(_objectDir, "pack");
+            _packsTime = packDir.lastModified();
+            List<String> names = Utils.plainFilenamesIn(packDir);
+            if (names != null) {
+                for (String name : names) {
+                    if (name.endsWith(".idx")) {
+                        String base = name.substring(0, name.length() - 4);
+                        _packs.add(new Pack(
+                                Utils.join(_objectDir, "pack", base)));
+                    }
+                }
+            }
+        }
+        return _packs;
+    }
+
+    /** Forget the loaded packs if another process has added or removed
+     *  packs since they were listed, as can happen under the daemon.
+     *  @return true if the packs were reloaded */
+    private synchronized boolean reloadPacks() {
+        if (_packs == null || Utils.join(_objectDir, "pack").lastModified()
+                == _packsTime) {
+            return false;
+        }
+        for (Pack pack : _packs) {
+            pack.close();
+        }
+        _packs = null;
+        return true;
+    }
+
+    /** Getter for the .gitlet directory of this store.
+     *  @return the .gitlet directory */
+    File gitletDir() {
+        return _gitletDir;
+    }
+
+    /** Path of a loose object, which may not exist.
+     *  @param type either "commits" or "blobs"
+     *  @param uid full hash
+     *  @return the file */
+    File looseFile(String type, String uid) {
+        if (uid.length() <= SHARD_CHARS) {
+            return Utils.join(typeDir(type), uid);
+        }
+        return Utils.join(typeDir(type), uid.substring(0, SHARD_CHARS),
+                uid.substring(SHARD_CHARS));
+    }
+
+    /** Path a new loose object is written to. Its shard directory is
+     *  created if needed, along with its type directory, since repos
+     *  made before trees have none.
+     *  @param type either "commits", "trees" or "blobs"
+     *  @param uid full hash
+     *  @return the file */
+    File newLooseFile(String type, String uid) {
+        File file = looseFile(type, uid);
+        File dir = file.getParentFile();
+        if (!dir.isDirectory()) {
+            dir.mkdirs();
+        }
+        return file;
+    }
+
+    /** Directory name of a shard.
+     *  @param shard first byte of the hashes in it
+     *  @return two hex digits */
+    private static String shardName(int shard) {
+        return String.format("%02x", shard);
+    }
+
+    /** Directory holding loose objects of a type.
+     *  @param type either "commits" or "blobs"
+     *  @return the directory */
+    File typeDir(String type) {
+        return Utils.join(_objectDir, type);
+    }
+
+    /** Size of the pieces big files are streamed in. */
+    static final int CHUNK = 1 << 16;
+    /** Deflated size above which a loose object is never packed. */
+    static final long MAX_PACKED = 16L << 20;
+    /** Number of shards of a type directory. */
+    static final int SHARDS = 256;
+    /** Hex digits of the hash naming the shard of an object. */
+    private static final int SHARD_CHARS = 2;
+    /** Object types stored in a repo. */
+    static final String[] TYPES = {"commits", "trees", "blobs"};
+    /** The .gitlet directory. */
+    private File _gitletDir;
+    /** The objects directory. */
+    private File _objectDir;
+    /** Packs loaded so far, null until first use. */
+    private List<Pack> _packs;
+    /** Modification time of the pack directory when _packs was listed. */
+    private long _packsTime;
+}
@@ -0,0 +1,402 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Pack class for Gitlet, the tiny stupid version-control system.
+ *  A pack is a pair of files under objects/pack:
+ *    pack-[id].pack  objects stored back to back, each one either whole
+ *                    or as a delta against an earlier object of the pack,
+ *                    and deflated.
+ *    pack-[id].idx   a fan-out table on the first hash byte followed by
+ *                    records sorted by hash: (hash, type, offset).
+ *  and optionally pack-[id].bitmap, reachability bitmaps over the record
+ *  numbers of the idx (see PackBitmaps).
+ *  Lookups binary search the idx and read a single entry (plus its delta
+ *  bases) from the pack, so a read costs a few seeks regardless of how
+ *  many objects the repo holds.
+ *  @author Kevin Li
+ */
+class Pack {
+
+    /** Open the pack whose files are BASE.pack and BASE.idx.
+     *  @param base path without extension */
+    Pack(File base) {
+        _packFile = new File(base.getPath() + ".pack");
+        _idxFile = new File(base.getPath() + ".idx");
+        _bitmapFile = new File(base.getPath() + ".bitmap");
+    }
+
+    /** Read an object from this pack.
+     *  @param uid full hash
+     *  @return the object bytes, or null if not in this pack */
+    byte[] read(String uid) {
+        int pos = find(uid);
+        if (pos < 0) {
+            return null;
+        }
+        return readAt(offsetAt(pos), 0);
+    }
+
+    /** Length of object UID as read() returns it, found without
+     *  resolving deltas: a delta starts with the length of its result,
+     *  so only its first bytes are inflated.
+     *  @param uid full hash
+     *  @return the length, or -1 if not in this pack */
+    long size(String uid) {
+        int pos = find(uid);
+        if (pos < 0) {
+            return -1;
+        }
+        boolean isDelta;
+        int rawLen;
+        byte[] zipped;
+        synchronized (this) {
+            try {
+                RandomAccessFile data = data();
+                data.seek(offsetAt(pos));
+                data.readByte();
+                isDelta = data.readByte() == DELTA;
+                if (!isDelta) {
+                    return data.readInt();
+                }
+                data.readLong();
+                rawLen = data.readInt();
+                zipped = new byte[data.readInt()];
+                data.readFully(zipped);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+        byte[] head = Codec.inflate(zipped, Math.min(rawLen,
+                2 * Delta.MAX_VARINT));
+        int[] at = {0};
+        Delta.readVarint(head, at);
+        return Delta.readVarint(head, at);
+    }
+
+    /** Check if this pack holds UID.
+     *  @param uid full hash
+     *  @return true if present */
+    boolean contains(String uid) {
+        return find(uid) >= 0;
+    }
+
+    /** List the hashes of every object of a type in this pack.
+     *  @param type type code
+     *  @return uids in sorted order */
+    List<String> list(int type) {
+        ByteBuffer idx = idx();
+        int count = idx.getInt(COUNT_POS);
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            if (idx.get(recordPos(i) + HASH_BYTES) == type) {
+                result.add(hashAt(i));
+            }
+        }
+        return result;
+    }
+
+    /** List the hashes of the objects of a type in this pack whose
+     *  first byte is FIRST, reading only that range of the idx.
+     *  @param type type code
+     *  @param first first byte of the hashes, 0 to 255
+     *  @return uids in sorted order */
+    List<String> list(int type, int first) {
+        ByteBuffer idx = idx();
+        int lo = (first == 0) ? 0 : idx.getInt(FANOUT_POS + 4 * (first - 1));
+        int hi = idx.getInt(FANOUT_POS + 4 * first);
+        List<String> result = new ArrayList<>();
+        for (int i = lo; i < hi; i++) {
+            if (idx.get(recordPos(i) + HASH_BYTES) == type) {
+                result.add(hashAt(i));
+            }
+        }
+        return result;
+    }
+
+    /** Getter for the number of objects in this pack.
+     *  @return object count */
+    int count() {
+        return idx().getInt(COUNT_POS);
+    }
+
+    /** Record number of UID, its position in the order bitmaps use.
+     *  @param uid full hash
+     *  @return record number, or -1 if not in this pack */
+    int position(String uid) {
+        return find(uid);
+    }
+
+    /** Type code of record POS.
+     *  @param pos record number
+     *  @return type code */
+    int typeAt(int pos) {
+        return idx().get(recordPos(pos) + HASH_BYTES);
+    }
+
+    /** Getter for the pack file, whose mtime gc takes for the age of
+     *  the objects in it.
+     *  @return the .pack file */
+    File packFile() {
+        return _packFile;
+    }
+
+    /** Getter for the bitmap file of this pack, which may not exist.
+     *  @return the .bitmap file */
+    File bitmapFile() {
+        return _bitmapFile;
+    }
+
+    /** Delete the files of this pack. */
+    void delete() {
+        close();
+        _bitmapFile.delete();
+        _idxFile.delete();
+        _packFile.delete();
+    }
+
+    /** Release the open pack file, if any. */
+    void close() {
+        try {
+            if (_data != null) {
+                _data.close();
+                _data = null;
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _idx = null;
+    }
+
+    /** Binary search the idx for UID.
+     *  @param uid full hash
+     *  @return record number, or -1 if absent */
+    private int find(String uid) {
+        if (uid == null || uid.length() != Utils.UID_LENGTH) {
+            return -1;
+        }
+        byte[] key = toBytes(uid);
+        ByteBuffer idx = idx();
+        int first = key[0] & 0xff;
+        int lo = (first == 0) ? 0 : idx.getInt(FANOUT_POS + 4 * (first - 1));
+        int hi = idx.getInt(FANOUT_POS + 4 * first) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareAt(idx, recordPos(mid), key);
+            if (cmp == 0) {
+                return mid;
+            } else if (cmp < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Read and inflate the entry at OFFSET, resolving deltas. Reads of
+     *  the shared file are serialized so that threads may share a pack.
+     *  @param offset entry offset in the pack
+     *  @param depth current delta depth, to catch corrupt cycles
+     *  @return the object bytes */
+    private byte[] readAt(long offset, int depth) {
+        if (depth > MAX_CHAIN) {
+            throw new GitletException("Corrupt pack: delta chain too long.");
+        }
+        boolean isDelta;
+        long baseOffset;
+        int rawLen;
+        byte[] zipped;
+        synchronized (this) {
+            try {
+                RandomAccessFile data = data();
+                data.seek(offset);
+                data.readByte();
+                isDelta = data.readByte() == DELTA;
+                baseOffset = isDelta ? data.readLong() : -1;
+                rawLen = data.readInt();
+                zipped = new byte[data.readInt()];
+                data.readFully(zipped);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+        byte[] raw = Codec.inflate(zipped, rawLen);
+        if (isDelta) {
+            return Delta.apply(readAt(baseOffset, depth + 1), raw);
+        }
+        return raw;
+    }
+
+    /** Getter for the memory-mapped idx, mapped on first use.
+     *  @return idx buffer */
+    private ByteBuffer idx() {
+        if (_idx == null) {
+            try (FileChannel ch = FileChannel.open(_idxFile.toPath(),
+                    StandardOpenOption.READ)) {
+                _idx = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+            if (_idx.getInt(0) != IDX_MAGIC) {
+                throw new GitletException("Corrupt pack index: "
+                        + _idxFile.getName());
+            }
+        }
+        return _idx;
+    }
+
+    /** Getter for the open pack file.
+     *  @return random access pack file */
+    private RandomAccessFile data() throws IOException {
+        if (_data == null) {
+            _data = new RandomAccessFile(_packFile, "r");
+        }
+        return _data;
+    }
+
+    /** Offset of the pack entry of record POS.
+     *  @param pos record number
+     *  @return offset */
+    private long offsetAt(int pos) {
+        return idx().getLong(recordPos(pos) + HASH_BYTES + 1);
+    }
+
+    /** Hex hash of record POS.
+     *  @param pos record number
+     *  @return the hash */
+    String hashAt(int pos) {
+        return toHex(idx(), recordPos(pos));
+    }
+
+    /** Compare the hash stored at POS with KEY, unsigned bytewise.
+     *  @param idx idx buffer
+     *  @param pos byte position of the record
+     *  @param key binary hash
+     *  @return comparison result */
+    private static int compareAt(ByteBuffer idx, int pos, byte[] key) {
+        for (int i = 0; i < HASH_BYTES; i++) {
+            int cmp = (idx.get(pos + i) & 0xff) - (key[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    /** Byte position of record I in the idx.
+     *  @param i record number
+     *  @return byte position */
+    static int recordPos(int i) {
+        return RECORDS_POS + i * RECORD_BYTES;
+    }
+
+    /** Convert a hex hash to its 20 bytes.
+     *  @param uid hex hash
+     *  @return binary hash */
+    static byte[] toBytes(String uid) {
+        byte[] result = new byte[HASH_BYTES];
+        for (int i = 0; i < HASH_BYTES; i++) {
+            result[i] = (byte) ((Character.digit(uid.charAt(2 * i), 16) << 4)
+                    | Character.digit(uid.charAt(2 * i + 1), 16));
+        }
+        return result;
+    }
+
+    /** Convert the 20 bytes at POS in BUF to a hex hash.
+     *  @param buf a buffer
+     *  @param pos byte position
+     *  @return hex hash */
+    static String toHex(ByteBuffer buf, int pos) {
+        char[] result = new char[2 * HASH_BYTES];
+        for (int i = 0; i < HASH_BYTES; i++) {
+            byte b = buf.get(pos + i);
+            result[2 * i] = HEX[(b >> 4) & 0xf];
+            result[2 * i + 1] = HEX[b & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** Map a type directory name to the code stored in packs.
+     *  @param type either "commits", "trees" or "blobs"
+     *  @return code */
+    static int typeCode(String type) {
+        switch (type) {
+        case "commits":
+            return COMMIT;
+        case "trees":
+            return TREE;
+        case "blobs":
+            return BLOB;
+        default:
+            throw new GitletException("No such object type.");
+        }
+    }
+
+    /** Map a code stored in packs back to its type directory name.
+     *  @param code COMMIT, TREE or BLOB
+     *  @return type */
+    static String typeName(int code) {
+        switch (code) {
+        case COMMIT:
+            return "commits";
+        case TREE:
+            return "trees";
+        case BLOB:
+            return "blobs";
+        default:
+            throw new GitletException("No such object type.");
+        }
+    }
+
+    /** Type code of commits. */
+    static final int COMMIT = 1;
+    /** Type code of blobs. */
+    static final int BLOB = 2;
+    /** Type code of trees. */
+    static final int TREE = 3;
+    /** Flag of an entry stored whole. */
+    static final int WHOLE = 0;
+    /** Flag of an entry stored as a delta. */
+    static final int DELTA = 1;
+    /** Longest delta chain the writer produces. */
+    static final int MAX_DEPTH = 50;
+    /** Longest chain the reader follows before giving up. */
+    private static final int MAX_CHAIN = 4 * MAX_DEPTH;
+    /** Magic number of a pack file ("GPAK"). */
+    static final int PACK_MAGIC = 0x4750414b;
+    /** Magic number of an idx file ("GIDX"). */
+    static final int IDX_MAGIC = 0x47494458;
+    /** Format version of both files. */
+    static final int VERSION = 1;
+    /** Bytes of a binary SHA-1. */
+    static final int HASH_BYTES = 20;
+    /** Bytes of an idx record: hash, type, offset. */
+    static final int RECORD_BYTES = HASH_BYTES + 1 + 8;
+    /** Position of the object count in the idx. */
+    static final int COUNT_POS = 8;
+    /** Position of the fan-out table in the idx. */
+    static final int FANOUT_POS = 12;
+    /** Position of the first idx record. */
+    static final int RECORDS_POS = FANOUT_POS + 256 * 4;
+    /** Hex digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** The .pack file. */
+    private File _packFile;
+    /** The .idx file. */
+    private File _idxFile;
+    /** The .bitmap file. */
+    private File _bitmapFile;
+    /** Mapped idx, null until used. */
+    private ByteBuffer _idx;
+    /** Open pack file, null until used. */
+    private RandomAccessFile _data;
+}
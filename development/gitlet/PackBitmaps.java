@@ -0,0 +1,290 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/** PackBitmaps class for Gitlet, the tiny stupid version-control system.
+ *  Reachability bitmaps of a pack, kept in pack-[id].bitmap. The bitmap
+ *  of a commit has bit i set when record i of the pack idx is reachable
+ *  from it: the commit, its ancestors, and their trees and blobs. repack
+ *  writes one for each branch tip (the newest MAX_TIPS of them), and the
+ *  objects reachable from any set of commits are then the union of the
+ *  bitmaps they reach, plus a walk of the few commits since. "Reachable
+ *  from X but not from Y" is an and-not of two such sets. Bitmaps are
+ *  stored compressed with Ewah. The file is
+ *    "GBMP", version, object count of the pack, number of bitmaps,
+ *  then per bitmap its commit hash, its coded length and the coded bytes.
+ *  Objects outside the pack, loose or in another pack, have no bit; the
+ *  walk still goes through them. With no pack at all, every object is
+ *  outside, which is how gc marks a repo that was never repacked.
+ *  @author Kevin Li
+ */
+class PackBitmaps {
+
+    /** The bitmaps of PACK, one of the packs of STORE, as read from its
+     *  .bitmap file if there is one.
+     *  @param store object store holding the pack
+     *  @param pack the pack, or null for none */
+    PackBitmaps(ObjectStore store, Pack pack) {
+        _store = store;
+        _pack = pack;
+        _entries = new HashMap<>();
+        if (pack != null && pack.bitmapFile().isFile()) {
+            File file = pack.bitmapFile();
+            load(file);
+        }
+    }
+
+    /** The bitmaps of STORE, if one of its packs has them.
+     *  @param store an object store
+     *  @return the bitmaps, or null */
+    static PackBitmaps of(ObjectStore store) {
+        for (Pack pack : store.packs()) {
+            if (pack.bitmapFile().isFile()) {
+                return new PackBitmaps(store, pack);
+            }
+        }
+        return null;
+    }
+
+    /** Write the bitmaps of the commits TIPS for PACK of STORE.
+     *  @param store object store holding the pack
+     *  @param pack a freshly written pack
+     *  @param tips commit hashes, typically the branch heads
+     *  @return number of bitmaps written */
+    static int write(ObjectStore store, Pack pack, Collection<String> tips) {
+        PackBitmaps result = new PackBitmaps(store, pack);
+        List<Commit> selected = new ArrayList<>();
+        for (String tip : new LinkedHashSet<>(tips)) {
+            if (pack.position(tip) >= 0) {
+                selected.add(result.commit(tip));
+            }
+        }
+        selected.sort(Comparator.comparing(Commit::getTimestamp));
+        if (selected.size() > MAX_TIPS) {
+            selected = selected.subList(selected.size() - MAX_TIPS,
+                    selected.size());
+        }
+        for (Commit tip : selected) {
+            BitSet bits = result.reachable(List.of(tip.getHash()));
+            result._entries.put(tip.getHash(),
+                    ByteBuffer.wrap(Ewah.compress(bits)));
+        }
+        result.save();
+        return selected.size();
+    }
+
+    /** Check whether the object UID has a bit in these bitmaps.
+     *  @param uid full hash
+     *  @return true if it is in the pack */
+    boolean inPack(String uid) {
+        return position(uid) >= 0;
+    }
+
+    /** Check whether the object UID is in the pack and its bit is set.
+     *  @param bits a bitmap of this pack
+     *  @param uid full hash
+     *  @return true if set */
+    boolean has(BitSet bits, String uid) {
+        int pos = position(uid);
+        return pos >= 0 && bits.get(pos);
+    }
+
+    /** Check whether the object UID was reached, in the pack or out.
+     *  @param bits a bitmap of this pack
+     *  @param outside objects without a bit that were reached
+     *  @param uid full hash
+     *  @return true if reached */
+    boolean has(BitSet bits, HashSet<String> outside, String uid) {
+        int pos = position(uid);
+        return (pos >= 0) ? bits.get(pos) : outside.contains(uid);
+    }
+
+    /** The objects of the pack reachable from COMMITS. Commits with a
+     *  bitmap contribute it whole; the commits above them are walked
+     *  first, and their trees marked afterwards, so that only subtrees
+     *  no bitmap covers are opened.
+     *  @param commits full commit hashes
+     *  @return bitmap over the records of the pack */
+    BitSet reachable(Collection<String> commits) {
+        return reachable(commits, new HashSet<>());
+    }
+
+    /** The objects reachable from COMMITS, as reachable(COMMITS), also
+     *  adding those without a bit to OUTSIDE.
+     *  @param commits full commit hashes
+     *  @param outside set receiving the reached objects outside the pack
+     *  @return bitmap over the records of the pack */
+    BitSet reachable(Collection<String> commits, HashSet<String> outside) {
+        BitSet result = new BitSet((_pack == null) ? 0 : _pack.count());
+        List<Commit> walked = new ArrayList<>();
+        ArrayDeque<String> queue = new ArrayDeque<>(commits);
+        while (!queue.isEmpty()) {
+            String hash = queue.poll();
+            if (!mark(hash, result, outside)) {
+                continue;
+            }
+            ByteBuffer stored = _entries.get(hash);
+            if (stored != null) {
+                result.or(Ewah.expand(stored, 0));
+                continue;
+            }
+            Commit commit = commit(hash);
+            walked.add(commit);
+            if (commit.getParent() != null) {
+                queue.add(commit.getParent());
+            }
+            if (commit.getMergeParent() != null) {
+                queue.add(commit.getMergeParent());
+            }
+        }
+        for (Commit commit : walked) {
+            if (commit.hasTree()) {
+                markTree(commit.treeHash(), result, outside);
+            } else {
+                for (String blob : commit.blobsMap().values()) {
+                    mark(blob, result, outside);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Mark the tree HASH and everything under it, skipping subtrees
+     *  already marked.
+     *  @param hash tree hash
+     *  @param bits bitmap being built
+     *  @param outside objects without a bit already seen */
+    private void markTree(String hash, BitSet bits, HashSet<String> outside) {
+        if (!mark(hash, bits, outside)) {
+            return;
+        }
+        for (Tree.Entry entry : Tree.read(_store, hash).entries().values()) {
+            if (entry.isTree()) {
+                markTree(entry.hash(), bits, outside);
+            } else {
+                mark(entry.hash(), bits, outside);
+            }
+        }
+    }
+
+    /** Mark the object UID as reached.
+     *  @param uid full hash
+     *  @param bits bitmap being built
+     *  @param outside objects without a bit already seen
+     *  @return false if it was reached before */
+    boolean mark(String uid, BitSet bits, HashSet<String> outside) {
+        int pos = position(uid);
+        if (pos < 0) {
+            return outside.add(uid);
+        } else if (bits.get(pos)) {
+            return false;
+        }
+        bits.set(pos);
+        return true;
+    }
+
+    /** Record number of UID in the pack.
+     *  @param uid full hash
+     *  @return its position, or -1 if it is not packed here */
+    private int position(String uid) {
+        return (_pack == null) ? -1 : _pack.position(uid);
+    }
+
+    /** Read commit HASH, through the object cache for the local store.
+     *  @param hash full commit hash
+     *  @return the commit */
+    private Commit commit(String hash) {
+        if (_store == ObjectStore.local()) {
+            return Utils.uidToCommit(hash);
+        }
+        byte[] framed = _store.read("commits", hash);
+        if (framed == null) {
+            throw new GitletException("Object " + hash + " not found.");
+        }
+        return Commit.decode(hash, framed);
+    }
+
+    /** Read the bitmaps in FILE. A file written for another version of
+     *  the pack is ignored.
+     *  @param file the .bitmap file */
+    private void load(File file) {
+        ByteBuffer buf;
+        try {
+            buf = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION
+                || buf.getInt(8) != _pack.count()) {
+            return;
+        }
+        int count = buf.getInt(12);
+        int pos = HEADER_BYTES;
+        for (int i = 0; i < count; i++) {
+            String hash = Pack.toHex(buf, pos);
+            int length = buf.getInt(pos + Pack.HASH_BYTES);
+            pos += Pack.HASH_BYTES + 4;
+            _entries.put(hash, buf.slice(pos, length));
+            pos += length;
+        }
+    }
+
+    /** Write the bitmaps to a temporary file and rename it over the
+     *  .bitmap file of the pack. */
+    private void save() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(_pack.count());
+            out.writeInt(_entries.size());
+            for (Map.Entry<String, ByteBuffer> e : _entries.entrySet()) {
+                ByteBuffer coded = e.getValue();
+                out.write(Pack.toBytes(e.getKey()));
+                out.writeInt(coded.remaining());
+                out.write(coded.array(), coded.arrayOffset(),
+                        coded.remaining());
+            }
+            File file = _pack.bitmapFile();
+            File tmp = new File(file.getPath() + ".tmp");
+            Files.write(tmp.toPath(), bytes.toByteArray());
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Most branch tips given a bitmap. */
+    static final int MAX_TIPS = 1000;
+    /** Magic number of a bitmap file ("GBMP"). */
+    private static final int MAGIC = 0x47424d50;
+    /** Format version of the bitmap file. */
+    private static final int VERSION = 1;
+    /** Bytes before the first bitmap. */
+    private static final int HEADER_BYTES = 16;
+
+    /** Store holding the pack. */
+    private ObjectStore _store;
+    /** The pack. */
+    private Pack _pack;
+    /** Coded bitmap by commit hash. */
+    private HashMap<String, ByteBuffer> _entries;
+}
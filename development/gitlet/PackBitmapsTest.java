@@ -0,0 +1,182 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of PackBitmaps for Gitlet, the tiny stupid version-control
+ *  system. The test repo has two branches merged into master and one
+ *  left open, and is repacked, so the branch heads get bitmaps; the
+ *  objects found through them are checked against a plain walk of the
+ *  commits and trees.
+ *  @author Kevin Li
+ */
+public class PackBitmapsTest {
+
+    /** Write CONTENTS to the working file FNAME and stage it.
+     *  @param fname file name
+     *  @param contents its contents */
+    private void add(String fname, String contents) throws IOException {
+        Files.writeString(new File(_dir, fname).toPath(), contents);
+        _repo.add(fname);
+    }
+
+    /** Make and repack the test repo. */
+    @Before
+    public void setUp() throws IOException {
+        _dir = Files.createTempDirectory("gitlet").toFile();
+        _repo = GitletRepository.init(_dir);
+        add("wug.txt", "a wug\n");
+        add("notwug.txt", "not a wug\n");
+        _first = _repo.commit("two files");
+        _repo.branch("other");
+        _repo.branch("open");
+        add("wug.txt", "a changed wug\n");
+        _ours = _repo.commit("changed wug");
+        _repo.checkout("other");
+        add("k.txt", "only on other\n");
+        _theirs = _repo.commit("added k");
+        _repo.checkout("open");
+        add("notwug.txt", "still not a wug\n");
+        _open = _repo.commit("changed notwug");
+        _repo.checkout("master");
+        _repo.merge("other");
+        _merged = _repo.head();
+        _store = new ObjectStore(new File(_dir, ".gitlet"));
+        _store.repack();
+    }
+
+    /** Delete the repo. */
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(_dir.toPath())) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
+    /** The objects reachable from COMMITS, found by reading every
+     *  commit and tree.
+     *  @param commits full commit hashes
+     *  @return their hashes */
+    private Set<String> walk(Collection<String> commits) {
+        Set<String> result = new HashSet<>();
+        ArrayDeque<String> queue = new ArrayDeque<>(commits);
+        while (!queue.isEmpty()) {
+            String hash = queue.poll();
+            if (!result.add(hash)) {
+                continue;
+            }
+            Commit commit = Commit.decode(hash, _store.read("commits",
+                    hash));
+            if (commit.getParent() != null) {
+                queue.add(commit.getParent());
+            }
+            if (commit.getMergeParent() != null) {
+                queue.add(commit.getMergeParent());
+            }
+            if (commit.hasTree()) {
+                walkTree(commit.treeHash(), result);
+            } else {
+                result.addAll(commit.blobsMap().values());
+            }
+        }
+        return result;
+    }
+
+    /** Add the tree HASH and everything under it to RESULT.
+     *  @param hash tree hash
+     *  @param result objects reached */
+    private void walkTree(String hash, Set<String> result) {
+        if (!result.add(hash)) {
+            return;
+        }
+        for (Tree.Entry entry : Tree.read(_store, hash).entries().values()) {
+            if (entry.isTree()) {
+                walkTree(entry.hash(), result);
+            } else {
+                result.add(entry.hash());
+            }
+        }
+    }
+
+    /** Check that the bitmaps find what a walk from COMMITS finds, in
+     *  the pack and out of it.
+     *  @param bitmaps bitmaps of the test store
+     *  @param commits full commit hashes */
+    private void assertReachable(PackBitmaps bitmaps, String... commits) {
+        HashSet<String> outside = new HashSet<>();
+        BitSet bits = bitmaps.reachable(List.of(commits), outside);
+        Set<String> expected = walk(List.of(commits));
+        for (String type : ObjectStore.TYPES) {
+            for (String uid : _store.list(type)) {
+                assertEquals(type + " " + uid, expected.contains(uid),
+                        bitmaps.has(bits, outside, uid));
+            }
+        }
+        assertEquals(expected.size(), bits.cardinality() + outside.size());
+    }
+
+    @Test
+    public void branchHeadsHaveBitmaps() {
+        PackBitmaps bitmaps = PackBitmaps.of(_store);
+        assertNotNull(bitmaps);
+        Set<String> expected = walk(List.of(_merged, _theirs, _open));
+        assertEquals(expected.size(), _store.list("commits").size()
+                + _store.list("trees").size() + _store.list("blobs").size());
+        for (String head : List.of(_merged, _theirs, _open)) {
+            assertReachable(bitmaps, head);
+        }
+        assertReachable(bitmaps, _merged, _open);
+    }
+
+    @Test
+    public void commitsBelowBitmapsAreWalked() {
+        PackBitmaps bitmaps = PackBitmaps.of(_store);
+        assertReachable(bitmaps, _ours);
+        assertReachable(bitmaps, _first);
+        assertReachable(bitmaps, _ours, _theirs);
+    }
+
+    @Test
+    public void commitsAboveThePackAreWalkedToBitmaps() throws IOException {
+        add("wug.txt", "a wug again\n");
+        String above = _repo.commit("wug back");
+        add("h.txt", "new\n");
+        String top = _repo.commit("added h");
+        PackBitmaps bitmaps = PackBitmaps.of(_store);
+        assertFalse(bitmaps.inPack(above));
+        assertReachable(bitmaps, top);
+        assertReachable(bitmaps, above, _open);
+    }
+
+    @Test
+    public void bitmapsWithoutPackMatchWalk() {
+        assertReachable(new PackBitmaps(_store, null), _merged, _open);
+    }
+
+    /** Working directory of the test repo. */
+    private File _dir;
+    /** The test repo. */
+    private GitletRepository _repo;
+    /** Its object store. */
+    private ObjectStore _store;
+    /** Commits of the test repo: the first after the initial one, its
+     *  children on master, other and open, and the merge of other into
+     *  master. */
+    private String _first, _ours, _theirs, _open, _merged;
+}
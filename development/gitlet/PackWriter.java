@@ -0,0 +1,228 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/** PackWriter class for Gitlet, the tiny stupid version-control system.
+ *  Collects objects and writes them out as one pack plus its idx.
+ *  Objects are ordered by type, path hint and size so that versions of
+ *  the same file end up next to each other; each object is then delta
+ *  encoded against the best of the previous WINDOW objects. Only the
+ *  hash, type and size of an object are queued: its bytes are read from
+ *  the store as it is written and dropped once it leaves the window, so
+ *  memory holds WINDOW objects and one small record per object however
+ *  big the repository is.
+ *  @author Kevin Li
+ */
+class PackWriter {
+
+    /** A writer packing objects of STORE.
+     *  @param store the store the objects are read from */
+    PackWriter(ObjectStore store) {
+        _store = store;
+    }
+
+    /** Queue an object for packing.
+     *  @param type type code
+     *  @param uid full hash
+     *  @param size length of the object, which orders the pack */
+    void add(int type, String uid, long size) {
+        _entries.add(new Entry(type, uid, size));
+    }
+
+    /** Record that UID was seen under file name NAME, which groups
+     *  versions of one file together when looking for delta bases.
+     *  @param uid full hash
+     *  @param name a file name */
+    void hint(String uid, String name) {
+        _hints.putIfAbsent(uid, name);
+    }
+
+    /** Number of queued objects.
+     *  @return size */
+    int size() {
+        return _entries.size();
+    }
+
+    /** Write the queued objects as a new pack in DIR. The pack and its
+     *  idx are both written to temporary files and renamed into place,
+     *  the idx last: packs are found by their idx, so a reader never
+     *  sees one without its pack.
+     *  @param dir objects/pack directory
+     *  @return the written pack */
+    Pack write(File dir) {
+        for (Entry e : _entries) {
+            e._hint = _hints.getOrDefault(e._uid, "");
+        }
+        _entries.sort(Comparator.<Entry>comparingInt(e -> e._type)
+                .thenComparing(e -> e._hint)
+                .thenComparing(e -> -e._size));
+        List<String> uids = new ArrayList<>();
+        for (Entry e : _entries) {
+            uids.add(e._uid);
+        }
+        String name = "pack-" + Utils.sha1(uids.toArray());
+        File packFile = Utils.join(dir, name + ".pack");
+        File idxFile = Utils.join(dir, name + ".idx");
+        File tmp = Utils.join(dir, name + ".pack.tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(Pack.PACK_MAGIC);
+            out.writeInt(Pack.VERSION);
+            out.writeInt(_entries.size());
+            long offset = 12;
+            ArrayDeque<Entry> window = new ArrayDeque<>();
+            for (Entry e : _entries) {
+                e._data = _store.read(Pack.typeName(e._type), e._uid);
+                if (e._data == null) {
+                    throw new GitletException("Object " + e._uid
+                            + " not found.");
+                }
+                Entry base = chooseBase(e, window);
+                byte[] payload = (base == null) ? e._data : e._delta;
+                byte[] zipped = Codec.deflate(payload);
+                e._offset = offset;
+                e._depth = (base == null) ? 0 : base._depth + 1;
+                out.writeByte(e._type);
+                out.writeByte(base == null ? Pack.WHOLE : Pack.DELTA);
+                offset += 2;
+                if (base != null) {
+                    out.writeLong(base._offset);
+                    offset += 8;
+                }
+                out.writeInt(payload.length);
+                out.writeInt(zipped.length);
+                out.write(zipped);
+                offset += 8 + zipped.length;
+                e._delta = null;
+                window.addLast(e);
+                if (window.size() > WINDOW) {
+                    window.removeFirst()._data = null;
+                }
+            }
+            for (Entry e : window) {
+                e._data = null;
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        File idxTmp = Utils.join(dir, name + ".idx.tmp");
+        writeIdx(idxTmp);
+        try {
+            Files.move(tmp.toPath(), packFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+            Files.move(idxTmp.toPath(), idxFile.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot install " + name
+                    + ": " + e.getMessage());
+        }
+        return new Pack(Utils.join(dir, name));
+    }
+
+    /** Pick the entry of WINDOW that gives the smallest delta for E, or
+     *  null if storing it whole is cheaper. The winning delta is kept on
+     *  the entry.
+     *  @param e the entry being written
+     *  @param window the entries written just before it, oldest first
+     *  @return the base, or null */
+    private Entry chooseBase(Entry e, ArrayDeque<Entry> window) {
+        Entry best = null;
+        int bestSize = e._data.length - MIN_SAVING;
+        Iterator<Entry> candidates = window.descendingIterator();
+        while (candidates.hasNext()) {
+            Entry cand = candidates.next();
+            if (cand._type != e._type || cand._depth >= Pack.MAX_DEPTH) {
+                continue;
+            }
+            byte[] delta = Delta.create(cand._data, e._data);
+            if (delta.length < bestSize) {
+                best = cand;
+                bestSize = delta.length;
+                e._delta = delta;
+            }
+        }
+        return best;
+    }
+
+    /** Write the idx for the entries just written.
+     *  @param idxFile destination */
+    private void writeIdx(File idxFile) {
+        List<Entry> sorted = new ArrayList<>(_entries);
+        sorted.sort(Comparator.comparing(e -> e._uid));
+        int[] fanout = new int[256];
+        for (Entry e : sorted) {
+            fanout[Integer.parseInt(e._uid.substring(0, 2), 16)]++;
+        }
+        for (int i = 1; i < 256; i++) {
+            fanout[i] += fanout[i - 1];
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(idxFile)))) {
+            out.writeInt(Pack.IDX_MAGIC);
+            out.writeInt(Pack.VERSION);
+            out.writeInt(sorted.size());
+            for (int f : fanout) {
+                out.writeInt(f);
+            }
+            for (Entry e : sorted) {
+                out.write(Pack.toBytes(e._uid));
+                out.writeByte(e._type);
+                out.writeLong(e._offset);
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** An object waiting to be packed. */
+    private static class Entry {
+        /** Constructor.
+         *  @param type type code
+         *  @param uid hash
+         *  @param size object length */
+        Entry(int type, String uid, long size) {
+            _type = type;
+            _uid = uid;
+            _size = size;
+        }
+        /** Type code. */
+        private int _type;
+        /** Hash. */
+        private String _uid;
+        /** Object length. */
+        private long _size;
+        /** Object bytes, while the entry is in the window. */
+        private byte[] _data;
+        /** Name used to group similar objects. */
+        private String _hint;
+        /** Delta against the chosen base, until written. */
+        private byte[] _delta;
+        /** Offset in the pack once written. */
+        private long _offset;
+        /** Delta chain depth once written. */
+        private int _depth;
+    }
+
+    /** Number of previous objects tried as a delta base. */
+    private static final int WINDOW = 10;
+    /** A delta must save at least this many bytes to be used. */
+    private static final int MIN_SAVING = 32;
+    /** Store the objects are read from. */
+    private ObjectStore _store;
+    /** Queued objects. */
+    private List<Entry> _entries = new ArrayList<>();
+    /** Path hints by hash. */
+    private HashMap<String, String> _hints = new HashMap<>();
+}
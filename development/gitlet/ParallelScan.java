@@ -0,0 +1,100 @@
+package gitlet;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
+
+/** ParallelScan class for Gitlet, the tiny stupid version-control system.
+ *  Runs one task per working file on a ForkJoinPool, for scans that stat
+ *  and hash many files. The work is split in halves down to ranges of a
+ *  few dozen files, so idle threads steal from busy ones however uneven
+ *  the files are. The pool has -Dgitlet.threads=N threads, by default
+ *  one per core, and is kept for the life of the process. Scans of fewer
+ *  than MIN_PARALLEL files run on the calling thread.
+ *  @author Kevin Li
+ */
+class ParallelScan {
+
+    /** Not meant to be instantiated. */
+    private ParallelScan() { }
+
+    /** Run TASK on every number in [0, N), in no particular order, and
+     *  return once all are done. TASK must only write to state of its
+     *  own number.
+     *  @param n number of tasks
+     *  @param task the work for one number */
+    static void forEach(int n, IntConsumer task) {
+        if (n < MIN_PARALLEL || parallelism() == 1) {
+            for (int i = 0; i < n; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        int grain = Math.max(MIN_GRAIN, n / (parallelism() * SPLITS));
+        pool().invoke(new Range(task, 0, n, grain));
+    }
+
+    /** Getter for the number of threads scans use.
+     *  @return parallelism, at least 1 */
+    static int parallelism() {
+        return Math.max(1, Integer.getInteger("gitlet.threads",
+                Runtime.getRuntime().availableProcessors()));
+    }
+
+    /** Getter for the pool, created on first use.
+     *  @return the pool */
+    private static synchronized ForkJoinPool pool() {
+        if (_pool == null) {
+            _pool = new ForkJoinPool(parallelism());
+        }
+        return _pool;
+    }
+
+    /** The tasks of a range of numbers. */
+    private static class Range extends RecursiveAction {
+        /** Constructor.
+         *  @param task the work for one number
+         *  @param from first number
+         *  @param to one past the last number
+         *  @param grain largest range run without splitting */
+        Range(IntConsumer task, int from, int to, int grain) {
+            _task = task;
+            _from = from;
+            _to = to;
+            _grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (_to - _from <= _grain) {
+                for (int i = _from; i < _to; i++) {
+                    _task.accept(i);
+                }
+            } else {
+                int mid = (_from + _to) >>> 1;
+                invokeAll(new Range(_task, _from, mid, _grain),
+                        new Range(_task, mid, _to, _grain));
+            }
+        }
+
+        /** Version, though tasks are never serialized. */
+        private static final long serialVersionUID = 1L;
+        /** The work for one number. */
+        private IntConsumer _task;
+        /** First number. */
+        private int _from;
+        /** One past the last number. */
+        private int _to;
+        /** Largest range run without splitting. */
+        private int _grain;
+    }
+
+    /** Fewest tasks worth handing to the pool. */
+    static final int MIN_PARALLEL = 64;
+    /** Smallest range split off. */
+    private static final int MIN_GRAIN = 16;
+    /** Ranges per thread, to even out uneven files. */
+    private static final int SPLITS = 8;
+    /** The pool, null until used. */
+    private static ForkJoinPool _pool;
+}
@@ -0,0 +1,301 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Refs class for Gitlet, the tiny stupid version-control system.
+ *  Reads and writes branches. A branch is either a loose file under
+ *  refs/branches holding its commit hash, or a line "<hash> <name>" of
+ *  packed-refs, whose lines are sorted by name. A loose branch wins
+ *  over a packed one of the same name. Lookups binary search the mapped
+ *  packed-refs, so they cost the same at a hundred thousand branches as
+ *  at one. Branches are always written loose; `gitlet pack-refs` moves
+ *  them into packed-refs. Both kinds of file are written to a temporary
+ *  file and renamed over the old one, so readers never see half a ref;
+ *  packed-refs.lock keeps two processes from rewriting packed-refs at
+ *  once.
+ *  @author Kevin Li
+ */
+class Refs {
+
+    /** The branches of the repo whose .gitlet directory is GITLETDIR.
+     *  @param gitletDir a .gitlet directory */
+    Refs(File gitletDir) {
+        _gitletDir = gitletDir;
+        _looseDir = Utils.join(gitletDir, "refs", "branches");
+        _packedFile = Utils.join(gitletDir, "packed-refs");
+    }
+
+    /** Getter for the branches of the repo at RepoRoot.
+     *  @return the local refs */
+    static Refs local() {
+        return RepoRoot.local(Refs.class, Refs::new);
+    }
+
+    /** The branch a HEAD file points to.
+     *  @param head contents of HEAD, a path ending in the branch name
+     *  @return the branch name */
+    static String branchOf(String head) {
+        String path = head.trim();
+        return path.substring(path.lastIndexOf(File.separator) + 1);
+    }
+
+    /** Commit hash of branch NAME.
+     *  @param name branch name
+     *  @return its hash, or null if there is no such branch */
+    String read(String name) {
+        File loose = Utils.join(_looseDir, name);
+        if (loose.isFile()) {
+            return Utils.readContentsAsString(loose);
+        }
+        return findPacked(name);
+    }
+
+    /** Check whether branch NAME exists.
+     *  @param name branch name
+     *  @return true if it does */
+    boolean exists(String name) {
+        return Utils.join(_looseDir, name).isFile()
+                || findPacked(name) != null;
+    }
+
+    /** Point branch NAME at HASH, creating it if needed.
+     *  @param name branch name
+     *  @param hash commit hash */
+    void write(String name, String hash) {
+        File tmp = tempFile();
+        Utils.writeContents(tmp, hash);
+        move(tmp, Utils.join(_looseDir, name));
+    }
+
+    /** Delete branch NAME, loose and packed.
+     *  @param name branch name
+     *  @return false if there was no such branch */
+    boolean delete(String name) {
+        boolean found = Utils.join(_looseDir, name).delete();
+        if (findPacked(name) != null) {
+            File lock = lock();
+            try {
+                TreeMap<String, String> packed = readPacked();
+                packed.remove(name);
+                writePacked(lock, packed);
+            } finally {
+                lock.delete();
+            }
+            found = true;
+        }
+        return found;
+    }
+
+    /** Every branch name.
+     *  @return the names, sorted */
+    List<String> list() {
+        TreeSet<String> names = new TreeSet<>(readPacked().keySet());
+        List<String> loose = Utils.plainFilenamesIn(_looseDir);
+        if (loose != null) {
+            names.addAll(loose);
+        }
+        return new ArrayList<>(names);
+    }
+
+    /** Move every loose branch into packed-refs. A loose branch that
+     *  changes while this runs is left loose.
+     *  @return number of branches in packed-refs */
+    int pack() {
+        File lock = lock();
+        try {
+            TreeMap<String, String> packed = readPacked();
+            TreeMap<String, String> loose = new TreeMap<>();
+            List<String> names = Utils.plainFilenamesIn(_looseDir);
+            if (names != null) {
+                for (String name : names) {
+                    loose.put(name, Utils.readContentsAsString(
+                            Utils.join(_looseDir, name)));
+                }
+            }
+            packed.putAll(loose);
+            writePacked(lock, packed);
+            for (Map.Entry<String, String> e : loose.entrySet()) {
+                File f = Utils.join(_looseDir, e.getKey());
+                if (e.getValue().equals(Utils.readContentsAsString(f))) {
+                    f.delete();
+                }
+            }
+            return packed.size();
+        } finally {
+            lock.delete();
+        }
+    }
+
+    /** Look NAME up in packed-refs by binary search over its lines.
+     *  @param name branch name
+     *  @return its hash, or null if it is not packed */
+    private String findPacked(String name) {
+        ByteBuffer buf = packed();
+        int lo = 0, hi = buf.limit();
+        while (lo < hi) {
+            int start = (lo + hi) >>> 1;
+            while (start > lo && buf.get(start - 1) != '\n') {
+                start--;
+            }
+            int end = start;
+            while (end < hi && buf.get(end) != '\n') {
+                end++;
+            }
+            int cmp = nameAt(buf, start, end).compareTo(name);
+            if (cmp == 0) {
+                return string(buf, start, Utils.UID_LENGTH);
+            } else if (cmp < 0) {
+                lo = end + 1;
+            } else {
+                hi = start;
+            }
+        }
+        return null;
+    }
+
+    /** Every packed branch.
+     *  @return map from name to hash */
+    private TreeMap<String, String> readPacked() {
+        TreeMap<String, String> result = new TreeMap<>();
+        ByteBuffer buf = packed();
+        int start = 0;
+        for (int i = 0; i < buf.limit(); i++) {
+            if (buf.get(i) == '\n') {
+                result.put(nameAt(buf, start, i),
+                        string(buf, start, Utils.UID_LENGTH));
+                start = i + 1;
+            }
+        }
+        return result;
+    }
+
+    /** Write REFS, sorted, to LOCK and rename it over packed-refs.
+     *  @param lock the held lock file
+     *  @param refs map from name to hash */
+    private void writePacked(File lock, TreeMap<String, String> refs) {
+        StringBuilder out = new StringBuilder(refs.size() * LINE_GUESS);
+        for (Map.Entry<String, String> e : refs.entrySet()) {
+            out.append(e.getValue()).append(' ').append(e.getKey())
+                    .append('\n');
+        }
+        Utils.writeContents(lock, out.toString());
+        move(lock, _packedFile);
+        _packed = null;
+    }
+
+    /** Getter for packed-refs, mapped, and mapped again whenever the
+     *  file was replaced since.
+     *  @return its bytes, empty if there is no packed-refs */
+    private ByteBuffer packed() {
+        long time = _packedFile.lastModified();
+        long length = _packedFile.length();
+        if (_packed != null && time == _packedTime
+                && length == _packedLength) {
+            return _packed;
+        }
+        if (!_packedFile.isFile()) {
+            _packed = ByteBuffer.allocate(0);
+        } else {
+            try (FileChannel ch = FileChannel.open(_packedFile.toPath(),
+                    StandardOpenOption.READ)) {
+                _packed = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e.getMessage());
+            }
+        }
+        _packedTime = time;
+        _packedLength = length;
+        return _packed;
+    }
+
+    /** Take packed-refs.lock.
+     *  @return the lock file, to be deleted when done */
+    private File lock() {
+        File lock = Utils.join(_gitletDir, "packed-refs.lock");
+        try {
+            Files.createFile(lock.toPath());
+        } catch (FileAlreadyExistsException e) {
+            throw new GitletException("Unable to lock packed-refs; "
+                    + "is another gitlet running?");
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        return lock;
+    }
+
+    /** A new temporary file next to the branches, but not among them.
+     *  @return the file */
+    private File tempFile() {
+        try {
+            return Files.createTempFile(_looseDir.getParentFile().toPath(),
+                    "ref", ".lock").toFile();
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Rename FROM over TO in one step.
+     *  @param from a complete file
+     *  @param to its destination */
+    private static void move(File from, File to) {
+        try {
+            Files.move(from.toPath(), to.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+    }
+
+    /** Name on the packed line [START, END).
+     *  @param buf packed-refs
+     *  @param start first byte of the line
+     *  @param end position of its newline
+     *  @return the branch name */
+    private static String nameAt(ByteBuffer buf, int start, int end) {
+        int from = start + Utils.UID_LENGTH + 1;
+        return string(buf, from, end - from);
+    }
+
+    /** Decode LENGTH bytes of BUF at POS.
+     *  @param buf a buffer
+     *  @param pos first byte
+     *  @param length number of bytes
+     *  @return the UTF-8 string */
+    private static String string(ByteBuffer buf, int pos, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buf.get(pos + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Rough length of a packed line. */
+    private static final int LINE_GUESS = 64;
+
+    /** The .gitlet directory. */
+    private File _gitletDir;
+    /** Directory of loose branches. */
+    private File _looseDir;
+    /** The packed-refs file. */
+    private File _packedFile;
+    /** packed-refs as last mapped, or null. */
+    private ByteBuffer _packed;
+    /** Modification time of packed-refs when mapped. */
+    private long _packedTime;
+    /** Length of packed-refs when mapped. */
+    private long _packedLength;
+}
@@ -2,8 +2,12 @@ package gitlet;
 
 import java.io.File;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 
 /** Remote class for Gitlet, the tiny stupid version-control system.
+ *  A remote is stored with Codec as three lines: name, location and hash.
+ *  It stays Serializable only so that `gitlet migrate` can read remotes
+ *  written by older versions.
  *  @author Kevin Li
  */
 public class Remote implements Serializable {
@@ -18,6 +22,32 @@ public class Remote implements Serializable {
         writeRemote();
     }
 
+    /** Constructor for a remote read back from disk.
+     * @param name is remote name
+     * @param loc is remote's location
+     * @param hash is remote's hash */
+    private Remote(String name, File loc, String hash) {
+        _name = name;
+        _loc = loc;
+        _remoteHash = hash;
+    }
+
+    /** Read the remote stored in FILE.
+     * @param file a file under refs/remotes
+     * @return the remote */
+    static Remote read(File file) {
+        String[] lines = new String(Codec.unframe(KIND, Codec.readFile(file)),
+                StandardCharsets.UTF_8).split("\n");
+        return new Remote(lines[0], new File(lines[1]), lines[2]);
+    }
+
+    /** Encode this remote in the gitlet object format.
+     * @return framed bytes */
+    byte[] encode() {
+        String body = _name + "\n" + _loc.getPath() + "\n" + _remoteHash;
+        return Codec.frame(KIND, body.getBytes(StandardCharsets.UTF_8));
+    }
+
     /** Helper function that takes in a String path, and converts
      *  into a File object with File separator.
      * @param loc is location string that should be processed
@@ -35,35 +65,34 @@ public class Remote implements Serializable {
      * comparison.
      * @return hash */
     private String generateHash() {
-        return Utils.sha1(Utils.serialize(this), "remote");
+        return Utils.sha1(_name, _loc.getPath(), "remote");
     }
     /** Getter method for hash.
      * @return a new string for hash */
     public String getHash() {
         return _remoteHash;
     }
-    /** Getter method for location.
+    /** Getter method for location. A relative location is taken
+     * relative to RepoRoot.
      * @return a File object of location*/
     public File location() {
-        return _loc;
+        return RepoRoot.resolve(_loc);
     }
 
     /** Setter method for remote. */
     public void writeRemote() {
-        File storeLoc = Utils.join(_remotePath, _name);
-        Utils.writeObject(storeLoc, this);
+        File storeLoc = RepoRoot.gitlet("refs", "remotes", _name);
+        Codec.writeFile(storeLoc, encode());
     }
 
+    /** Object kind in the Codec header. */
+    static final String KIND = "remote";
+    /** Version of this class in remotes written before Codec. */
+    private static final long serialVersionUID = 2401041161181851931L;
     /** Instance variable name. */
     private String _name;
     /** Instance variable location. */
     private File _loc;
     /** Hash the remote as well, in case future comparison. */
     private String _remoteHash;
-    /** File separator. */
-    private static final String SLASH = File.separator;
-    /** Instance variable remote path File. */
-    private File _remotePath
-            = new File("." + SLASH + ".gitlet" + SLASH
-            + "refs" + SLASH + "remotes");
 }
@@ -1,10 +1,15 @@
 package gitlet;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Set;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.LinkedList;
+import java.util.Map;
+import java.util.TreeMap;
 
 
 /** Repo class for Gitlet, the tiny stupid version-control system.
@@ -21,22 +26,82 @@ public class Repo {
         _stage = stage;
     }
 
-    /** Gitlet command add().
-     * @param fname filename
+    /** Gitlet command init. Lays out a new .gitlet directory at
+     *  RepoRoot, with an initial commit on master.
+     *  @return the new repo */
+    static Repo init() {
+        File initDIR = RepoRoot.gitlet();
+        if (initDIR.exists()) {
+            throw new GitletException("A Gitlet version-control"
+                    + " system already exists in the current directory.");
+        }
+        initDIR.mkdir();
+        try {
+            File refs = Utils.join(initDIR, "refs");
+            File objects = Utils.join(initDIR, "objects");
+            Utils.join(initDIR, "HEAD").createNewFile();
+            Utils.join(initDIR, "index").createNewFile();
+            refs.mkdir();
+            Utils.writeContents(Utils.join(initDIR, "help.txt"),
+                    Help.helpTxt());
+            objects.mkdir();
+            Utils.join(objects, "commits").mkdir();
+            Utils.join(objects, "trees").mkdir();
+            Utils.join(objects, "blobs").mkdir();
+            MessageIndex.create(initDIR);
+            Utils.join(refs, "branches").mkdir();
+            Utils.join(refs, "remotes").mkdir();
+            Utils.join(refs, "branches", "master").createNewFile();
+            Utils.writeContents(Utils.join(initDIR, "HEAD"),
+                    ".gitlet" + S + "refs" + S + "branches" + S + "master");
+            Migration.markCurrent();
+        } catch (IOException e) {
+            System.out.println("Writing error in init.");
+        }
+        return getRepo(true);
+    }
+
+    /** Gitlet command add(). "." stands for every file in CWD. All the
+     *  files are hashed in parallel and through the stat cache; the ones
+     *  that have to be read are stored as blobs in the same pass, and
+     *  only cached hashes missing from the store are read again. The
+     *  stage is then written once. Nothing is staged if any file does
+     *  not exist.
+     * @param fnames filenames
      * */
-    public void add(String fname) {
-        File fileLoc = new File(fname);
-        if (!fileLoc.exists()) {
-            throw new GitletException("File does not exist.");
-        }
-        Blob fileBlob = new Blob(fileLoc);
-        HashMap<String, String> headBlobs = _CTree.getHEAD().blobsMap();
-        boolean isIdentical = _CTree.isInHEADBlob(fname)
-                        && headBlobs.get(fname).equals(fileBlob.getHash());
-        if (isIdentical) {
-            safeRemoveStage(fname);
-        } else {
-            _stage.addToStage("add", fname, fileBlob.getHash());
+    public void add(String... fnames) {
+        LinkedHashSet<String> paths = new LinkedHashSet<>();
+        for (String fname : fnames) {
+            if (fname.equals(".")) {
+                paths.addAll(Utils.plainFilenamesIn(RepoRoot.dir()));
+            } else if (!RepoRoot.file(fname).exists()) {
+                throw new GitletException("File does not exist.");
+            } else {
+                paths.add(fname);
+            }
+        }
+        String[] names = paths.toArray(new String[0]);
+        ObjectStore store = ObjectStore.local();
+        HashMap<String, String> working = _stage.workingHashes(paths, store);
+        String[] hashes = new String[names.length];
+        boolean[] stored = new boolean[names.length];
+        ParallelScan.forEach(names.length, i -> {
+            hashes[i] = working.get(names[i]);
+            if (hashes[i] == null || !store.contains("blobs", hashes[i])) {
+                hashes[i] = new Blob(RepoRoot.file(names[i])).getHash();
+                stored[i] = true;
+            }
+        });
+        Commit head = _CTree.getHEAD();
+        for (int i = 0; i < names.length; i++) {
+            if (stored[i]) {
+                _stage.record(names[i], hashes[i]);
+            }
+            if (hashes[i].equals(head.blobHash(names[i]))) {
+                safeRemoveStage(names[i]);
+            } else {
+                _stage.addToStage("add", names[i], hashes[i]);
+            }
         }
         _stage.writeStage();
     }
@@ -45,7 +110,7 @@ public class Repo {
      * @param fname filename
      * */
     public void rm(String fname) {
-        boolean tracked = _CTree.getHEAD().blobsMap().containsKey(fname);
+        boolean tracked = _CTree.getHEAD().blobHash(fname) != null;
         String staged = _stage.contain(fname);
         if (!staged.equals("add") && !tracked) {
             throw new GitletException("No reason to remove the file.");
@@ -53,34 +118,245 @@ public class Repo {
             _stage.removeStageItem("add", fname);
         } else {
             _stage.addToStage("remove", fname, null);
-            Utils.restrictedDelete(fname);
+            Utils.restrictedDelete(RepoRoot.file(fname));
         }
+        _stage.forget(fname);
         _stage.writeStage();
     }
 
     /** Gitlet command log.
      * @param isGlobal if is global*/
     public void log(boolean isGlobal) {
-        List<String> allCommits = Utils.plainFilenamesIn(_commitPath);
-        assert allCommits != null;
-        createLog(allCommits, isGlobal);
-    }
-    /** Gitlet command find.
-     * @param msg msg to be found*/
-    public void find(String msg) {
-        List<String> allCommits = Utils.plainFilenamesIn(_commitPath);
-        boolean found = false;
-        assert allCommits != null;
-        for (String s : allCommits) {
-            String commitMsg = Utils.uidToCommit(s).getMessage();
-            if (commitMsg.equals(msg)) {
-                found = true;
-                System.out.println(s);
+        if (isGlobal) {
+            createLog(null);
+        } else {
+            log(new String[0]);
+        }
+    }
+
+    /** Gitlet command log with options. OPTIONS are any of -n N,
+     *  --skip N, --since DATE and --until DATE, also written --opt=VALUE,
+     *  and at most one revision: a branch, a commit id or HEAD to start
+     *  from, or a range A..B, the commits of B not reachable from A,
+     *  where an empty side means HEAD.
+     *  @param options the words after "log" */
+    public void log(String... options) {
+        String range = null;
+        int limit = Integer.MAX_VALUE, skip = 0;
+        long since = Long.MIN_VALUE, until = Long.MAX_VALUE;
+        for (int i = 0; i < options.length; i++) {
+            String opt = options[i];
+            if (!opt.startsWith("-")) {
+                if (range != null) {
+                    throw new GitletException("Incorrect operands.");
+                }
+                range = opt;
+                continue;
+            }
+            String value;
+            int eq = opt.indexOf('=');
+            if (opt.startsWith("--") && eq > 0) {
+                value = opt.substring(eq + 1);
+                opt = opt.substring(0, eq);
+            } else if (i + 1 < options.length) {
+                value = options[++i];
+            } else {
+                throw new GitletException("Incorrect operands.");
+            }
+            switch (opt) {
+            case "-n": case "--max-count":
+                limit = count(value); break;
+            case "--skip":
+                skip = count(value); break;
+            case "--since": case "--after":
+                since = LogWalk.parseDate(value, false); break;
+            case "--until": case "--before":
+                until = LogWalk.parseDate(value, true); break;
+            default:
+                throw new GitletException("Incorrect operands.");
             }
         }
-        if (!found) {
+        List<String> excluded = new ArrayList<>();
+        String head;
+        if (range == null) {
+            head = _CTree.getHEAD().getHash();
+        } else if (range.contains("..")) {
+            int dots = range.indexOf("..");
+            excluded.add(revision(range.substring(0, dots)));
+            head = revision(range.substring(dots + 2));
+        } else {
+            head = revision(range);
+        }
+        createLog(new LogWalk(ObjectStore.local(), head, excluded)
+                .limit(limit).skip(skip).since(since).until(until));
+    }
+
+    /** A count given to a log option.
+     *  @param value the text
+     *  @return the count */
+    private static int count(String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result >= 0) {
+                return result;
+            }
+        } catch (NumberFormatException e) {
+            // fall through
+        }
+        throw new GitletException("Incorrect operands.");
+    }
+
+    /** The commit a revision names: HEAD or an empty string for the head
+     *  commit, else a branch, else a full or abbreviated commit id.
+     *  @param rev a revision
+     *  @return full commit hash */
+    private String revision(String rev) {
+        if (rev.isEmpty() || rev.equals("HEAD")) {
+            return _CTree.getHEAD().getHash();
+        }
+        String branch = Refs.local().read(rev);
+        return (branch != null) ? branch : reconstructUID(rev);
+    }
+
+    /** Gitlet command diff. With no commit, the staged version of each
+     *  tracked file against the working file; with one commit, that
+     *  commit against the working files; with two, the first commit
+     *  against the second. Commits are named as in log. "-- PATH" limits
+     *  the diff to one file, and --myers picks Myers' algorithm over the
+     *  default histogram. Output is a unified diff with three lines of
+     *  context, collected into LOG_BUFFER-sized writes.
+     *  @param args the words after "diff" */
+    public void diff(String... args) {
+        List<String> revs = new ArrayList<>();
+        String only = null;
+        boolean myers = false;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--") && i == args.length - 2) {
+                only = args[++i];
+            } else if (args[i].equals("--myers")) {
+                myers = true;
+            } else if (args[i].equals("--histogram")) {
+                myers = false;
+            } else if (args[i].startsWith("-") || revs.size() == 2) {
+                throw new GitletException("Incorrect operands.");
+            } else {
+                revs.add(revision(args[i]));
+            }
+        }
+        TreeMap<String, String[]> changed = new TreeMap<>();
+        boolean toWorking = revs.size() < 2;
+        if (!toWorking) {
+            Tree.diff(Utils.uidToCommit(revs.get(0)).treeHash(),
+                    Utils.uidToCommit(revs.get(1)).treeHash(), "", changed);
+        } else {
+            Map<String, String> index = indexFiles();
+            Map<String, String> old = revs.isEmpty() ? index
+                    : Utils.uidToCommit(revs.get(0)).blobsMap();
+            LinkedHashSet<String> tracked = new LinkedHashSet<>(old.keySet());
+            tracked.addAll(index.keySet());
+            HashMap<String, String> working = _stage.workingHashes(tracked);
+            for (String fname : tracked) {
+                String was = old.get(fname), now = working.get(fname);
+                if (was == null ? now != null : !was.equals(now)) {
+                    changed.put(fname, new String[] {was, now});
+                }
+            }
+            _stage.writeIfDirty();
+        }
+        StringBuilder out = new StringBuilder(LOG_BUFFER);
+        for (Map.Entry<String, String[]> e : changed.entrySet()) {
+            if (only == null || only.equals(e.getKey())) {
+                diffFile(e.getKey(), e.getValue(), toWorking, myers, out);
+                if (out.length() >= LOG_BUFFER) {
+                    System.out.print(out);
+                    out.setLength(0);
+                }
+            }
+        }
+        System.out.print(out);
+    }
+
+    /** The files the next commit would hold: HEAD's, with the stage
+     *  applied.
+     *  @return blob hash by file name */
+    private Map<String, String> indexFiles() {
+        HashMap<String, String> result
+                = new HashMap<>(_CTree.getHEAD().blobsMap());
+        result.putAll(_stage.getStage("add"));
+        for (String fname : _stage.getStage("remove").keySet()) {
+            result.remove(fname);
+        }
+        return result;
+    }
+
+    /** Append to OUT the diff of file FNAME between the blobs HASHES.
+     *  @param fname file name
+     *  @param hashes old and new blob hash, null where FNAME is absent
+     *  @param toWorking whether the new side is the working file
+     *  @param myers whether to use Myers' algorithm over histogram
+     *  @param out buffer receiving the diff */
+    private static void diffFile(String fname, String[] hashes,
+                                 boolean toWorking, boolean myers,
+                                 StringBuilder out) {
+        String from = (hashes[0] == null) ? "/dev/null" : "a/" + fname;
+        String to = (hashes[1] == null) ? "/dev/null" : "b/" + fname;
+        Diff.Text a = new Diff.Text(diffSide(fname, hashes[0], false));
+        Diff.Text b = new Diff.Text(diffSide(fname, hashes[1], toWorking));
+        out.append("diff --git a/").append(fname).append(" b/")
+                .append(fname).append('\n');
+        if (a.isBinary() || b.isBinary()) {
+            out.append("Binary files ").append(from).append(" and ")
+                    .append(to).append(" differ\n");
+            return;
+        }
+        out.append("--- ").append(from).append('\n');
+        out.append("+++ ").append(to).append('\n');
+        int[][] ids = Diff.intern(a, b);
+        List<Diff.Edit> edits = myers ? Diff.myers(ids[0], ids[1])
+                : Diff.histogram(ids[0], ids[1]);
+        Diff.unified(a, b, edits, DIFF_CONTEXT, out);
+    }
+
+    /** The contents of one side of a diff of FNAME.
+     *  @param fname file name
+     *  @param hash blob hash, or null if the file is absent
+     *  @param working whether to read the working file rather than the
+     *                 blob
+     *  @return file contents, empty if absent */
+    private static byte[] diffSide(String fname, String hash,
+                                   boolean working) {
+        if (hash == null) {
+            return new byte[0];
+        } else if (working) {
+            return Utils.readContents(RepoRoot.file(fname));
+        }
+        return Codec.unframe(Blob.KIND,
+                ObjectStore.local().read("blobs", hash));
+    }
+    /** Gitlet command find. Without a flag the message must match
+     *  exactly; --word matches messages holding every given word, in any
+     *  case, and --contains matches messages containing the query.
+     * @param flag null, "--word" or "--contains"
+     * @param query msg to be found*/
+    public void find(String flag, String query) {
+        List<String> found;
+        if (flag == null) {
+            found = MessageIndex.local().exact(query);
+        } else if (flag.equals("--word")) {
+            found = MessageIndex.local().words(query);
+        } else if (flag.equals("--contains")) {
+            found = MessageIndex.local().substring(query);
+        } else {
+            throw new GitletException("Incorrect operands.");
+        }
+        if (found.isEmpty()) {
             throw new GitletException("Did not find any commit with that message.");
         }
+        StringBuilder out = new StringBuilder();
+        for (String s : found) {
+            out.append(s).append('\n');
+        }
+        System.out.print(out);
     }
 
     /** Gitlet command status.
@@ -92,6 +368,7 @@ public class Repo {
         current.staticInfo("removed");
         current.staticInfo("modified");
         current.staticInfo("untracked");
+        _stage.writeIfDirty();
     }
 
     /** Gitlet command checkout.
@@ -99,23 +376,19 @@ public class Repo {
      * @param checkoutCase case of checkout*/
     public void checkout(int checkoutCase, String... args) {
         if (checkoutCase == 1) {
-            HashMap<String, String> headBlobs = _CTree.getHEAD().blobsMap();
-            checkFnameExist(_CTree.getHEAD(), args[2]);
-            blobToCWD(headBlobs, args[2]);
+            blobToCWD(checkFnameExist(_CTree.getHEAD(), args[2]), args[2]);
         } else if (checkoutCase == 2) {
             Commit commit = Utils.uidToCommit(reconstructUID(args[1]));
             String fname = args[3];
-            checkFnameExist(commit, fname);
-            blobToCWD(commit.blobsMap(), fname);
+            blobToCWD(checkFnameExist(commit, fname), fname);
         } else {
             String name = args[1];
             name = reconstructBranch(name);
             checkBranch(name);
-            File branchPath = Utils.join(_branchPath, name);
-            checkOutCommit(Utils.readContentsAsString(branchPath));
-            Utils.writeContents(
-                    Utils.join("." + S + ".gitlet", "HEAD"),
-                    branchPath.toString());
+            checkOutCommit(Refs.local().read(name));
+            Utils.writeContents(RepoRoot.gitlet("HEAD"),
+                    "." + S + ".gitlet" + S + "refs" + S + "branches"
+                    + S + name);
             _CTree.setCurrBranch(name);
         }
     }
@@ -127,7 +400,7 @@ public class Repo {
             throw new GitletException("Branch name cannot"
                     + " contain Separator character.");
         }
-        if (Utils.join(_branchPath, fname).exists()) {
+        if (Refs.local().exists(fname)) {
             throw new GitletException("One branch with that name"
                     + " already exists.");
         }
@@ -138,9 +411,8 @@ public class Repo {
      * @param branch branch to rm*/
     public void rmBranch(String branch) {
         branch = reconstructBranch(branch);
-        File path = Utils.join(_branchPath, branch);
-        checkRmBranch(branch, path);
-        path.delete();
+        checkRmBranch(branch);
+        Refs.local().delete(branch);
     }
 
     /** Gitlet command reset.
@@ -148,22 +420,30 @@ public class Repo {
     public void reset(String commitID) {
         String uid = reconstructUID(commitID);
         checkOutCommit(uid);
-        File branch = Utils.join(_branchPath, _CTree.getCurrBranch());
-        Utils.writeContents(branch, uid);
+        _CTree.writeBranch(_CTree.getCurrBranch(), uid);
     }
 
     /** Gitlet command merge.
      *  @param mergeB branch to merge from. */
     public void merge(String mergeB) {
         Merge helper = new Merge(this);
-        helper.merge(mergeB);
+        MergeResult result = helper.merge(mergeB);
+        if (result.getKind() == MergeResult.Kind.UP_TO_DATE) {
+            System.out.println("Given branch is "
+                    + "an ancestor of the current branch.");
+        } else if (result.getKind() == MergeResult.Kind.FAST_FORWARD) {
+            System.out.println("Current branch fast-forwarded.");
+        }
+        for (String fname : result.getConflicts()) {
+            System.out.println("Encountered a merge conflict.");
+        }
     }
 
     /** Add-remote command of Gitlet.
      * @param name name of remote
      * @param remoteLoc file path string to remote. */
     public void addRemote(String name, String remoteLoc) {
-        if (Utils.join(_remotePath, name).exists()) {
+        if (Utils.join(remotePath(), name).exists()) {
             throw new GitletException("A gitlet remote "
                     + "with that name already exists!");
         } else if (!getExtension(remoteLoc).equals(".gitlet")) {
@@ -176,7 +456,7 @@ public class Repo {
     /** Remote-remote command of Gitlet.
      * @param name branch name that would be removed.*/
     public void rmRemote(String name) {
-        File assignedRemote = Utils.join(_remotePath, name);
+        File assignedRemote = Utils.join(remotePath(), name);
         if (!assignedRemote.exists()) {
             throw new GitletException("A remote with"
                     + " that name does not exist.");
@@ -221,68 +501,82 @@ public class Repo {
      * @return the Commit LCA
      *  */
     public Commit findLCA(Commit curr, Commit merge) {
-        Set<String> mergeParents = _CTree.getParentChain(merge);
-        LinkedList<String> choices = new LinkedList<>();
-
-        choices.add(curr.getHash());
-        while (!choices.isEmpty()) {
-            String i = choices.removeFirst();
-            Commit state = Utils.uidToCommit(i);
-            if (mergeParents.contains(i)) {
-                return state;
-            }
-            if (state.getParent() != null) {
-                choices.add(state.getParent());
-            }
-            if (state.getMergeParent() != null) {
-                choices.add(state.getMergeParent());
-            }
+        String lca = CommitGraph.local().mergeBase(curr.getHash(),
+                merge.getHash());
+        if (lca == null) {
+            throw new GitletException("Cannot find LCA!");
         }
-        throw new GitletException("Cannot find LCA!");
+        return Utils.uidToCommit(lca);
     }
 
     /** A Helper function to read Branch and return branch head's Commit object.
      * @param name is branch name
      * @return the result of reading a branch */
     public static Commit readBranch(String name) {
-        File branchPath = Utils.join(_branchPath, name);
-        return Utils.uidToCommit(
-                Utils.readContentsAsString(branchPath));
+        return Utils.uidToCommit(Refs.local().read(name));
     }
 
     /** Helper function that checks out everything in a commit, given a FULL
      *  commit ID. It does not write anything out! This helper avoids redundancy
      *  in checkout case 3, reset, and merge.
-     *  Notes:   Below the two sout [Affected file] statement will cause
-     *  integration test to error.
+     *  Only the paths that differ between HEAD and the commit are written
+     *  or deleted, plus any file both commits share whose working copy
+     *  was changed; the stat cache tells those apart without reading
+     *  them. Nothing is touched if an untracked file is in the way.
+     *  The files are written by a CheckoutPipeline, and the files the
+     *  commit lacks are deleted only once every write succeeded, so a
+     *  failed checkout never leaves the tree with files gone.
      *  @param commitID commit id
      *  */
     public void checkOutCommit(String commitID) {
-        HashMap<String, String> blobMap
-                = Utils.uidToCommit(commitID).blobsMap();
-        Set<String> filesToTrack = blobMap.keySet();
-        Set<String> originTrack = _CTree.getHEAD().blobsMap().keySet();
-        for (String fname : filesToTrack) {
-            if (presentButUntracked(fname)) {
+        Commit head = _CTree.getHEAD();
+        TreeMap<String, String[]> diff = new TreeMap<>();
+        Tree.diff(head.treeHash(), Utils.uidToCommit(commitID).treeHash(),
+                "", diff);
+        for (Map.Entry<String, String[]> e : diff.entrySet()) {
+            if (e.getValue()[0] == null && presentButUntracked(e.getKey())) {
                 throw new GitletException("There is an untracked file "
                         + "in the way; delete it or add and commit first.");
             }
-            blobToCWD(blobMap, fname);
-            System.out.println("[Affected file]: " + fname + " (written in CWD)");
-            originTrack.remove(fname);
         }
-        for (String remain : originTrack) {
-            Utils.restrictedDelete(remain);
-            System.out.println("[Affected file]: " + remain + " (deleted in CWD)");
+        List<String> kept = new ArrayList<>();
+        for (String fname : head.blobsMap().keySet()) {
+            if (!diff.containsKey(fname)) {
+                kept.add(fname);
+            }
+        }
+        HashMap<String, String> working = _stage.workingHashes(kept);
+        for (String fname : kept) {
+            String hash = head.blobHash(fname);
+            if (!hash.equals(working.get(fname))) {
+                diff.put(fname, new String[] {hash, hash});
+            }
+        }
+        CheckoutPipeline pipeline
+                = new CheckoutPipeline(ObjectStore.local(), diff.size());
+        List<String> deleted = new ArrayList<>();
+        for (Map.Entry<String, String[]> e : diff.entrySet()) {
+            String fname = e.getKey(), hash = e.getValue()[1];
+            if (hash == null) {
+                deleted.add(fname);
+            } else {
+                pipeline.write(fname, hash);
+            }
+        }
+        for (String fname : pipeline.finish()) {
+            _stage.record(fname, diff.get(fname)[1]);
+        }
+        for (String fname : deleted) {
+            Utils.restrictedDelete(RepoRoot.file(fname));
+            _stage.forget(fname);
         }
         _stage.reset();
     }
 
     /** Helper function for rmBranch to verify condition.
-     * @param branch check rm branch
-     * @param verify verify file*/
-    private void checkRmBranch(String branch, File verify) {
-        if (!verify.exists()) {
+     * @param branch check rm branch*/
+    private void checkRmBranch(String branch) {
+        if (!Refs.local().exists(branch)) {
             throw new GitletException("A branch with"
                     + " that name does not exist.");
         }
@@ -299,9 +593,9 @@ public class Repo {
      *  @return boolean value for untrack or not */
     private boolean presentButUntracked(String fname) {
         Commit curr = _CTree.getHEAD();
-        File fileLoc = Utils.join(new File("."), fname);
+        File fileLoc = RepoRoot.file(fname);
         return fileLoc.exists()
-                && !curr.blobsMap().containsKey(fname);
+                && curr.blobHash(fname) == null;
     }
 
     /** Helper function for checkout to verify branch condition.
@@ -311,92 +605,132 @@ public class Repo {
             throw new GitletException("No need to "
                     + "checkout the current branch.");
         }
-        File verify = Utils.join(_branchPath, branch);
-        if (!verify.exists()) {
+        if (!Refs.local().exists(branch)) {
             throw new GitletException("No such branch exists.");
         }
     }
     /** Helper function for checkout to overwrite blob to CWD files.
-     * @param blob is a blob map
+     * The blob is streamed, so files of any size round trip exactly.
+     * @param hash is the blob hash
      * @param fname is file
      * */
-    private void blobToCWD(HashMap<String, String> blob, String fname) {
-        Blob target = findBlobByUid(blob.get(fname));
-        Utils.writeContents(Utils.join(".", fname),
-                target.getContent());
+    private void blobToCWD(String hash, String fname) {
+        ObjectStore.local().copyTo("blobs", hash, RepoRoot.file(fname));
     }
 
     /** Reconstruct UID for for commit in case of abbreviation.
      * @param shortuid abbrev id
      * @return constructed uid*/
     private String reconstructUID(String shortuid) {
-        int len = shortuid.length();
-        List<String> allCommits = Utils.plainFilenamesIn(_commitPath);
-        assert allCommits != null;
-        for (String i : allCommits) {
-            if (i.substring(0, len).equals(shortuid)) {
-                return i;
-            }
-        }
-        throw new GitletException("No commit with that id exists.");
+        return CommitIndex.local().resolve(shortuid);
     }
 
     /** Check if the file is tracked by verifying whether the
      *  filename exist in given commit's blobMap.
      *  @param commit a commit
-     *  @param fname file name */
-    private void checkFnameExist(Commit commit,
-                                 String fname) {
-        if (!commit.blobsMap().containsKey(fname)) {
+     *  @param fname file name
+     *  @return the blob hash of FNAME in COMMIT */
+    private String checkFnameExist(Commit commit,
+                                   String fname) {
+        String hash = commit.blobHash(fname);
+        if (hash == null) {
             throw new GitletException("File does not exist in that commit.");
         }
+        return hash;
     }
-    /** Helper function that maps UID to Blob object.
+    /** Helper function that maps UID to Blob object. Reads loose and
+     *  packed blobs alike.
      * @param fname is file
      * @return the corresponding blob
      * */
     public static Blob findBlobByUid(String fname) {
-        assert Utils.join(_blobPath, fname).exists();
-        return Utils.readObject(Utils.join(_blobPath, fname), Blob.class);
+        ObjectCache cache = ObjectCache.shared();
+        Blob cached = (Blob) cache.get("blobs", fname);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] stored = ObjectStore.local().read("blobs", fname);
+        assert stored != null;
+        Blob result = Blob.decode(fname, stored);
+        cache.put("blobs", fname, result, stored.length);
+        return result;
     }
 
-    /** createLog is a helper method to format the log.
-     * @param commits a commit
-     * @param isGlobal whether global or not
+    /** Gitlet command pack-refs. Moves every loose branch into
+     *  packed-refs. */
+    public void packRefs() {
+        int packed = Refs.local().pack();
+        System.out.println("Packed " + packed + " refs.");
+    }
+
+    /** Gitlet command repack. Moves every object into a single
+     *  delta-compressed packfile. */
+    public void repack() {
+        int packed = ObjectStore.local().repack();
+        System.out.println("Packed " + packed + " objects.");
+    }
+
+    /** Gitlet command gc. Deletes the objects no branch or staged file
+     *  leads to, once past their grace period, and repacks the rest. */
+    public void gc() {
+        Refs refs = Refs.local();
+        List<String> heads = new ArrayList<>();
+        for (String name : refs.list()) {
+            heads.add(refs.read(name));
+        }
+        GarbageCollector gc = new GarbageCollector(ObjectStore.local());
+        gc.collect(heads, getStage().getStage("add").values());
+        System.out.println("Removed " + gc.removed()
+                + " unreachable objects.");
+        System.out.println("Packed " + gc.packed() + " objects.");
+        System.out.println("Reclaimed " + gc.reclaimed() + " bytes.");
+    }
+
+    /** createLog is a helper method to format the log. Commits are
+     *  read one at a time as they are printed, past the object cache,
+     *  which a long log would only flush; the global log goes one object
+     *  shard at a time. Entries are collected into LOG_BUFFER-sized
+     *  writes.
+     * @param commits the commits of the log, or null for every commit
      * */
-    private void createLog(List<String> commits, boolean isGlobal) {
-        if (isGlobal) {
-            for (String i : commits) {
-                Commit curr = Utils.readObject(
-                                Utils.join(_commitPath, i), Commit.class);
-                System.out.println(formatLogItem(curr));
-            }
+    private static void createLog(Iterator<Commit> commits) {
+        StringBuilder out = new StringBuilder(LOG_BUFFER);
+        if (commits == null) {
+            ObjectStore store = ObjectStore.local();
+            store.forEach("commits", uid -> logItem(Commit.decode(uid,
+                    store.read("commits", uid)), out));
         } else {
-            Commit curr = _CTree.getHEAD();
-            while (curr.getParent() != null) {
-                System.out.println(formatLogItem(curr));
-                curr = Utils.uidToCommit(curr.getParent());
+            while (commits.hasNext()) {
+                logItem(commits.next(), out);
             }
-            System.out.println(formatLogItem(curr));
         }
+        System.out.print(out);
     }
+
+    /** Add the log entry of CURR to OUT, and print OUT once it is full.
+     *  @param curr a commit
+     *  @param out pending output */
+    private static void logItem(Commit curr, StringBuilder out) {
+        formatLogItem(curr, out);
+        out.append(System.lineSeparator());
+        if (out.length() >= LOG_BUFFER) {
+            System.out.print(out);
+            out.setLength(0);
+        }
+    }
+
     /** Individual Log Item format helper.
      *  @param curr is current commit
-     *  @return a new log item */
-    String formatLogItem(Commit curr) {
-        String result;
-        if (curr.getMergeParent() == null) {
-            result =  "===\n" + "commit " + curr.getHash() + "\n"
-                    + "Date: " + curr.formatTime() + "\n"
-                    + curr.getMessage() + "\n";
-        } else {
-            result = "===\n" + "commit " + curr.getHash() + "\n"
-                    + "Merge: " + curr.getParent().substring(0, 7)
-                    + " " + curr.getMergeParent().substring(0, 7) + "\n"
-                    + "Date: " + curr.formatTime() + "\n"
-                    + curr.getMessage() + "\n";
+     *  @param out receives the log item */
+    static void formatLogItem(Commit curr, StringBuilder out) {
+        out.append("===\ncommit ").append(curr.getHash()).append('\n');
+        if (curr.getMergeParent() != null) {
+            out.append("Merge: ").append(curr.getParent(), 0, 7)
+                    .append(' ').append(curr.getMergeParent(), 0, 7)
+                    .append('\n');
         }
-        return result;
+        out.append("Date: ").append(curr.formatTime()).append('\n')
+                .append(curr.getMessage()).append('\n');
     }
 
     /** Helper function that removes the file from corresponding stage if
@@ -421,15 +755,47 @@ public class Repo {
         if (isInitial) {
             return new Repo(new CommitTree(), new Stage());
         } else {
-            File cTreePath = new File("." + S
-                    + ".gitlet" + S + "objects" + S + "CTree");
-            File stagePath = new File("." + S
-                    + ".gitlet" + S + "stage");
-            return new Repo(Utils.readObject(cTreePath, CommitTree.class),
-                            Utils.readObject(stagePath, Stage.class));
+            if (!Migration.isCurrent()) {
+                throw new GitletException("This repository uses an old "
+                        + "format. Run `gitlet migrate` first.");
+            }
+            if (_warm != null && _warmStamp.equals(stamp())) {
+                _warm._CTree.forgetHead();
+                return _warm;
+            }
+            _warm = null;
+            return new Repo(Utils.readObject(CommitTree.path(),
+                                             CommitTree.class),
+                            Stage.read(Stage.indexPath()));
         }
     }
 
+    /** Keep REPO for the next getRepo() for as long as its files are not
+     *  touched by anyone else. Only the daemon, which runs many commands
+     *  in one process, does this.
+     *  @param repo the repo, or null to forget it */
+    static void keepWarm(Repo repo) {
+        _warm = repo;
+        _warmStamp = (repo == null) ? null : stamp();
+    }
+
+    /** Describe the files a Repo is read from, so that a change made by
+     *  another process, or a switch to another root, can be seen.
+     *  @return root, and size and modification time of CTree and index */
+    private static String stamp() {
+        StringBuilder result = new StringBuilder();
+        result.append(RepoRoot.dir().getAbsolutePath()).append(" ");
+        for (File f : new File[] {CommitTree.path(), Stage.indexPath()}) {
+            try {
+                result.append(Files.getLastModifiedTime(f.toPath()))
+                        .append(" ").append(f.length()).append(" ");
+            } catch (IOException e) {
+                result.append("- ");
+            }
+        }
+        return result.toString();
+    }
+
     /** Getter Method for Commit Tree.
      * @return CommitTree*/
     public CommitTree getCTree() {
@@ -444,22 +810,20 @@ public class Repo {
     private CommitTree _CTree;
     /** Instance var for Stage. */
     private Stage _stage;
+    /** Repo kept between the commands of the daemon, or null. */
+    private static Repo _warm;
+    /** stamp() of the files of _warm when it was kept. */
+    private static String _warmStamp;
     /** File separator. */
     private static final String S = File.separator;
-    /** Path File to branches. */
-    private static File _branchPath
-            = new File("." + S
-            + ".gitlet" + S + "refs" + S + "branches");
-    /** Path File to blobs. */
-    private static File _blobPath
-            = new File("." + S
-            + ".gitlet" + S + "objects" + S + "blobs");
-    /** Path File to commits. */
-    private static File _commitPath
-            = new File("." + S
-            + ".gitlet" + S + "objects" + S + "commits");
-    /** Path File to remote. */
-    private static File _remotePath
-            = new File("." + S
-            + ".gitlet" + S + "refs" + S + "remotes");
+    /** Characters of log output collected before each write. */
+    private static final int LOG_BUFFER = 1 << 16;
+    /** Unchanged lines shown around each change by diff. */
+    private static final int DIFF_CONTEXT = 3;
+
+    /** Path File to remote.
+     *  @return the remotes directory of RepoRoot */
+    private static File remotePath() {
+        return RepoRoot.gitlet("refs", "remotes");
+    }
 }
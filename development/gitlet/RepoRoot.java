@@ -0,0 +1,132 @@
+package gitlet;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/** RepoRoot class for Gitlet, the tiny stupid version-control system.
+ *  The working directory commands act on, and so the .gitlet directory
+ *  they read and write. It is CWD for the command line. GitletRepository
+ *  points it at the repo it was opened on for the length of each call,
+ *  which is how one process can serve many repos. Every path to a file
+ *  of the repo is built from here. While the root is CWD, paths come
+ *  out exactly as they always did, "./.gitlet/..." and bare file names.
+ *  The per-repo objects behind the local() getters are kept here too,
+ *  by .gitlet directory, so switching roots does not reload them.
+ *  @author Kevin Li
+ */
+class RepoRoot {
+
+    /** Not meant to be instantiated. */
+    private RepoRoot() { }
+
+    /** Getter for the working directory.
+     *  @return the root */
+    static File dir() {
+        return _dir;
+    }
+
+    /** Getter for the .gitlet directory of the root.
+     *  @return the .gitlet directory */
+    static File gitlet() {
+        return _gitlet;
+    }
+
+    /** A file under the .gitlet directory.
+     *  @param path path components under .gitlet
+     *  @return the file */
+    static File gitlet(String... path) {
+        return Utils.join(_gitlet, path);
+    }
+
+    /** A working file.
+     *  @param fname file name, relative to the root
+     *  @return the file */
+    static File file(String fname) {
+        return resolve(new File(fname));
+    }
+
+    /** Resolve PATH against the root, unless it is absolute.
+     *  @param path a path stored in the repo or given by the user
+     *  @return the path to use */
+    static File resolve(File path) {
+        if (path.isAbsolute() || _dir.getPath().equals(".")) {
+            return path;
+        }
+        return new File(_dir, path.getPath());
+    }
+
+    /** Make DIR the root.
+     *  @param dir a working directory */
+    static void set(File dir) {
+        _dir = dir;
+        _gitlet = new File(dir, ".gitlet");
+    }
+
+    /** The instance of KIND for the repo at the root, made by MAKE from
+     *  the .gitlet directory the first time and again whenever FRESH
+     *  rejects the one kept. Only the last MAX_REPOS repos used keep
+     *  theirs.
+     *  @param kind class of the instance
+     *  @param make constructor taking a .gitlet directory
+     *  @param fresh test for a kept instance still being current
+     *  @param <T> type of the instance
+     *  @return the instance */
+    static <T> T local(Class<T> kind, Function<File, T> make,
+                       Predicate<T> fresh) {
+        return local(_gitlet, kind, make, fresh);
+    }
+
+    /** The instance of KIND kept for the repo whose .gitlet directory is
+     *  GITLET, as local() keeps them for the root.
+     *  @param gitlet a .gitlet directory
+     *  @param kind class of the instance
+     *  @param make constructor taking a .gitlet directory
+     *  @param fresh test for a kept instance still being current
+     *  @param <T> type of the instance
+     *  @return the instance */
+    static synchronized <T> T local(File gitlet, Class<T> kind,
+                                    Function<File, T> make,
+                                    Predicate<T> fresh) {
+        HashMap<Class<?>, Object> repo = _locals.computeIfAbsent(
+                gitlet.getAbsoluteFile(), k -> new HashMap<>());
+        T found = kind.cast(repo.get(kind));
+        if (found == null || !fresh.test(found)) {
+            found = make.apply(gitlet);
+            repo.put(kind, found);
+        }
+        return found;
+    }
+
+    /** The instance of KIND for the repo at the root, made by MAKE from
+     *  the .gitlet directory the first time.
+     *  @param kind class of the instance
+     *  @param make constructor taking a .gitlet directory
+     *  @param <T> type of the instance
+     *  @return the instance */
+    static <T> T local(Class<T> kind, Function<File, T> make) {
+        return local(kind, make, x -> true);
+    }
+
+    /** Number of repos whose instances are kept. */
+    private static final int MAX_REPOS = 16;
+    /** Per-repo instances by absolute .gitlet directory and class, least
+     *  recently used first. */
+    private static final LinkedHashMap<File, HashMap<Class<?>, Object>>
+        _locals = new LinkedHashMap<>(MAX_REPOS, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<File, HashMap<Class<?>, Object>> eldest) {
+                return size() > MAX_REPOS;
+            }
+        };
+    /** The root. */
+    private static File _dir = new File(".");
+    /** Its .gitlet directory. */
+    private static File _gitlet = new File(_dir, ".gitlet");
+}
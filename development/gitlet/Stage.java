@@ -1,9 +1,29 @@
 package gitlet;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 /** Stage class for Gitlet, the tiny stupid version-control system.
+ *  The stage lives in the index file, .gitlet/index, stored with Codec.
+ *  Besides one "add|remove [hash] [name]" line per staged file ("-"
+ *  when there is no hash), the index caches, for every working file
+ *  gitlet has hashed, a "stat [hash] [size] [mtime] [inode] [name]" line.
+ *  As long as a file's size, mtime and inode match its cached line, its
+ *  hash is taken from the index instead of reading the file again.
+ *  It stays Serializable only so that `gitlet migrate` can read stages
+ *  written by older versions.
  *  @author Kevin Li
  */
 public class Stage implements Serializable {
@@ -14,6 +34,292 @@ public class Stage implements Serializable {
         writeStage();
     }
 
+    /** Constructor for a stage read back from disk.
+     *  @param add addition stage
+     *  @param remove removal stage */
+    private Stage(HashMap<String, String> add, HashMap<String, String> remove) {
+        _addStage = add;
+        _removeStage = remove;
+    }
+
+    /** Read the index stored in FILE.
+     *  @param file index file
+     *  @return the stage */
+    static Stage read(File file) {
+        return read(file, KIND);
+    }
+
+    /** Read a stage of kind KIND stored in FILE. Stages written before
+     *  the index existed have kind "stage" and no stat lines.
+     *  @param file stage file
+     *  @param kind Codec kind of the file
+     *  @return the stage */
+    static Stage read(File file, String kind) {
+        String body = new String(Codec.unframe(kind, Codec.readFile(file)),
+                StandardCharsets.UTF_8);
+        HashMap<String, String> add = new HashMap<>();
+        HashMap<String, String> remove = new HashMap<>();
+        Stage result = new Stage(add, remove);
+        result._indexTime = file.lastModified() * NANOS_PER_MILLI;
+        for (String line : body.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            } else if (line.startsWith("stat ")) {
+                String[] parts = line.split(" ", 6);
+                result.cache().put(parts[5], new Stat(parts[1],
+                        Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                        Long.parseLong(parts[4])));
+                continue;
+            }
+            String[] parts = line.split(" ", 3);
+            String hash = parts[1].equals("-") ? null : parts[1];
+            (parts[0].equals("add") ? add : remove).put(parts[2], hash);
+        }
+        return result;
+    }
+
+    /** Encode this stage in the gitlet object format.
+     *  @return framed bytes */
+    byte[] encode() {
+        StringBuilder body = new StringBuilder();
+        encodeStage(body, "add", _addStage);
+        encodeStage(body, "remove", _removeStage);
+        TreeMap<String, Stat> sorted = new TreeMap<>(cache());
+        for (Map.Entry<String, Stat> e : sorted.entrySet()) {
+            Stat st = e.getValue();
+            body.append("stat ").append(st._hash).append(" ")
+                    .append(st._size).append(" ").append(st._mtime)
+                    .append(" ").append(st._ino).append(" ")
+                    .append(e.getKey()).append("\n");
+        }
+        return Codec.frame(KIND, body.toString()
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Append one line per entry of STAGE to BODY.
+     *  @param body output
+     *  @param id either "add" or "remove"
+     *  @param stage the entries */
+    private static void encodeStage(StringBuilder body, String id,
+                                    HashMap<String, String> stage) {
+        TreeMap<String, String> sorted = new TreeMap<>(stage);
+        for (String fname : sorted.keySet()) {
+            String hash = sorted.get(fname);
+            body.append(id).append(" ").append(hash == null ? "-" : hash)
+                    .append(" ").append(fname).append("\n");
+        }
+    }
+
+    /** Hash of the working file FNAME, from the stat cache when its stat
+     *  data is unchanged, otherwise by streaming the file (and caching the
+     *  result).
+     *  @param fname working file name
+     *  @return the blob hash the file would get, or null if it is missing */
+    String workingHash(String fname) {
+        String cached = cachedHash(fname);
+        if (cached != null) {
+            return cached;
+        }
+        File f = RepoRoot.file(fname);
+        if (!f.isFile()) {
+            return null;
+        }
+        String hash = ObjectStore.hashFile(Blob.KIND, f);
+        record(fname, hash);
+        return hash;
+    }
+
+    /** Hash of the working file FNAME if the stat cache can vouch for it.
+     *  Entries whose mtime is not older than the index itself are not
+     *  trusted, since the file may have changed again within the same
+     *  clock tick.
+     *  @param fname working file name
+     *  @return the cached hash, or null if the file must be read */
+    String cachedHash(String fname) {
+        Stat cached = cache().get(fname);
+        if (cached == null) {
+            return null;
+        }
+        Stat now = stat(fname, cached._hash);
+        if (now == null) {
+            forget(fname);
+            return null;
+        }
+        if (!sameStat(cached, now)) {
+            return null;
+        }
+        if (now._mtime >= _indexTime) {
+            _dirty = true;
+            return null;
+        }
+        return cached._hash;
+    }
+
+    /** Hashes of the working files FNAMES, as workingHash() gives them.
+     *  The stat calls and the hashing of changed files run on
+     *  ParallelScan's pool; the stat cache is only read while they run
+     *  and takes the new hashes once they are all done, when the entries
+     *  of missing files are dropped as well.
+     *  @param fnames working file names
+     *  @return map from each existing file to its hash, which is null if
+     *          the file is not a regular file */
+    HashMap<String, String> workingHashes(Collection<String> fnames) {
+        return workingHashes(fnames, null);
+    }
+
+    /** Hashes of the working files FNAMES, as workingHashes() gives
+     *  them, except that the files that have to be read are stored as
+     *  blobs in STORE while they are hashed, unless STORE is null, so
+     *  `add` reads each new file once.
+     *  @param fnames working file names
+     *  @param store object store for the files read, or null
+     *  @return map from each existing file to its hash, which is null if
+     *          the file is not a regular file */
+    HashMap<String, String> workingHashes(Collection<String> fnames,
+                                          ObjectStore store) {
+        String[] names = fnames.toArray(new String[0]);
+        Stat[] found = new Stat[names.length];
+        boolean[] exists = new boolean[names.length];
+        boolean[] hashed = new boolean[names.length];
+        HashMap<String, Stat> cache = cache();
+        ParallelScan.forEach(names.length, i -> {
+            Stat cached = cache.get(names[i]);
+            Stat now = stat(names[i], null);
+            exists[i] = now != null;
+            if (sameStat(cached, now) && now._mtime < _indexTime) {
+                found[i] = cached;
+            } else if (exists[i] && RepoRoot.file(names[i]).isFile()) {
+                File f = RepoRoot.file(names[i]);
+                String hash = (store == null)
+                        ? ObjectStore.hashFile(Blob.KIND, f)
+                        : store.writeFile("blobs", Blob.KIND, f);
+                found[i] = new Stat(hash, now._size, now._mtime, now._ino);
+                hashed[i] = true;
+            }
+        });
+        HashMap<String, String> result = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            if (hashed[i]) {
+                cache.put(names[i], found[i]);
+                _dirty = true;
+            } else if (!exists[i]) {
+                forget(names[i]);
+            }
+            if (exists[i]) {
+                result.put(names[i], (found[i] == null) ? null
+                        : found[i]._hash);
+            }
+        }
+        return result;
+    }
+
+    /** Remember that the working file FNAME, as it is now, hashes to HASH.
+     *  @param fname working file name
+     *  @param hash its blob hash */
+    void record(String fname, String hash) {
+        Stat now = stat(fname, hash);
+        if (now != null) {
+            cache().put(fname, now);
+            _dirty = true;
+        }
+    }
+
+    /** Drop the stat cache entry of FNAME, which is gone or no longer
+     *  tracked, so the index does not keep it forever.
+     *  @param fname working file name */
+    void forget(String fname) {
+        if (cache().remove(fname) != null) {
+            _dirty = true;
+        }
+    }
+
+    /** Replace the blob hashes found in IDS by their new value. Only
+     *  meant for `gitlet migrate`.
+     *  @param ids map from old to new blob hash */
+    void remapBlobs(Map<String, String> ids) {
+        for (HashMap<String, String> stage
+                 : List.of(_addStage, _removeStage)) {
+            for (Map.Entry<String, String> e : stage.entrySet()) {
+                if (e.getValue() != null) {
+                    e.setValue(ids.getOrDefault(e.getValue(), e.getValue()));
+                }
+            }
+        }
+    }
+
+    /** Write the index if the stat cache changed since it was read. */
+    void writeIfDirty() {
+        if (_dirty) {
+            writeStage();
+        }
+    }
+
+    /** Current stat data of FNAME.
+     *  @param fname working file name
+     *  @param hash hash to attach
+     *  @return stat, or null if the file is missing */
+    private static Stat stat(String fname, String hash) {
+        Path path = RepoRoot.file(fname).toPath();
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(path,
+                    BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            long ino;
+            try {
+                ino = ((Number) Files.getAttribute(path, "unix:ino",
+                        LinkOption.NOFOLLOW_LINKS)).longValue();
+            } catch (UnsupportedOperationException
+                     | IllegalArgumentException e) {
+                Object key = attrs.fileKey();
+                ino = (key == null) ? 0 : key.hashCode();
+            }
+            return new Stat(hash, attrs.size(),
+                    attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS), ino);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Check that the stat data NOW of a file matches CACHED.
+     *  @param cached cached stat data, or null
+     *  @param now current stat data, or null
+     *  @return true if both exist and agree */
+    private static boolean sameStat(Stat cached, Stat now) {
+        return cached != null && now != null && now._size == cached._size
+                && now._mtime == cached._mtime && now._ino == cached._ino;
+    }
+
+    /** Getter for the stat cache, created on first use.
+     *  @return map from file name to stat data */
+    private HashMap<String, Stat> cache() {
+        if (_cache == null) {
+            _cache = new HashMap<>();
+        }
+        return _cache;
+    }
+
+    /** Cached stat data of one working file. */
+    private static class Stat {
+        /** Constructor.
+         *  @param hash blob hash of the content
+         *  @param size size in bytes
+         *  @param mtime modification time in nanoseconds
+         *  @param ino inode number */
+        Stat(String hash, long size, long mtime, long ino) {
+            _hash = hash;
+            _size = size;
+            _mtime = mtime;
+            _ino = ino;
+        }
+        /** Blob hash. */
+        private String _hash;
+        /** Size. */
+        private long _size;
+        /** Modification time. */
+        private long _mtime;
+        /** Inode. */
+        private long _ino;
+    }
+
     /** Get stage by keyword.
      *  @param s keyword either "add" or "remove".
      * @return a new hashmap for stage
@@ -53,7 +359,7 @@ public class Stage implements Serializable {
         } else {
             throw new GitletException("No such stage exist.");
         }
-        writeStage();
+        _dirty = true;
     }
 
     /** To remove item that was staged for removal, from  the removal stage.
@@ -67,16 +373,30 @@ public class Stage implements Serializable {
         } else {
             throw new GitletException("No such stage exist.");
         }
-        writeStage();
+        _dirty = true;
     }
 
     /** Write stage with an assumption that _stage is assigned
-     *  during init() already. Write a "serialized" stage
-     *  into addition and removal files.*/
+     *  during init() already. Write the index, stat cache included.
+     *  It goes to index.lock first and is renamed over the index, so
+     *  the index is never seen half written. Changes to the stage are
+     *  only kept in memory until this is called.*/
     public void writeStage() {
-        Utils.writeObject(_stagePath, this);
+        File index = indexPath();
+        File tmp = new File(index.getPath() + ".lock");
+        Codec.writeFile(tmp, encode());
+        try {
+            Files.move(tmp.toPath(), index.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e.getMessage());
+        }
+        _indexTime = index.lastModified() * NANOS_PER_MILLI;
+        _dirty = false;
     }
-    /** Reset / clear the stage after committing. */
+    /** Reset / clear the stage after committing. The stat cache is
+     *  kept, as it describes the working files, not the stage. */
     public void reset() {
         _addStage = new HashMap<>();
         _removeStage = new HashMap<>();
@@ -84,16 +404,29 @@ public class Stage implements Serializable {
     }
 
 
+    /** Object kind in the Codec header. */
+    static final String KIND = "index";
+    /** Version of this class in stages written before Codec. */
+    private static final long serialVersionUID = -5317909323392204653L;
     /** _addStage is a HashMap that maps filename (key) to blob-Hash (value)
      *  in order to record the files to be added. */
     private HashMap<String, String> _addStage;
     /** _removeStage has the same structure as _addStage, but for removal. */
     private HashMap<String, String> _removeStage;
-    /** File separator. */
-    private static final String SLASH = File.separator;
-    /** Stage Directory. Assume that the /stage file is created
-     *  already when init. */
-    private File _stagePath
-            = new File("." + SLASH + ".gitlet" + SLASH + "stage");
+    /** Stat cache by file name, null until used. */
+    private transient HashMap<String, Stat> _cache;
+    /** Modification time of the index when last read or written, in
+     *  nanoseconds. */
+    private transient long _indexTime;
+    /** True if the stat cache changed since the index was written. */
+    private transient boolean _dirty;
+    /** Nanoseconds in a millisecond. */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /** The index file.
+     *  @return the index of the repo at RepoRoot */
+    static File indexPath() {
+        return RepoRoot.gitlet("index");
+    }
 
 }
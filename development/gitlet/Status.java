@@ -1,7 +1,8 @@
 package gitlet;
 
-import java.io.File;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.Set;
 import java.util.List;
@@ -28,52 +29,38 @@ public class Status {
      *  */
     public void staticInfo(String indicator) {
         String result = "";
-        List<String> cwdFiles = new ArrayList<>();
         switch (indicator) {
         case "branches":
-            result = "=== Branches ===\n";
-            List<String> branches = Utils.plainFilenamesIn(
-                    new File("." + SLASH + ".gitlet"
-                            + SLASH + "refs" + SLASH + "branches"));
-            assert branches != null;
-            for (String s : branches) {
-                if (!_CTree.getCurrBranch().equals(s)) {
-                    result = result.concat(s + "\n");
-                } else {
-                    result = result.concat("*" + s + "\n");
+            StringBuilder all = new StringBuilder("=== Branches ===\n");
+            for (String s : branches()) {
+                if (_CTree.getCurrBranch().equals(s)) {
+                    all.append('*');
                 }
+                all.append(s).append('\n');
             }
+            result = all.toString();
             break;
         case "staged":
             result = "=== Staged Files ===\n";
-            result = result.concat(formatStage("add", _stage));
+            result = result.concat(formatList(staged()));
             break;
         case "removed":
             result = "=== Removed Files ===\n";
-            result = result.concat(formatStage("remove", _stage));
+            result = result.concat(formatList(removed()));
             break;
         case "modified":
             result = "=== Modifications Not Staged For Commit ===\n";
-            cwdFiles = Utils.plainFilenamesIn(new File("."));
-            TreeSet<String> buffer = traverseAdd(_stage.getStage("add"));
-            buffer.addAll(traverseTracked(_CTree.getHEAD().blobsMap()));
+            TreeSet<String> buffer = new TreeSet<>();
+            for (Map.Entry<String, String> e : modified().entrySet()) {
+                buffer.add(e.getKey() + " (" + e.getValue() + ")\n");
+            }
             for (String i : buffer) {
                 result = result.concat(i);
             }
             break;
         case "untracked":
             result = "=== Untracked Files ===\n";
-            cwdFiles = Utils.plainFilenamesIn(new File("."));
-            if (cwdFiles != null) {
-                for (String fname : cwdFiles) {
-                    boolean tracked
-                            = _CTree.getHEAD().blobsMap().containsKey(fname);
-                    String staged = _stage.contain(fname);
-                    if (!tracked && !staged.equals("add")) {
-                        result = result.concat(fname + "\n");
-                    }
-                }
-            }
+            result = result.concat(formatList(untracked()));
             break;
         default:
             throw new GitletException("Erroneous indicator.");
@@ -81,23 +68,83 @@ public class Status {
         System.out.println(result);
     }
 
+    /** Getter for the branches section.
+     *  @return every branch name, in order */
+    public List<String> branches() {
+        return Refs.local().list();
+    }
+
+    /** Getter for the staged section.
+     *  @return files staged for addition, in order */
+    public List<String> staged() {
+        return new ArrayList<>(new TreeSet<>(_stage.getStage("add").keySet()));
+    }
+
+    /** Getter for the removed section.
+     *  @return files staged for removal, in order */
+    public List<String> removed() {
+        return new ArrayList<>(
+                new TreeSet<>(_stage.getStage("remove").keySet()));
+    }
+
+    /** Getter for the modifications not staged for commit.
+     *  @return map from each such file to "modified" or "deleted" */
+    public TreeMap<String, String> modified() {
+        HashMap<String, String> head = _CTree.getHEAD().blobsMap();
+        scan(_stage.getStage("add"), head);
+        TreeMap<String, String> result = traverseAdd(_stage.getStage("add"));
+        result.putAll(traverseTracked(head));
+        return result;
+    }
+
+    /** Getter for the untracked section.
+     *  @return working files neither tracked nor staged, in order */
+    public List<String> untracked() {
+        List<String> result = new ArrayList<>();
+        List<String> cwdFiles = Utils.plainFilenamesIn(RepoRoot.dir());
+        if (cwdFiles != null) {
+            HashMap<String, String> headBlobs = _CTree.getHEAD().blobsMap();
+            for (String fname : cwdFiles) {
+                boolean tracked = headBlobs.containsKey(fname);
+                String staged = _stage.contain(fname);
+                if (!tracked && !staged.equals("add")) {
+                    result.add(fname);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Stat, and hash where needed, every working file whose content
+     *  the modified section looks at, all at once and in parallel.
+     *  @param addStage addStage
+     *  @param head is head Map */
+    private void scan(HashMap<String, String> addStage,
+                      HashMap<String, String> head) {
+        TreeSet<String> names = new TreeSet<>(addStage.keySet());
+        for (String fname : head.keySet()) {
+            if (_stage.contain(fname).equals("none")) {
+                names.add(fname);
+            }
+        }
+        _working = _stage.workingHashes(names);
+    }
+
     /** Helper function that traverses over `compare` and concat
      *  the files that are not staged for addition.
      *  @param addStage addStage
-     *  @return treeset add stage */
-    private TreeSet<String> traverseAdd(HashMap<String, String> addStage) {
+     *  @return changed files of the add stage */
+    private TreeMap<String, String> traverseAdd(
+            HashMap<String, String> addStage) {
         Set<String> key = addStage.keySet();
-        TreeSet<String> buffer =  new TreeSet<>();
+        TreeMap<String, String> buffer = new TreeMap<>();
         for (String fname : key) {
-            File f = new File(fname);
-            if (!f.exists() && !_stage.contain(fname).equals("remove")) {
-                buffer.add(fname + " (deleted)\n");
+            if (!_working.containsKey(fname)
+                    && !_stage.contain(fname).equals("remove")) {
+                buffer.put(fname, "deleted");
             } else {
-                String cwdVer = (!f.exists())
-                        ? "" : Utils.readContentsAsString(f);
-                Blob staged = findBlobByUid(addStage.get(fname));
-                if (!cwdVer.equals(staged.getContent())) {
-                    buffer.add(fname + " (modified)\n");
+                if (!addStage.get(fname).equals(workingHash(fname))) {
+                    buffer.put(fname, "modified");
                 }
             }
         }
@@ -106,48 +153,43 @@ public class Status {
 
     /** Traverse tracked.
      *  @param head is head Map
-     *  @return a TreeSet trackedfiles */
-    private TreeSet<String> traverseTracked(HashMap<String, String> head) {
+     *  @return changed tracked files */
+    private TreeMap<String, String> traverseTracked(
+            HashMap<String, String> head) {
         Set<String> trackedSet = head.keySet();
-        TreeSet<String> buffer = new TreeSet<>();
+        TreeMap<String, String> buffer = new TreeMap<>();
         for (String fname : trackedSet) {
-            File f = new File(fname);
-            if (!f.exists() && !_stage.contain(fname).equals("remove")) {
-                buffer.add(fname + " (deleted)\n");
+            if (!_working.containsKey(fname)
+                    && !_stage.contain(fname).equals("remove")) {
+                buffer.put(fname, "deleted");
             } else {
-                String cwdVer = (!f.exists())
-                        ? "" : Utils.readContentsAsString(f);
-                Blob tracked = findBlobByUid(head.get(fname));
                 boolean unstaged = _stage.contain(fname).equals("none");
-                if (!cwdVer.equals(tracked.getContent()) && unstaged) {
-                    buffer.add(fname + " (modified)\n");
+                if (unstaged && !head.get(fname).equals(workingHash(fname))) {
+                    buffer.put(fname, "modified");
                 }
             }
         }
         return buffer;
     }
 
-    /** Helper function that maps UID to Blob object.
-     * @param fname is file
-     * @return the corresponding blob
-     * */
-    private Blob findBlobByUid(String fname) {
-        assert Utils.join(_blobPath, fname).exists();
-        return Utils.readObject(Utils.join(_blobPath, fname), Blob.class);
+    /** Hash of a working file, as found by scan(). A missing file
+     *  hashes like an empty one, as it always has.
+     *  @param fname working file
+     *  @return blob hash */
+    private String workingHash(String fname) {
+        String hash = _working.get(fname);
+        return (hash == null) ? EMPTY_HASH : hash;
     }
 
-    /** Helper function to format stage in gitlet status. Helper function
-     *  used twice.
-     *  @param stage current stage
-     *  @param id identifier for what stage to retrieve
-     *  @return `stage` section string in a status call */
-    private static String formatStage(String id, Stage stage) {
-        String temp = "";
-        TreeSet<String> st = new TreeSet<>(stage.getStage(id).keySet());
-        for (String s : st) {
-            temp = temp.concat(s + "\n");
+    /** Helper function to format a list section in gitlet status.
+     *  @param names the files of the section
+     *  @return section string in a status call */
+    private static String formatList(List<String> names) {
+        StringBuilder temp = new StringBuilder();
+        for (String s : names) {
+            temp.append(s).append('\n');
         }
-        return temp;
+        return temp.toString();
     }
 
     /** Dummy data generated when a Status object is created. For debug use. */
@@ -157,9 +199,9 @@ public class Status {
     private CommitTree _CTree;
     /** Dummy data generated when a Status object is created. For debug use. */
     private Stage _stage;
-    /** File separator. */
-    private static final String SLASH = File.separator;
-    /** Path File to blobs. */
-    private File _blobPath = new File("." + SLASH
-            + ".gitlet" + SLASH + "objects" + SLASH + "blobs");
+    /** Hashes of the working files the modified section needs. */
+    private HashMap<String, String> _working;
+    /** Hash of an empty blob. */
+    private static final String EMPTY_HASH
+            = Utils.sha1(Codec.frame(Blob.KIND, new byte[0]));
 }
@@ -0,0 +1,180 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/** Transfer class for Gitlet, the tiny stupid version-control system.
+ *  Copies the history of a commit from one repo to another, sending only
+ *  what the receiving repo lacks. Every commit is written after its tree
+ *  and its parents, so a commit the receiver has comes with everything
+ *  it reaches: those are the "haves", and the walk from the head stops
+ *  at them. The commits it does reach are the "wants"; their trees are
+ *  copied without opening subtrees the receiver has, and they are then
+ *  written oldest first, each object once. When the sending repo has
+ *  PackBitmaps, the objects reachable from the head but not from the
+ *  haves the caller names are found by an and-not of bitmaps, and no
+ *  other packed object is even looked up in the receiving repo.
+ *  @author Kevin Li
+ */
+class Transfer {
+
+    /** A transfer from the store FROM to the store TO.
+     *  @param from store holding the history
+     *  @param to store receiving it */
+    Transfer(ObjectStore from, ObjectStore to) {
+        _from = from;
+        _to = to;
+    }
+
+    /** Copy HEAD and whatever of its history TO lacks.
+     *  @param head full commit hash
+     *  @param haves commits TO is known to have, such as the branch
+     *               heads it had last time; null entries are ignored
+     *  @return number of commits copied */
+    int copy(String head, String... haves) {
+        List<Commit> wants = wants(head);
+        if (wants.isEmpty()) {
+            return 0;
+        }
+        _bitmaps = PackBitmaps.of(_from);
+        if (_bitmaps != null) {
+            List<String> known = new ArrayList<>();
+            for (String have : haves) {
+                if (have != null && _from.contains("commits", have)
+                        && _to.contains("commits", have)) {
+                    known.add(have);
+                }
+            }
+            if (known.isEmpty()) {
+                _bitmaps = null;
+            } else {
+                _send = _bitmaps.reachable(List.of(head));
+                _send.andNot(_bitmaps.reachable(known));
+            }
+        }
+        CommitIndex ids = new CommitIndex(_to.gitletDir());
+        MessageIndex messages = MessageIndex.of(_to.gitletDir());
+        for (Commit commit : wants) {
+            if (commit.hasTree()) {
+                copyTree(commit.treeHash());
+            } else {
+                for (String hash : commit.blobsMap().values()) {
+                    if (!known(hash)) {
+                        _to.copyFrom(_from, "blobs", hash);
+                    }
+                }
+            }
+            _to.copyFrom(_from, "commits", commit.getHash());
+            ids.add(commit.getHash());
+            messages.add(commit.getHash(), commit.getMessage());
+        }
+        return wants.size();
+    }
+
+    /** The commits of the history of HEAD that TO lacks, each parent
+     *  before its children.
+     *  @param head full commit hash
+     *  @return the commits */
+    List<Commit> wants(String head) {
+        HashMap<String, Commit> missing = new HashMap<>();
+        ArrayDeque<String> queue = new ArrayDeque<>();
+        queue.add(head);
+        while (!queue.isEmpty()) {
+            String hash = queue.poll();
+            if (missing.containsKey(hash) || _to.contains("commits", hash)) {
+                continue;
+            }
+            Commit commit = read(hash);
+            missing.put(hash, commit);
+            for (String parent : parents(commit)) {
+                queue.add(parent);
+            }
+        }
+        List<Commit> result = new ArrayList<>(missing.size());
+        HashSet<String> done = new HashSet<>();
+        ArrayDeque<String> stack = new ArrayDeque<>();
+        if (missing.containsKey(head)) {
+            stack.push(head);
+        }
+        while (!stack.isEmpty()) {
+            String hash = stack.peek();
+            boolean ready = true;
+            for (String parent : parents(missing.get(hash))) {
+                if (missing.containsKey(parent) && !done.contains(parent)) {
+                    stack.push(parent);
+                    ready = false;
+                }
+            }
+            if (ready) {
+                stack.pop();
+                if (done.add(hash)) {
+                    result.add(missing.get(hash));
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Copy the tree HASH and what under it TO lacks, writing each
+     *  tree after its contents.
+     *  @param hash tree hash */
+    private void copyTree(String hash) {
+        if (known(hash) || _to.contains("trees", hash)) {
+            return;
+        }
+        for (Tree.Entry entry : Tree.read(_from, hash).entries().values()) {
+            if (entry.isTree()) {
+                copyTree(entry.hash());
+            } else if (!known(entry.hash())) {
+                _to.copyFrom(_from, "blobs", entry.hash());
+            }
+        }
+        _to.copyFrom(_from, "trees", hash);
+    }
+
+    /** Check whether the bitmaps show that TO has the object UID.
+     *  @param uid full hash
+     *  @return true if it is packed and reachable from a have */
+    private boolean known(String uid) {
+        return _bitmaps != null && _bitmaps.inPack(uid)
+                && !_bitmaps.has(_send, uid);
+    }
+
+    /** Decode commit HASH from FROM.
+     *  @param hash full commit hash
+     *  @return the commit */
+    private Commit read(String hash) {
+        byte[] framed = _from.read("commits", hash);
+        if (framed == null) {
+            throw new GitletException("Object " + hash + " not found.");
+        }
+        return Commit.decode(hash, framed);
+    }
+
+    /** The parents of COMMIT.
+     *  @param commit a commit
+     *  @return its first and merge parents that exist */
+    private static List<String> parents(Commit commit) {
+        List<String> result = new ArrayList<>(2);
+        if (commit.getParent() != null) {
+            result.add(commit.getParent());
+        }
+        if (commit.getMergeParent() != null) {
+            result.add(commit.getMergeParent());
+        }
+        return result;
+    }
+
+    /** Store holding the history. */
+    private ObjectStore _from;
+    /** Store receiving it. */
+    private ObjectStore _to;
+    /** Bitmaps of FROM, or null. */
+    private PackBitmaps _bitmaps;
+    /** Packed objects to send, when there are bitmaps. */
+    private BitSet _send;
+}
@@ -0,0 +1,211 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** Tests of Transfer for Gitlet, the tiny stupid version-control system.
+ *  Each test makes a sending repo with one commit of two files, and a
+ *  receiving repo that already has it, as after a first fetch or push.
+ *  The loose files of the receiving store are noted before each
+ *  transfer under test, so the objects it wrote can be told apart.
+ *  @author Kevin Li
+ */
+public class TransferTest {
+
+    /** Write CONTENTS to the working file FNAME of the sending repo.
+     *  @param fname file name
+     *  @param contents its contents */
+    private void write(String fname, String contents) throws IOException {
+        Files.writeString(new File(_fromDir, fname).toPath(), contents);
+    }
+
+    /** Make both repos and copy the first commit over. */
+    @Before
+    public void setUp() throws IOException {
+        _fromDir = Files.createTempDirectory("gitlet").toFile();
+        _toDir = Files.createTempDirectory("gitlet").toFile();
+        _from = GitletRepository.init(_fromDir);
+        write("wug.txt", "a wug\n");
+        write("notwug.txt", "not a wug\n");
+        _from.add("wug.txt", "notwug.txt");
+        _base = _from.commit("two files");
+        GitletRepository.init(_toDir);
+        assertEquals(1, transfer().copy(_base));
+    }
+
+    /** Delete both repos. */
+    @After
+    public void tearDown() throws IOException {
+        for (File dir : new File[] {_fromDir, _toDir}) {
+            try (Stream<Path> files = Files.walk(dir.toPath())) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile)
+                        .forEach(File::delete);
+            }
+        }
+    }
+
+    /** The object store of the repo in DIR.
+     *  @param dir working directory of a repo
+     *  @return its store */
+    private static ObjectStore store(File dir) {
+        return new ObjectStore(new File(dir, ".gitlet"));
+    }
+
+    /** A transfer from the sending repo to the receiving one.
+     *  @return the transfer */
+    private Transfer transfer() {
+        return new Transfer(store(_fromDir), store(_toDir));
+    }
+
+    /** Every object of the repo in DIR.
+     *  @param dir working directory of a repo
+     *  @return "TYPE/UID" of each object */
+    private static Set<String> objects(File dir) {
+        ObjectStore store = store(dir);
+        Set<String> result = new HashSet<>();
+        for (String type : ObjectStore.TYPES) {
+            for (String uid : store.list(type)) {
+                result.add(type + "/" + uid);
+            }
+        }
+        return result;
+    }
+
+    /** Identity of each loose object of the receiving store.
+     *  @return file key by "TYPE/UID" */
+    private Map<String, Object> looseKeys() throws IOException {
+        ObjectStore store = store(_toDir);
+        Map<String, Object> result = new HashMap<>();
+        for (String type : ObjectStore.TYPES) {
+            for (String uid : store.listLoose(type)) {
+                result.put(type + "/" + uid, Files.readAttributes(
+                        store.looseFile(type, uid).toPath(),
+                        BasicFileAttributes.class).fileKey());
+            }
+        }
+        return result;
+    }
+
+    /** Remember the loose objects of the receiving store. */
+    private void mark() throws IOException {
+        _marked = looseKeys();
+    }
+
+    /** The loose objects of the receiving store written since mark(),
+     *  new or replaced. An object found present is only freshened, in
+     *  place, and does not count.
+     *  @return "TYPE/UID" of each object */
+    private Set<String> written() throws IOException {
+        Set<String> result = new HashSet<>();
+        for (Map.Entry<String, Object> e : looseKeys().entrySet()) {
+            if (!e.getValue().equals(_marked.get(e.getKey()))) {
+                result.add(e.getKey());
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void knownHistoryCopiesNothing() throws IOException {
+        mark();
+        assertEquals(0, transfer().copy(_base, _base));
+        assertEquals(0, transfer().copy(_base));
+        assertTrue(written().isEmpty());
+        store(_fromDir).repack();
+        assertEquals(0, transfer().copy(_base, _base));
+        assertTrue(written().isEmpty());
+    }
+
+    /** Commit a change to one file in the sending repo and copy it with
+     *  the first commit as the have, after packing the sending repo if
+     *  PACKED, checking that only the objects of the new commit go. */
+    private void copyOneNewCommit(boolean packed) throws IOException {
+        Set<String> before = objects(_fromDir);
+        write("wug.txt", "a changed wug\n");
+        _from.add("wug.txt");
+        String head = _from.commit("changed wug");
+        Set<String> expected = objects(_fromDir);
+        expected.removeAll(before);
+        assertTrue(expected.contains("commits/" + head));
+        if (packed) {
+            store(_fromDir).repack();
+            assertNotNull(PackBitmaps.of(store(_fromDir)));
+        }
+        mark();
+        assertEquals(1, transfer().copy(head, _base));
+        assertEquals(expected, written());
+        assertEquals(objects(_fromDir), objects(_toDir));
+    }
+
+    @Test
+    public void onlyNewObjectsAreCopied() throws IOException {
+        copyOneNewCommit(false);
+    }
+
+    @Test
+    public void onlyNewObjectsAreCopiedWithBitmaps() throws IOException {
+        copyOneNewCommit(true);
+    }
+
+    @Test
+    public void mergedHistoryIsCopiedOnce() throws IOException {
+        _from.branch("other");
+        write("wug.txt", "a changed wug\n");
+        _from.add("wug.txt");
+        String ours = _from.commit("changed wug");
+        _from.checkout("other");
+        write("k.txt", "only on other\n");
+        _from.add("k.txt");
+        String theirs = _from.commit("added k");
+        _from.checkout("master");
+        _from.merge("other");
+        String merged = _from.head();
+
+        List<String> order = new ArrayList<>();
+        for (Commit commit : transfer().wants(merged)) {
+            order.add(commit.getHash());
+        }
+        assertEquals(3, order.size());
+        assertEquals(Set.of(ours, theirs, merged), new HashSet<>(order));
+        assertEquals(merged, order.get(2));
+
+        mark();
+        assertEquals(3, transfer().copy(merged, _base));
+        Set<String> expected = objects(_fromDir);
+        expected.removeAll(objects(_toDir));
+        assertTrue(expected.isEmpty());
+        assertEquals(3, written().stream()
+                .filter(o -> o.startsWith("commits/")).count());
+        assertEquals(0, transfer().copy(merged, _base));
+        assertEquals(List.of(merged),
+                MessageIndex.of(new File(_toDir, ".gitlet"))
+                        .exact("Merged other into master."));
+    }
+
+    /** Working directory of the sending repo. */
+    private File _fromDir;
+    /** Working directory of the receiving repo. */
+    private File _toDir;
+    /** The sending repo. */
+    private GitletRepository _from;
+    /** Its first commit, which the receiving repo has. */
+    private String _base;
+    /** Loose objects of the receiving repo at the last mark(). */
+    private Map<String, Object> _marked;
+}
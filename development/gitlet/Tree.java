@@ -0,0 +1,263 @@
+package gitlet;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Tree class for Gitlet, the tiny stupid version-control system.
+ *  A tree lists one directory: a "blob [hash] [name]" or "tree [hash]
+ *  [name]" line per entry, sorted by name, stored with Codec under
+ *  objects/trees. A commit only points at its root tree, and a new commit
+ *  only writes the trees on the paths that changed; every other subtree
+ *  is shared with the parent by hash. Two subtrees with the same hash are
+ *  identical, so diffs never need to look inside them.
+ *  @author Kevin Li
+ */
+class Tree {
+
+    /** An empty tree. */
+    private Tree() {
+        _entries = new TreeMap<>();
+    }
+
+    /** Read the tree stored under HASH in STORE.
+     *  @param store object store
+     *  @param hash tree hash, or null for the empty tree
+     *  @return the tree */
+    static Tree read(ObjectStore store, String hash) {
+        Tree result = new Tree();
+        if (hash == null) {
+            return result;
+        }
+        byte[] framed = store.read("trees", hash);
+        if (framed == null) {
+            throw new GitletException("Tree " + hash + " not found.");
+        }
+        String body = new String(Codec.unframe(KIND, framed),
+                StandardCharsets.UTF_8);
+        for (String line : body.split("\n")) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split(" ", 3);
+            result._entries.put(parts[2],
+                    new Entry(parts[0].equals(KIND), parts[1]));
+        }
+        return result;
+    }
+
+    /** Encode this tree in the gitlet object format.
+     *  @return framed bytes */
+    byte[] encode() {
+        StringBuilder body = new StringBuilder();
+        for (Map.Entry<String, Entry> e : _entries.entrySet()) {
+            body.append(e.getValue()._isTree ? KIND : Blob.KIND).append(" ")
+                    .append(e.getValue()._hash).append(" ")
+                    .append(e.getKey()).append("\n");
+        }
+        return Codec.frame(KIND, body.toString()
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Write this tree to the local store.
+     *  @return its hash */
+    private String write() {
+        byte[] framed = encode();
+        String hash = Utils.sha1(framed);
+        ObjectStore.local().write("trees", hash, framed);
+        return hash;
+    }
+
+    /** Getter for the entries of this tree.
+     *  @return map from name to entry */
+    Map<String, Entry> entries() {
+        return _entries;
+    }
+
+    /** Build the trees of a flat map of files.
+     *  @param files map from path to blob hash
+     *  @return hash of the root tree */
+    static String fromMap(Map<String, String> files) {
+        return apply(null, files, new HashSet<>());
+    }
+
+    /** Apply staged changes to the tree ROOT, writing only the trees on
+     *  the paths that change.
+     *  @param root hash of the tree to start from, or null if empty
+     *  @param add map from path to the blob hash it should have
+     *  @param remove paths to drop
+     *  @return hash of the new root tree, never null */
+    static String apply(String root, Map<String, String> add,
+                        Collection<String> remove) {
+        String result = applyIn(root, add, remove);
+        return (result == null) ? new Tree().write() : result;
+    }
+
+    /** Recursive part of apply().
+     *  @param root hash of the tree to start from, or null if empty
+     *  @param add changes relative to this tree
+     *  @param remove removals relative to this tree
+     *  @return hash of the new tree, or null if it ended up empty */
+    private static String applyIn(String root, Map<String, String> add,
+                                  Collection<String> remove) {
+        if (root != null && add.isEmpty() && remove.isEmpty()) {
+            return root;
+        }
+        Tree tree = read(ObjectStore.local(), root);
+        TreeMap<String, Map<String, String>> subAdd = new TreeMap<>();
+        TreeMap<String, Set<String>> subRemove = new TreeMap<>();
+        for (Map.Entry<String, String> e : add.entrySet()) {
+            String path = e.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                tree._entries.put(path, new Entry(false, e.getValue()));
+            } else {
+                subAdd.computeIfAbsent(path.substring(0, slash),
+                        k -> new HashMap<>())
+                        .put(path.substring(slash + 1), e.getValue());
+            }
+        }
+        for (String path : remove) {
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                Entry old = tree._entries.get(path);
+                if (old != null && !old._isTree) {
+                    tree._entries.remove(path);
+                }
+            } else {
+                subRemove.computeIfAbsent(path.substring(0, slash),
+                        k -> new HashSet<>()).add(path.substring(slash + 1));
+            }
+        }
+        TreeSet<String> dirs = new TreeSet<>(subAdd.keySet());
+        dirs.addAll(subRemove.keySet());
+        for (String dir : dirs) {
+            Entry old = tree._entries.get(dir);
+            String oldHash = (old != null && old._isTree) ? old._hash : null;
+            String hash = applyIn(oldHash,
+                    subAdd.getOrDefault(dir, new HashMap<>()),
+                    subRemove.getOrDefault(dir, new HashSet<>()));
+            if (hash == null) {
+                if (old != null && old._isTree) {
+                    tree._entries.remove(dir);
+                }
+            } else {
+                tree._entries.put(dir, new Entry(true, hash));
+            }
+        }
+        return tree._entries.isEmpty() ? null : tree.write();
+    }
+
+    /** Put every file under the tree ROOT into OUT.
+     *  @param root tree hash, or null if empty
+     *  @param prefix path of ROOT, "" or ending with '/'
+     *  @param out map from path to blob hash */
+    static void flatten(String root, String prefix, Map<String, String> out) {
+        Tree tree = read(ObjectStore.local(), root);
+        for (Map.Entry<String, Entry> e : tree._entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry._isTree) {
+                flatten(entry._hash, prefix + e.getKey() + "/", out);
+            } else {
+                out.put(prefix + e.getKey(), entry._hash);
+            }
+        }
+    }
+
+    /** Find the blob at PATH under the tree ROOT.
+     *  @param root tree hash
+     *  @param path file path
+     *  @return blob hash, or null if there is no such file */
+    static String lookup(String root, String path) {
+        String hash = root;
+        String rest = path;
+        while (true) {
+            Tree tree = read(ObjectStore.local(), hash);
+            int slash = rest.indexOf('/');
+            String name = (slash < 0) ? rest : rest.substring(0, slash);
+            Entry entry = tree._entries.get(name);
+            if (entry == null || entry._isTree == (slash < 0)) {
+                return null;
+            } else if (slash < 0) {
+                return entry._hash;
+            }
+            hash = entry._hash;
+            rest = rest.substring(slash + 1);
+        }
+    }
+
+    /** Collect the files that differ between trees A and B, skipping
+     *  subtrees whose hashes are equal.
+     *  @param a tree hash, or null if empty
+     *  @param b tree hash, or null if empty
+     *  @param prefix path of both trees, "" or ending with '/'
+     *  @param out map from path to {hash in A, hash in B}, either of which
+     *             is null when the file is absent on that side */
+    static void diff(String a, String b, String prefix,
+                     Map<String, String[]> out) {
+        if (a != null && a.equals(b)) {
+            return;
+        }
+        Map<String, Entry> left = read(ObjectStore.local(), a)._entries;
+        Map<String, Entry> right = read(ObjectStore.local(), b)._entries;
+        TreeSet<String> names = new TreeSet<>(left.keySet());
+        names.addAll(right.keySet());
+        for (String name : names) {
+            Entry l = left.get(name);
+            Entry r = right.get(name);
+            if (l != null && r != null && l._isTree == r._isTree
+                    && l._hash.equals(r._hash)) {
+                continue;
+            }
+            String path = prefix + name;
+            String lTree = (l != null && l._isTree) ? l._hash : null;
+            String rTree = (r != null && r._isTree) ? r._hash : null;
+            if (lTree != null || rTree != null) {
+                diff(lTree, rTree, path + "/", out);
+            }
+            String lBlob = (l != null && !l._isTree) ? l._hash : null;
+            String rBlob = (r != null && !r._isTree) ? r._hash : null;
+            if (lBlob != null || rBlob != null) {
+                out.put(path, new String[] {lBlob, rBlob});
+            }
+        }
+    }
+
+    /** One entry of a tree. */
+    static class Entry {
+        /** Constructor.
+         *  @param isTree true for a subtree, false for a blob
+         *  @param hash object hash */
+        Entry(boolean isTree, String hash) {
+            _isTree = isTree;
+            _hash = hash;
+        }
+
+        /** Getter for the kind of this entry.
+         *  @return true for a subtree */
+        boolean isTree() {
+            return _isTree;
+        }
+
+        /** Getter for the hash of this entry.
+         *  @return object hash */
+        String hash() {
+            return _hash;
+        }
+
+        /** True for a subtree. */
+        private boolean _isTree;
+        /** Object hash. */
+        private String _hash;
+    }
+
+    /** Object kind in the Codec header. */
+    static final String KIND = "tree";
+    /** Entries by name. */
+    private TreeMap<String, Entry> _entries;
+}
@@ -12,7 +12,12 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class, DeltaTest.class,
+                CodecTest.class, CommitIndexTest.class,
+                GarbageCollectorTest.class, DiffTest.class,
+                MessageIndexTest.class, DaemonTest.class,
+                TransferTest.class, EwahTest.class, PackBitmapsTest.class,
+                GitletRepositoryTest.class));
     }
 
     /** A dummy test to avoid complaint. */
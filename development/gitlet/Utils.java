@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
@@ -219,6 +220,23 @@ class Utils {
         }
     }
 
+    /** Return an object of type T read from the serialized bytes DATA,
+     *  casting it to EXPECTEDCLASS.  Throws IllegalArgumentException
+     *  in case of problems. */
+    static <T extends Serializable> T deserialize(byte[] data,
+                                                  Class<T> expectedClass) {
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(data));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
 
 
     /* MESSAGES AND ERROR REPORTING */
@@ -236,16 +254,22 @@ class Utils {
         System.out.println();
     }
 
-    /** Map UID to commits.
+    /** Map UID to commits. Reads loose and packed commits alike.
      * @param uid commit uid
      * @return readObject */
     static Commit uidToCommit(String uid) {
-        File u = new File("." + SLASH + ".gitlet" + SLASH
-                + "objects" + SLASH + "commits", uid);
-        if (!u.exists()) {
+        ObjectCache cache = ObjectCache.shared();
+        Commit cached = (Commit) cache.get("commits", uid);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] stored = ObjectStore.local().read("commits", uid);
+        if (stored == null) {
             throw new GitletException("Commit not found for this UID.");
         } else {
-            return Utils.readObject(u, Commit.class);
+            Commit result = Commit.decode(uid, stored);
+            cache.put("commits", uid, result, stored.length);
+            return result;
         }
     }
 